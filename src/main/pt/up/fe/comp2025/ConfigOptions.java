@@ -11,6 +11,16 @@ public class ConfigOptions {
     private static final String OPTIMIZE = "optimize";
     private static final String REGISTER = "registerAllocation";
     private static final String EXTRA = "extra";
+    private static final String PRINT_RANGES = "printRanges";
+    private static final String CLONE_BUDGET = "cloneBudget";
+    private static final String INLINE_BUDGET = "inlineBudget";
+    private static final String MEMOIZE = "memoize";
+    private static final String MEMO_STATS = "memoStats";
+    private static final String LIBRARY = "library";
+    private static final String UNROLL = "unroll";
+    private static final String UNROLL_FACTOR = "unrollFactor";
+    private static final String UNROLL_BUDGET = "unrollBudget";
+    private static final String BRANCH_PROFILE = "branchProfile";
 
     // These methods should be on CompilerConfig, but to avoid rewriting a file
     // that is in the src folder, this new class was added
@@ -31,6 +41,46 @@ public class ConfigOptions {
         return EXTRA;
     }
 
+    public static String getPrintRanges() {
+        return PRINT_RANGES;
+    }
+
+    public static String getCloneBudget() {
+        return CLONE_BUDGET;
+    }
+
+    public static String getInlineBudget() {
+        return INLINE_BUDGET;
+    }
+
+    public static String getMemoize() {
+        return MEMOIZE;
+    }
+
+    public static String getMemoStats() {
+        return MEMO_STATS;
+    }
+
+    public static String getLibrary() {
+        return LIBRARY;
+    }
+
+    public static String getUnroll() {
+        return UNROLL;
+    }
+
+    public static String getUnrollFactor() {
+        return UNROLL_FACTOR;
+    }
+
+    public static String getUnrollBudget() {
+        return UNROLL_BUDGET;
+    }
+
+    public static String getBranchProfile() {
+        return BRANCH_PROFILE;
+    }
+
     public static Optional<File> getInputFile(Map<String, String> config) {
         var inputFile = config.get(INPUT_FILE);
 
@@ -54,4 +104,69 @@ public class ConfigOptions {
     public static boolean getExtra(Map<String, String> config) {
         return Boolean.parseBoolean(config.getOrDefault(EXTRA, "false"));
     }
+
+    public static boolean getPrintRanges(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(PRINT_RANGES, "false"));
+    }
+
+    /**
+     * Code growth allowed for method specialization, as a percentage of the class size.
+     */
+    public static int getCloneBudget(Map<String, String> config) {
+        return Integer.parseInt(config.getOrDefault(CLONE_BUDGET, "50"));
+    }
+
+    /**
+     * Code growth allowed for inlining, as a percentage of the class size.
+     */
+    public static int getInlineBudget(Map<String, String> config) {
+        return Integer.parseInt(config.getOrDefault(INLINE_BUDGET, "50"));
+    }
+
+    public static boolean getMemoize(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(MEMOIZE, "false"));
+    }
+
+    public static boolean getMemoStats(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(MEMO_STATS, "false"));
+    }
+
+    /**
+     * Whether public methods are entry points as well as 'main', so that they survive unused-method elimination.
+     * On by default, since a class compiled on its own may be used by others; false for a whole program.
+     */
+    public static boolean getLibrary(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(LIBRARY, "true"));
+    }
+
+    public static boolean getUnroll(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(UNROLL, "false"));
+    }
+
+    /**
+     * Number of copies of the body per iteration of a partially unrolled loop; 1 disables partial unrolling.
+     */
+    public static int getUnrollFactor(Map<String, String> config) {
+        return Integer.parseInt(config.getOrDefault(UNROLL_FACTOR, "4"));
+    }
+
+    /**
+     * Code growth allowed for loop unrolling, as a percentage of the class size.
+     */
+    public static int getUnrollBudget(Map<String, String> config) {
+        return Integer.parseInt(config.getOrDefault(UNROLL_BUDGET, "200"));
+    }
+
+    /**
+     * File with the branch counts of the if statements, see {@link pt.up.fe.comp2025.optimization.BranchProfile}.
+     */
+    public static Optional<File> getBranchProfile(Map<String, String> config) {
+        var profile = config.get(BRANCH_PROFILE);
+
+        if (profile == null) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new File(profile));
+    }
 }
@@ -6,6 +6,7 @@ import org.specs.comp.ollir.tree.TreeNode;
 import org.specs.comp.ollir.type.ArrayType;
 import org.specs.comp.ollir.type.BuiltinKind;
 import org.specs.comp.ollir.type.BuiltinType;
+import org.specs.comp.ollir.type.Type;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.specs.util.classmap.FunctionClassMap;
@@ -312,6 +313,10 @@ public class JasminGenerator {
         for (var inst : method.getInstructions()) {
             var instCode = apply(inst);
 
+            // A call used as a statement must not leave its result on the stack
+            if (inst instanceof CallInstruction call && !isVoid(call.getReturnType()))
+                instCode += "pop" + NL;
+
             String[] lines = instCode.split("\n");
             for (String line : lines) {
                 if (!line.trim().isEmpty() && !line.trim().startsWith(";")) {
@@ -632,6 +637,10 @@ public class JasminGenerator {
         return code.toString();
     }
 
+    private static boolean isVoid(Type type) {
+        return type instanceof BuiltinType builtinType && builtinType.getKind().equals(BuiltinKind.VOID);
+    }
+
     private String generateCall(CallInstruction inst) {
         StringBuilder code = new StringBuilder();
 
@@ -762,6 +771,14 @@ public class JasminGenerator {
     }
 
     private String generateCondBranch(CondBranchInstruction inst) {
+        // A negated condition jumps when its operand is false, without computing the negation
+        if (inst.getCondition() instanceof UnaryOpInstruction unaryOp
+                && unaryOp.getOperation().getOpType() == OperationType.NOTB) {
+            return apply(unaryOp.getOperand()) +
+                    "ifeq " +
+                    inst.getLabel();
+        }
+
         return apply(inst.getCondition()) +
                 "ifne " +
                 inst.getLabel();
@@ -0,0 +1,182 @@
+package pt.up.fe.comp2025.optimization;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2025.utils.ReportUtils;
+
+import java.util.*;
+
+import static pt.up.fe.comp2025.ast.Kind.*;
+
+/**
+ * Replaces small local arrays that do not escape their method by one local per element.
+ * <p>
+ * An int or boolean array local qualifies if it is assigned exactly once, by a statement of the
+ * method body itself (not nested in an if or a loop) whose value is {@code new T[k]} with a
+ * literal size or an array literal, and if every later use indexes it with a literal in bounds
+ * or reads its length. Any other use (passing it, returning it, storing it, a computed index)
+ * lets the array escape. The allocation becomes one assignment per element, accesses become
+ * the element locals and {@code .length} becomes the size.
+ */
+public class ArrayScalarReplacement {
+
+    private static final int MAX_ELEMENTS = 16;
+
+    private final SymbolTable table;
+    private final List<Report> reports;
+
+    public ArrayScalarReplacement(SymbolTable table) {
+        this.table = table;
+        this.reports = new ArrayList<>();
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    /**
+     * Replaces the non-escaping arrays of every method of the program.
+     *
+     * @return the number of arrays replaced
+     */
+    public int apply(JmmNode root) {
+        int total = 0;
+
+        for (JmmNode method : root.getDescendants(METHOD_DECL)) {
+            String methodName = method.get("name");
+
+            List<String> replaced = new ArrayList<>();
+            for (Symbol local : new ArrayList<>(table.getLocalVariables(methodName))) {
+                Type type = local.getType();
+                if (!type.isArray() || !(type.getName().equals("int") || type.getName().equals("boolean"))) continue;
+
+                JmmNode definition = findDefinition(local.getName(), method);
+                if (definition != null) {
+                    replace(local, definition, method);
+                    replaced.add(local.getName());
+                }
+            }
+
+            if (!replaced.isEmpty()) {
+                reports.add(ReportUtils.buildLogReport(Stage.OPTIMIZATION, method,
+                        String.format("Scalar replacement in '%s': arrays %s replaced by locals", methodName, replaced)));
+            }
+            total += replaced.size();
+        }
+
+        return total;
+    }
+
+    // The only assignment of the array, if the array qualifies
+    private JmmNode findDefinition(String name, JmmNode method) {
+        List<JmmNode> refs = method.getDescendants(VAR_REF_EXPR).stream()
+                .filter(ref -> ref.get("name").equals(name))
+                .toList();
+
+        JmmNode definition = null;
+        for (JmmNode ref : refs) {
+            JmmNode parent = ref.getParent();
+            if (ASSIGN_STMT.check(parent) && ref.getIndexOfSelf() == 0) {
+                if (definition != null || parent.getParent() != method) return null;
+                definition = parent;
+            }
+        }
+        if (definition == null) return null;
+
+        int size = sizeOf(definition.getChild(1));
+        if (size < 0 || size > MAX_ELEMENTS) return null;
+
+        int definitionIndex = definition.getIndexOfSelf();
+        for (JmmNode ref : refs) {
+            if (ref.getParent() == definition && ref.getIndexOfSelf() == 0) continue;
+
+            // Uses must run after the allocation
+            if (topLevelStatement(ref, method).getIndexOfSelf() <= definitionIndex) return null;
+
+            JmmNode parent = ref.getParent();
+            if (LENGTH_ACCESS.check(parent)) continue;
+            if (ARRAY_ACCESS.check(parent) && ref.getIndexOfSelf() == 0
+                    && OptUtils.getLiteralValue(parent.getChild(1)) instanceof Integer index
+                    && index >= 0 && index < size) continue;
+            return null;
+        }
+        return definition;
+    }
+
+    private void replace(Symbol array, JmmNode definition, JmmNode method) {
+        String methodName = method.get("name");
+        String name = array.getName();
+        JmmNode value = definition.getChild(1);
+        int size = sizeOf(value);
+
+        // One local per element, declared where the array was
+        JmmNode declaration = method.getChildren(VAR_DECL).stream()
+                .filter(varDecl -> varDecl.get("name").equals(name))
+                .findFirst().orElseThrow();
+        JmmNode elementTypeNode = OptUtils.copyTree(declaration.getChild(0));
+        elementTypeNode.putObject("isArray", false);
+        Type elementType = new Type(array.getType().getName(), false);
+
+        Set<String> taken = new HashSet<>();
+        table.getParameters(methodName).forEach(param -> taken.add(param.getName()));
+        table.getLocalVariables(methodName).forEach(local -> taken.add(local.getName()));
+        table.getFields().forEach(field -> taken.add(field.getName()));
+
+        List<Symbol> locals = table.getLocalVariables(methodName);
+        locals.remove(array);
+        int declarationIndex = declaration.getIndexOfSelf();
+        method.removeChild(declarationIndex);
+
+        List<String> elements = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            String element = name + "_" + i;
+            while (taken.contains(element)) element += "_";
+            taken.add(element);
+            elements.add(element);
+
+            locals.add(new Symbol(elementType, element));
+            method.add(OptUtils.newVarDecl(element, elementTypeNode), declarationIndex + i);
+        }
+
+        // Accesses become the element locals
+        for (JmmNode ref : new ArrayList<>(method.getDescendants(VAR_REF_EXPR))) {
+            if (!ref.get("name").equals(name) || ref.getParent() == definition) continue;
+
+            JmmNode parent = ref.getParent();
+            if (LENGTH_ACCESS.check(parent)) {
+                parent.replace(OptUtils.newLiteral(size));
+            } else {
+                int index = (Integer) OptUtils.getLiteralValue(parent.getChild(1));
+                parent.replace(OptUtils.newVarRef(elements.get(index)));
+            }
+        }
+
+        // The allocation becomes the initial value of each element, in order
+        int definitionIndex = definition.getIndexOfSelf();
+        method.removeChild(definitionIndex);
+        for (int i = 0; i < size; i++) {
+            JmmNode initial = ARRAY_INIT.check(value) ? OptUtils.copyTree(value.getChild(i))
+                    : OptUtils.newLiteral(elementType.getName().equals("int") ? 0 : false);
+            method.add(OptUtils.newAssign(elements.get(i), initial), definitionIndex + i);
+        }
+    }
+
+    // Number of elements of an allocation, or -1 if it is not a known-size allocation
+    private static int sizeOf(JmmNode value) {
+        if (ARRAY_INIT.check(value)) return value.getNumChildren();
+        if (ARRAY_CREATION.check(value) && OptUtils.getLiteralValue(value.getChild(1)) instanceof Integer size) {
+            return size;
+        }
+        return -1;
+    }
+
+    private static JmmNode topLevelStatement(JmmNode node, JmmNode method) {
+        JmmNode current = node;
+        while (current.getParent() != method) current = current.getParent();
+        return current;
+    }
+}
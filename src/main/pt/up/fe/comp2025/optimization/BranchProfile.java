@@ -0,0 +1,79 @@
+package pt.up.fe.comp2025.optimization;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2025.ConfigOptions;
+import pt.up.fe.comp2025.utils.ReportUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * How often each arm of the if statements was taken in earlier runs, which overrides the static
+ * guess of the likely arm when laying out the code (see {@link OllirGeneratorVisitor}).
+ * <p>
+ * Each line of the profile has the source line of an if statement and the number of times its
+ * "then" and "else" arms ran, as in {@code 12 3 9497}; '#' starts a comment.
+ */
+public class BranchProfile {
+
+    public static final BranchProfile EMPTY = new BranchProfile(Map.of());
+
+    // Source line of the if statement to the counts of its "then" and "else" arms
+    private final Map<Integer, long[]> counts;
+
+    private BranchProfile(Map<Integer, long[]> counts) {
+        this.counts = counts;
+    }
+
+    /**
+     * Reads the profile given in the configuration, if any. Problems with the file are reported
+     * as warnings, and the lines that cannot be read are left out.
+     */
+    public static BranchProfile load(Map<String, String> config, JmmNode root, List<Report> reports) {
+        var file = ConfigOptions.getBranchProfile(config);
+        if (file.isEmpty()) return EMPTY;
+
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file.get().toPath());
+        } catch (IOException e) {
+            reports.add(ReportUtils.buildWarnReport(Stage.OPTIMIZATION, root,
+                    "Could not read branch profile '" + file.get() + "', using static layout"));
+            return EMPTY;
+        }
+
+        Map<Integer, long[]> counts = new HashMap<>();
+        for (String line : lines) {
+            int comment = line.indexOf('#');
+            String content = (comment >= 0 ? line.substring(0, comment) : line).strip();
+            if (content.isEmpty()) continue;
+
+            String[] fields = content.split("\\s+");
+            try {
+                if (fields.length != 3) throw new NumberFormatException();
+                counts.put(Integer.parseInt(fields[0]),
+                        new long[]{Long.parseLong(fields[1]), Long.parseLong(fields[2])});
+            } catch (NumberFormatException e) {
+                reports.add(ReportUtils.buildWarnReport(Stage.OPTIMIZATION, root,
+                        "Ignoring malformed branch profile line '" + line + "'"));
+            }
+        }
+        return new BranchProfile(counts);
+    }
+
+    /**
+     * Whether the "then" arm of an if statement ran more often than the "else" arm; empty if the
+     * profile has no counts for it or they are tied.
+     */
+    public Optional<Boolean> isThenLikely(JmmNode ifStmt) {
+        long[] arms = counts.get(ifStmt.getLine());
+        if (arms == null || arms[0] == arms[1]) return Optional.empty();
+        return Optional.of(arms[0] > arms[1]);
+    }
+}
@@ -0,0 +1,200 @@
+package pt.up.fe.comp2025.optimization;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2025.ast.TypeUtils;
+
+import java.util.*;
+
+import static pt.up.fe.comp2025.ast.Kind.*;
+
+/**
+ * Call graph of the methods of the compiled class.
+ * <p>
+ * Only calls that certainly target a method of this class are edges: calls on {@code this},
+ * on the class name, or on an expression whose type is the class. Calls to imported classes
+ * and to the superclass are ignored.
+ */
+public class CallGraph {
+
+    private final SymbolTable table;
+    private final TypeUtils types;
+
+    private final Map<String, JmmNode> methods;
+    private final Map<String, List<JmmNode>> callSites;
+    private final Map<String, Set<String>> callees;
+
+    private CallGraph(SymbolTable table) {
+        this.table = table;
+        this.types = new TypeUtils(table);
+        this.methods = new LinkedHashMap<>();
+        this.callSites = new HashMap<>();
+        this.callees = new HashMap<>();
+    }
+
+    /**
+     * Builds the call graph of the class declared under 'root'.
+     */
+    public static CallGraph build(JmmNode root, SymbolTable table) {
+        CallGraph graph = new CallGraph(table);
+
+        for (JmmNode method : root.getDescendants(METHOD_DECL)) {
+            String name = method.get("name");
+            graph.methods.put(name, method);
+            graph.callSites.putIfAbsent(name, new ArrayList<>());
+            graph.callees.put(name, new LinkedHashSet<>());
+        }
+
+        for (JmmNode method : graph.methods.values()) {
+            for (JmmNode call : method.getDescendants(METHOD_CALL)) {
+                if (!graph.isLocalCall(call)) continue;
+
+                String callee = call.get("name");
+                graph.callSites.get(callee).add(call);
+                graph.callees.get(method.get("name")).add(callee);
+            }
+        }
+
+        return graph;
+    }
+
+    /**
+     * True if the call certainly targets a method declared in this class.
+     */
+    public boolean isLocalCall(JmmNode call) {
+        if (!METHOD_CALL.check(call) || !table.getMethods().contains(call.get("name"))) return false;
+
+        JmmNode receiver = call.getChild(0);
+        if (THIS_REF.check(receiver)) return true;
+
+        Type type;
+        try {
+            type = types.getExprType(receiver);
+        } catch (RuntimeException e) {
+            return false;
+        }
+
+        // A bare class name is not a variable, so it has no type
+        if (type == null) {
+            return VAR_REF_EXPR.check(receiver) && receiver.get("name").equals(table.getClassName());
+        }
+        return !type.isArray() && type.getName().equals(table.getClassName());
+    }
+
+    /**
+     * True if the receiver of a local call is certainly not null: {@code this}, the class name
+     * (a static call), or a local of the caller that is only ever assigned new objects of the class.
+     */
+    public boolean hasNonNullReceiver(JmmNode call) {
+        JmmNode receiver = call.getChild(0);
+        if (THIS_REF.check(receiver)) return true;
+        return isClassName(receiver, call) || isNewObjectLocal(receiver, call);
+    }
+
+    /**
+     * True if a local call certainly runs the method declared in this class. In a library (see
+     * {@link pt.up.fe.comp2025.ConfigOptions#getLibrary}) a subclass may override the method, so
+     * only calls on the class name or on new objects of the class qualify.
+     */
+    public boolean hasKnownTarget(JmmNode call, boolean library) {
+        if (!library) return true;
+        JmmNode receiver = call.getChild(0);
+        return isClassName(receiver, call) || isNewObjectLocal(receiver, call);
+    }
+
+    /**
+     * True if every call to the method is one of the call sites seen here: the class is a whole
+     * program, and in a library the method is not public, since other classes may call those.
+     */
+    public boolean hasOnlyLocalCallers(String method, boolean library) {
+        if (!isClosedWorld()) return false;
+        return !library || !methods.get(method).getBoolean("isPublic", false);
+    }
+
+    private boolean isClassName(JmmNode receiver, JmmNode call) {
+        if (!VAR_REF_EXPR.check(receiver) || !receiver.get("name").equals(table.getClassName())) return false;
+        return variablesOf(call).stream().noneMatch(name -> name.equals(table.getClassName()));
+    }
+
+    // A local of the enclosing method whose every assignment is 'new' of the class
+    private boolean isNewObjectLocal(JmmNode receiver, JmmNode call) {
+        if (!VAR_REF_EXPR.check(receiver)) return false;
+        JmmNode method = call.getAncestor(METHOD_DECL).orElse(null);
+        if (method == null) return false;
+
+        String name = receiver.get("name");
+        if (table.getLocalVariables(method.get("name")).stream().noneMatch(local -> local.getName().equals(name)))
+            return false;
+
+        List<JmmNode> assigns = method.getDescendants(ASSIGN_STMT).stream()
+                .filter(assign -> VAR_REF_EXPR.check(assign.getChild(0)) && assign.getChild(0).get("name").equals(name))
+                .toList();
+        return !assigns.isEmpty() && assigns.stream().allMatch(assign -> OBJECT_CREATION.check(assign.getChild(1))
+                && assign.getChild(1).get("name").equals(table.getClassName()));
+    }
+
+    private List<String> variablesOf(JmmNode call) {
+        JmmNode method = call.getAncestor(METHOD_DECL).orElse(null);
+        if (method == null) return List.of();
+
+        List<String> names = new ArrayList<>();
+        table.getParameters(method.get("name")).forEach(param -> names.add(param.getName()));
+        table.getLocalVariables(method.get("name")).forEach(local -> names.add(local.getName()));
+        table.getFields().forEach(field -> names.add(field.getName()));
+        return names;
+    }
+
+    /**
+     * True if the class is a whole program: it has a main method and no superclass,
+     * so its methods can only be reached through the call sites seen here.
+     */
+    public boolean isClosedWorld() {
+        String superClass = table.getSuper();
+        if (superClass != null && !superClass.isEmpty()) return false;
+
+        return methods.values().stream()
+                .anyMatch(method -> Boolean.TRUE.equals(method.getOptionalObject("isMain").orElse(false)));
+    }
+
+    public Collection<JmmNode> getMethods() {
+        return methods.values();
+    }
+
+    public JmmNode getMethod(String name) {
+        return methods.get(name);
+    }
+
+    /**
+     * MethodCall nodes that target the given method.
+     */
+    public List<JmmNode> getCallSites(String method) {
+        return callSites.getOrDefault(method, List.of());
+    }
+
+    public Set<String> getCallees(String method) {
+        return callees.getOrDefault(method, Set.of());
+    }
+
+    /**
+     * True if the method can reach itself through the call graph.
+     */
+    public boolean isRecursive(String method) {
+        return getCallees(method).stream().anyMatch(callee -> reaches(callee, method));
+    }
+
+    /**
+     * True if 'from' is 'to' or can call it, directly or through other methods.
+     */
+    public boolean reaches(String from, String to) {
+        Set<String> visited = new HashSet<>();
+        Deque<String> worklist = new ArrayDeque<>(List.of(from));
+
+        while (!worklist.isEmpty()) {
+            String current = worklist.pop();
+            if (current.equals(to)) return true;
+            if (visited.add(current)) worklist.addAll(getCallees(current));
+        }
+        return false;
+    }
+}
@@ -1,143 +1,209 @@
 package pt.up.fe.comp2025.optimization;
 
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
-import pt.up.fe.comp.jmm.ast.AJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
-import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
-import pt.up.fe.comp2025.analysis.AnalysisVisitor;
+import pt.up.fe.comp.jmm.ast.PostorderJmmVisitor;
 import pt.up.fe.comp2025.ast.Kind;
 
-import java.util.List;
-
-public class ConstantFoldingVisitor extends AnalysisVisitor {
-    private boolean modified = false;
+/**
+ * Folds operations over literals into a single literal and applies algebraic simplifications:
+ * <ul>
+ *     <li>arithmetic and comparisons over literals (a zero divisor is left for the runtime to throw)</li>
+ *     <li>identities: {@code x+0}, {@code x-0}, {@code x*1}, {@code x/1}, and {@code x*0}, {@code x-x},
+ *     {@code x<x}, {@code x>x} when x is side-effect free</li>
+ *     <li>reassociation of constant operands: {@code (x+1)+2 -> x+3}, {@code (x*2)*3 -> x*6}</li>
+ *     <li>short-circuiting: {@code false && e -> false}, {@code true && e -> e}, {@code e && true -> e},
+ *     and {@code e && false -> false} when e is side-effect free</li>
+ *     <li>double negation: {@code !!e -> e}</li>
+ * </ul>
+ * Visits in postorder, so operands are simplified before the expression that uses them
+ * and a single traversal is enough for arbitrarily nested expressions.
+ */
+public class ConstantFoldingVisitor extends PostorderJmmVisitor<SymbolTable, Void> {
+    private int folded = 0;
 
     @Override
     public void buildVisitor() {
+        setDefaultValue(() -> null);
+        addVisit(Kind.PARENTHESIS, this::visitParenthesis);
         addVisit(Kind.BINARY_EXPR, this::visitBinExpr);
         addVisit(Kind.LOGIC_EXPR, this::visitLogicExpr);
         addVisit(Kind.UNARY_EXPR, this::visitUnaryExpr);
     }
 
-    public Boolean hasModified() {
-        return modified;
+    public int getFoldedCount() {
+        return folded;
     }
 
-    public void resetModified() {
-        this.modified = false;
+    private Void visitParenthesis(JmmNode parenthesisNode, SymbolTable symbolTable) {
+        // Precedence is already encoded in the tree, so the inner expression can take its place
+        JmmNode inner = parenthesisNode.getChild(0);
+        parenthesisNode.removeChild(inner);
+        parenthesisNode.replace(inner);
+        return null;
     }
 
     private Void visitBinExpr(JmmNode binExprNode, SymbolTable symbolTable) {
-        // Get both side nodes
-        JmmNode lhs = binExprNode.getChildren().get(0);
-        JmmNode rhs = binExprNode.getChildren().get(1);
-
-        // Index associated with this expression to replace and parent so we can replace
-        int nodeIndex = binExprNode.getParent().getChildren().indexOf(binExprNode);
-        JmmNode parentNode = binExprNode.getParent();
-        if (lhs.getKind().equals(Kind.INTEGER_LIT.toString()) && rhs.getKind().equals(Kind.INTEGER_LIT.toString())) {
-            Integer lhsValue = Integer.parseInt(lhs.get("value"));
-            Integer rhsValue = Integer.parseInt(rhs.get("value"));
-
-            // Initialize result variables
-            Integer result = null;
-            Boolean booleanResult = null;
-
-            switch (binExprNode.get("op")) {
-                case "+":
-                    result = lhsValue + rhsValue;
-                    break;
-                case "-":
-                    result = lhsValue - rhsValue;
-                    break;
-                case "*":
-                    result = lhsValue * rhsValue;
-                    break;
-                case "/":
-                    result = lhsValue / rhsValue;
-                    break;
-                /*case "<":
-                    booleanResult = lhsValue < rhsValue;
-                    break;
-                case ">":
-                    booleanResult = lhsValue > rhsValue;
-                    break;*/
+        simplifyBinExpr(binExprNode);
+        return null;
+    }
+
+    private JmmNode simplifyBinExpr(JmmNode binExprNode) {
+        String op = binExprNode.get("op");
+
+        // Literals go to the right of commutative operators (they have no side effects to reorder)
+        if ((op.equals("+") || op.equals("*")) && intValue(binExprNode.getChild(0)) != null) {
+            JmmNode literal = binExprNode.removeChild(0);
+            binExprNode.add(literal);
+        }
+
+        JmmNode lhs = binExprNode.getChild(0);
+        JmmNode rhs = binExprNode.getChild(1);
+        Integer lhsValue = intValue(lhs);
+        Integer rhsValue = intValue(rhs);
+
+        if (lhsValue != null && rhsValue != null) {
+            Object result = switch (op) {
+                case "+" -> lhsValue + rhsValue;
+                case "-" -> lhsValue - rhsValue;
+                case "*" -> lhsValue * rhsValue;
+                // Division by zero must still throw at runtime
+                case "/" -> rhsValue == 0 ? null : lhsValue / rhsValue;
+                case "<" -> lhsValue < rhsValue;
+                case ">" -> lhsValue > rhsValue;
                 // Must be one of the defined operators
-                default:
-                    return null;
-            }
+                default -> null;
+            };
+            return result != null ? replace(binExprNode, OptUtils.newLiteral(result)) : binExprNode;
+        }
 
-            // Create literal node and replace the expression with it if it exists
-            JmmNode literal;
-            if (booleanResult != null) {
-                literal = new JmmNodeImpl(List.of(Kind.BOOLEAN_LIT.toString()));
-                literal.put("value", booleanResult.toString());
-            } else if (result != null) {
-                literal = new JmmNodeImpl(List.of(Kind.INTEGER_LIT.toString()));
-                literal.put("value", result.toString());
-            }
-            else {
-                return null;
+        if (rhsValue != null) {
+            // x+0, x-0, x*1, x/1
+            boolean identity = switch (op) {
+                case "+", "-" -> rhsValue == 0;
+                case "*", "/" -> rhsValue == 1;
+                default -> false;
+            };
+            if (identity) return replace(binExprNode, lhs);
+
+            // x*0, as long as evaluating x has no side effects
+            if (op.equals("*") && rhsValue == 0 && OptUtils.isPure(lhs)) {
+                return replace(binExprNode, OptUtils.newLiteral(0));
             }
 
-            parentNode.setChild(literal, nodeIndex);
-            modified = true;
+            if (reassociate(binExprNode, lhs, rhsValue)) return simplifyBinExpr(binExprNode);
         }
 
-        return null;
+        // x-x, x<x, x>x
+        if (OptUtils.isPure(lhs) && OptUtils.sameExpr(lhs, rhs)) {
+            switch (op) {
+                case "-":
+                    return replace(binExprNode, OptUtils.newLiteral(0));
+                case "<":
+                case ">":
+                    return replace(binExprNode, OptUtils.newLiteral(false));
+                default:
+                    break;
+            }
+        }
+
+        return binExprNode;
     }
 
-    private Void visitLogicExpr(JmmNode logicExprNode, SymbolTable symbolTable) {
-        // Get both side nodes
-        JmmNode lhs = logicExprNode.getChildren().get(0);
-        JmmNode rhs = logicExprNode.getChildren().get(1);
+    // (x op1 c1) op2 c2 -> x op c, for +/- chains and * chains
+    private boolean reassociate(JmmNode binExprNode, JmmNode lhs, int rhsValue) {
+        if (!Kind.BINARY_EXPR.check(lhs)) return false;
 
-        // Index associated with this expression to replace and parent so we can replace
-        int nodeIndex = logicExprNode.getParent().getChildren().indexOf(logicExprNode);
-        JmmNode parentNode = logicExprNode.getParent();
+        Integer innerValue = intValue(lhs.getChild(1));
+        if (innerValue == null) return false;
 
-        if (lhs.getKind().equals(Kind.BOOLEAN_LIT.toString()) && rhs.getKind().equals(Kind.BOOLEAN_LIT.toString())) {
-            Boolean lhsValue = Boolean.parseBoolean(lhs.get("value"));
-            Boolean rhsValue = Boolean.parseBoolean(rhs.get("value"));
+        String op = binExprNode.get("op");
+        String innerOp = lhs.get("op");
 
-            Boolean result = null;
-            switch (logicExprNode.get("op")) {
-                case "&&":
-                    result = lhsValue && rhsValue;
-                    break;
-                case "||":
-                    result = lhsValue || rhsValue;
-                    break;
-                default:
-                    return null;
+        String newOp;
+        int newValue;
+        if (isAdditive(op) && isAdditive(innerOp)) {
+            newValue = (innerOp.equals("+") ? innerValue : -innerValue) + (op.equals("+") ? rhsValue : -rhsValue);
+            newOp = "+";
+            if (newValue < 0 && newValue != Integer.MIN_VALUE) {
+                newValue = -newValue;
+                newOp = "-";
             }
-            JmmNode literal = new JmmNodeImpl(List.of(Kind.BOOLEAN_LIT.toString()));
-            literal.put("value", result.toString());
-            parentNode.setChild(literal, nodeIndex);
-            modified = true;
+        } else if (op.equals("*") && innerOp.equals("*")) {
+            newValue = innerValue * rhsValue;
+            newOp = "*";
+        } else {
+            return false;
+        }
+
+        JmmNode x = lhs.removeChild(0);
+        binExprNode.setChild(x, 0);
+        binExprNode.setChild(OptUtils.newLiteral(newValue), 1);
+        binExprNode.put("op", newOp);
+        folded++;
+        return true;
+    }
+
+    private Void visitLogicExpr(JmmNode logicExprNode, SymbolTable symbolTable) {
+        // Get both side nodes
+        JmmNode lhs = logicExprNode.getChild(0);
+        JmmNode rhs = logicExprNode.getChild(1);
+        Boolean lhsValue = boolValue(lhs);
+        Boolean rhsValue = boolValue(rhs);
+
+        // The rhs is never evaluated when the lhs is false
+        if (Boolean.FALSE.equals(lhsValue)) {
+            replace(logicExprNode, lhs);
+        } else if (Boolean.TRUE.equals(lhsValue)) {
+            replace(logicExprNode, rhs);
+        } else if (Boolean.TRUE.equals(rhsValue)) {
+            replace(logicExprNode, lhs);
+        } else if (Boolean.FALSE.equals(rhsValue) && OptUtils.isPure(lhs)) {
+            replace(logicExprNode, rhs);
+        } else if (OptUtils.isPure(lhs) && OptUtils.sameExpr(lhs, rhs)) {
+            replace(logicExprNode, lhs);
         }
         return null;
     }
 
     private Void visitUnaryExpr(JmmNode unaryExprNode, SymbolTable symbolTable) {
         // Get the operand
-        JmmNode operand = unaryExprNode.getChildren().get(0);
-
-        // If we have a simplified operand already, fold it
-        if (operand.getKind().equals(Kind.BOOLEAN_LIT.toString())) {
-            int nodeIndex = unaryExprNode.getParent().getChildren().indexOf(unaryExprNode);
-            JmmNode parentNode = unaryExprNode.getParent();
-            String op = unaryExprNode.get("op");
-            if (!op.equals("!")) {
-                throw new RuntimeException("Unexpected unary operator: " + op);
-            }
-            Boolean booleanValue = Boolean.parseBoolean(operand.get("value"));
-            booleanValue = !booleanValue;
-            JmmNode literal = new JmmNodeImpl(List.of(Kind.BOOLEAN_LIT.toString()));
-            literal.put("value", booleanValue.toString());
-            parentNode.setChild(literal, nodeIndex);
-            modified = true;
+        JmmNode operand = unaryExprNode.getChild(0);
+
+        String op = unaryExprNode.get("op");
+        if (!op.equals("!")) {
+            throw new RuntimeException("Unexpected unary operator: " + op);
+        }
+
+        Boolean value = boolValue(operand);
+        if (value != null) {
+            replace(unaryExprNode, OptUtils.newLiteral(!value));
+        } else if (Kind.UNARY_EXPR.check(operand)) {
+            // !!e -> e
+            replace(unaryExprNode, operand.getChild(0));
         }
         return null;
     }
+
+    // Puts 'replacement' (a new node or a descendant of 'node') in the place of 'node'
+    private JmmNode replace(JmmNode node, JmmNode replacement) {
+        if (replacement.getParent() != null) {
+            replacement.getParent().removeChild(replacement);
+        }
+        node.replace(replacement);
+        folded++;
+        return replacement;
+    }
+
+    private static boolean isAdditive(String op) {
+        return op.equals("+") || op.equals("-");
+    }
+
+    private static Integer intValue(JmmNode node) {
+        return OptUtils.getLiteralValue(node) instanceof Integer i ? i : null;
+    }
+
+    private static Boolean boolValue(JmmNode node) {
+        return OptUtils.getLiteralValue(node) instanceof Boolean b ? b : null;
+    }
 }
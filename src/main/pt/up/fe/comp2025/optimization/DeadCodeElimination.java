@@ -0,0 +1,224 @@
+package pt.up.fe.comp2025.optimization;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2025.ast.Kind;
+import pt.up.fe.comp2025.utils.ReportUtils;
+
+import java.util.*;
+
+import static pt.up.fe.comp2025.ast.Kind.*;
+
+/**
+ * Dead-code elimination on the AST, meant to run after constant propagation and folding.
+ * <p>
+ * Removes the untaken arm of IfStmts with a literal condition, {@code while (false)} loops
+ * and statements that follow a return. Locals whose only reads were in the removed code
+ * lose their (pure) stores, and locals that are no longer referenced at all are removed
+ * both from the method and from the symbol table.
+ * <p>
+ * Stores to locals that were already unread before this pass (e.g. after their uses were
+ * replaced by constants) are left alone.
+ */
+public class DeadCodeElimination {
+
+    private final SymbolTable table;
+    private final List<Report> reports;
+
+    private int removedStmts;
+
+    public DeadCodeElimination(SymbolTable table) {
+        this.table = table;
+        this.reports = new ArrayList<>();
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    /**
+     * Runs the elimination on every method of the program.
+     *
+     * @return the number of statements and locals removed
+     */
+    public int apply(JmmNode root) {
+        int total = 0;
+
+        for (JmmNode method : root.getDescendants(METHOD_DECL)) {
+            removedStmts = 0;
+            Set<String> readBefore = readVariables(method);
+            simplifyBlock(method);
+            int removedLocals = removeUnusedLocals(method, readBefore);
+
+            if (removedStmts > 0 || removedLocals > 0) {
+                reports.add(ReportUtils.buildLogReport(Stage.OPTIMIZATION, method,
+                        String.format("Dead-code elimination in '%s': %d statements removed, %d locals removed",
+                                method.get("name"), removedStmts, removedLocals)));
+            }
+            total += removedStmts + removedLocals;
+        }
+
+        return total;
+    }
+
+    // Simplifies every statement of a statement list (MethodDecl or BracketStmt)
+    // and drops whatever follows a statement that always returns
+    private void simplifyBlock(JmmNode block) {
+        for (JmmNode stmt : new ArrayList<>(block.getChildren(STMT))) {
+            simplifyStmt(stmt);
+        }
+
+        boolean returned = false;
+        for (JmmNode stmt : new ArrayList<>(block.getChildren(STMT))) {
+            if (returned) {
+                block.removeChild(stmt);
+                removedStmts++;
+            } else if (alwaysReturns(stmt)) {
+                returned = true;
+            }
+        }
+    }
+
+    private void simplifyStmt(JmmNode stmt) {
+        Kind kind = Kind.fromString(stmt.getKind());
+
+        switch (kind) {
+            case BRACKET_STMT -> {
+                simplifyBlock(stmt);
+                // Nested blocks have no scope of their own, splice them into the enclosing list
+                if (isStatementList(stmt.getParent())) splice(stmt);
+            }
+            case IF_STMT -> {
+                for (JmmNode arm : stmt.getChildren(STMT)) simplifyStmt(arm);
+
+                if (!(OptUtils.getLiteralValue(stmt.getChild(0)) instanceof Boolean cond)) return;
+
+                JmmNode taken = cond ? stmt.getChild(1)
+                        : stmt.getNumChildren() > 2 ? stmt.getChild(2) : null;
+
+                if (taken == null) {
+                    removeStmt(stmt);
+                } else {
+                    stmt.removeChild(taken);
+                    stmt.replace(taken);
+                    if (BRACKET_STMT.check(taken) && isStatementList(taken.getParent())) splice(taken);
+                }
+                removedStmts++;
+            }
+            case WHILE_STMT -> {
+                simplifyStmt(stmt.getChild(1));
+
+                if (Boolean.FALSE.equals(OptUtils.getLiteralValue(stmt.getChild(0)))) {
+                    removeStmt(stmt);
+                    removedStmts++;
+                }
+            }
+            default -> {
+                // AssignStmt, ExprStmt, ReturnStmt
+            }
+        }
+    }
+
+    private static boolean alwaysReturns(JmmNode stmt) {
+        if (RETURN_STMT.check(stmt)) return true;
+        if (BRACKET_STMT.check(stmt)) return stmt.getChildren(STMT).stream().anyMatch(DeadCodeElimination::alwaysReturns);
+        if (IF_STMT.check(stmt) && stmt.getNumChildren() > 2) {
+            return alwaysReturns(stmt.getChild(1)) && alwaysReturns(stmt.getChild(2));
+        }
+        return false;
+    }
+
+    private static boolean isStatementList(JmmNode node) {
+        return METHOD_DECL.check(node) || BRACKET_STMT.check(node);
+    }
+
+    // Moves the statements of a BracketStmt into its parent, in its place
+    private static void splice(JmmNode bracket) {
+        JmmNode parent = bracket.getParent();
+        int index = parent.removeChild(bracket);
+
+        while (bracket.getNumChildren() > 0) {
+            parent.add(bracket.removeChild(0), index++);
+        }
+    }
+
+    // Statement lists simply lose the statement; if/while arms get an empty block instead
+    private static void removeStmt(JmmNode stmt) {
+        JmmNode parent = stmt.getParent();
+        if (isStatementList(parent)) {
+            parent.removeChild(stmt);
+        } else {
+            stmt.replace(new JmmNodeImpl(List.of(BRACKET_STMT.toString(), STMT.toString())));
+        }
+    }
+
+    /**
+     * Drops stores to locals that were read before the dead code was removed but no longer are,
+     * until no more can be removed, then deletes locals that are no longer referenced
+     * from the method and the symbol table.
+     *
+     * @return the number of locals removed
+     */
+    private int removeUnusedLocals(JmmNode method, Set<String> readBefore) {
+        String methodName = method.get("name");
+        List<Symbol> locals = table.getLocalVariables(methodName);
+        Set<String> localNames = new HashSet<>();
+        for (Symbol local : locals) localNames.add(local.getName());
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            Set<String> read = readVariables(method);
+
+            for (JmmNode assign : method.getDescendants(ASSIGN_STMT)) {
+                JmmNode lhs = assign.getChild(0);
+                if (!VAR_REF_EXPR.check(lhs)) continue;
+
+                String name = lhs.get("name");
+                if (!localNames.contains(name) || !readBefore.contains(name) || read.contains(name)) continue;
+
+                // Stores with side effects (calls, array accesses, ...) are kept
+                if (!OptUtils.isPure(assign.getChild(1))) continue;
+
+                removeStmt(assign);
+                removedStmts++;
+                changed = true;
+            }
+        }
+
+        Set<String> referenced = new HashSet<>();
+        for (JmmNode ref : method.getDescendants(VAR_REF_EXPR)) referenced.add(ref.get("name"));
+
+        int removed = 0;
+        for (JmmNode varDecl : new ArrayList<>(method.getChildren(VAR_DECL))) {
+            String name = varDecl.get("name");
+            if (referenced.contains(name)) continue;
+
+            method.removeChild(varDecl);
+            locals.removeIf(local -> local.getName().equals(name));
+            removed++;
+        }
+        return removed;
+    }
+
+    // Variables used anywhere other than as the direct target of an assignment.
+    // A read inside a pure update of the same variable (i = i + 1) does not count.
+    private static Set<String> readVariables(JmmNode method) {
+        Set<String> read = new HashSet<>();
+        for (JmmNode ref : method.getDescendants(VAR_REF_EXPR)) {
+            String name = ref.get("name");
+            JmmNode assign = ref.getAncestor(ASSIGN_STMT).orElse(null);
+
+            if (assign != null && VAR_REF_EXPR.check(assign.getChild(0))
+                    && assign.getChild(0).get("name").equals(name)) {
+                if (assign.getChild(0) == ref || OptUtils.isPure(assign.getChild(1))) continue;
+            }
+            read.add(name);
+        }
+        return read;
+    }
+}
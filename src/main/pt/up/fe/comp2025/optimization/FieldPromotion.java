@@ -0,0 +1,185 @@
+package pt.up.fe.comp2025.optimization;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2025.ast.TypeUtils;
+import pt.up.fe.comp2025.optimization.PurityAnalysis.Effect;
+import pt.up.fe.comp2025.utils.ReportUtils;
+
+import java.util.*;
+
+import static pt.up.fe.comp2025.ast.Kind.*;
+
+/**
+ * Promotes the fields used in a loop to locals for the duration of the loop.
+ * <p>
+ * Every field reference is a {@code getfield} and every field assignment a {@code putfield}, so
+ * an accumulator field in a loop is loaded and stored on each iteration. If nothing in the loop
+ * can observe the fields (it only calls {@link Effect#PURE} methods of this class, and imported
+ * methods that get neither {@code this} nor objects), each field it uses is loaded once into a
+ * local before the loop, the loop uses the local, and fields the loop writes are stored back
+ * after it. Loops that write a field and contain a return are skipped, since the return would
+ * leave without the store.
+ * <p>
+ * The outermost loop that qualifies is promoted. The report counts the field loads removed
+ * from the code, each of which ran once per iteration.
+ */
+public class FieldPromotion {
+
+    private final SymbolTable table;
+    private final TypeUtils types;
+    private final List<Report> reports;
+
+    private CallGraph graph;
+    private PurityAnalysis effects;
+
+    public FieldPromotion(SymbolTable table) {
+        this.table = table;
+        this.types = new TypeUtils(table);
+        this.reports = new ArrayList<>();
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    /**
+     * Promotes the fields of the loops of every method of the program.
+     *
+     * @return the number of field loads removed
+     */
+    public int apply(JmmNode root) {
+        graph = CallGraph.build(root, table);
+        effects = PurityAnalysis.analyze(root, table);
+        JmmNode classDecl = root.getDescendants(CLASS_DECL).getFirst();
+
+        int total = 0;
+        for (JmmNode method : root.getDescendants(METHOD_DECL)) {
+            if (Boolean.TRUE.equals(method.getOptionalObject("isStatic").orElse(false))) continue;
+
+            int removed = 0;
+            List<String> promoted = new ArrayList<>();
+            for (JmmNode loop : method.getDescendants(WHILE_STMT)) {
+                // Loops inside a promoted loop no longer use fields
+                if (!isInStatementList(loop) || !canPromote(loop, method)) continue;
+                removed += promote(loop, method, classDecl, promoted);
+            }
+
+            if (!promoted.isEmpty()) {
+                reports.add(ReportUtils.buildLogReport(Stage.OPTIMIZATION, method,
+                        String.format("Field promotion in '%s': %s kept in locals in loops, %d field loads removed",
+                                method.get("name"), promoted, removed)));
+            }
+            total += removed;
+        }
+
+        return total;
+    }
+
+    private boolean canPromote(JmmNode loop, JmmNode method) {
+        for (JmmNode call : loop.getDescendants(METHOD_CALL)) {
+            if (graph.isLocalCall(call)) {
+                if (effects.getEffect(call.get("name")) != Effect.PURE) return false;
+                continue;
+            }
+            // Imported code could only see the fields through 'this' or an object of this class
+            for (JmmNode arg : call.getChildren()) {
+                if (THIS_REF.check(arg) || !arg.getDescendants(THIS_REF).isEmpty()) return false;
+                if (arg.getIndexOfSelf() == 0 && VAR_REF_EXPR.check(arg) && !isVariable(arg.get("name"), method)) continue;
+                if (!isPrimitive(arg)) return false;
+            }
+        }
+
+        Set<String> written = fieldsWritten(loop, method);
+        return written.isEmpty() || loop.getDescendants(RETURN_STMT).isEmpty();
+    }
+
+    private int promote(JmmNode loop, JmmNode method, JmmNode classDecl, List<String> promoted) {
+        String methodName = method.get("name");
+
+        // Field references in the loop, grouped by field
+        Map<String, List<JmmNode>> refs = new LinkedHashMap<>();
+        for (JmmNode ref : loop.getDescendants(VAR_REF_EXPR)) {
+            String name = ref.get("name");
+            if (isField(name, method)) refs.computeIfAbsent(name, k -> new ArrayList<>()).add(ref);
+        }
+        if (refs.isEmpty()) return 0;
+
+        Set<String> written = fieldsWritten(loop, method);
+        JmmNode list = loop.getParent();
+
+        Set<String> taken = new HashSet<>();
+        table.getParameters(methodName).forEach(param -> taken.add(param.getName()));
+        table.getLocalVariables(methodName).forEach(local -> taken.add(local.getName()));
+        table.getFields().forEach(field -> taken.add(field.getName()));
+
+        int removed = 0;
+        for (Map.Entry<String, List<JmmNode>> entry : refs.entrySet()) {
+            String field = entry.getKey();
+            String local = field + "_p";
+            while (taken.contains(local)) local += "_";
+            taken.add(local);
+
+            JmmNode fieldDecl = classDecl.getChildren(VAR_DECL).stream()
+                    .filter(varDecl -> varDecl.get("name").equals(field))
+                    .findFirst().orElseThrow();
+            Type type = TypeUtils.convertType(fieldDecl.getChild(0));
+            table.getLocalVariables(methodName).add(new Symbol(type, local));
+            method.add(OptUtils.newVarDecl(local, fieldDecl.getChild(0)), OptUtils.firstStatementIndex(method));
+
+            int loads = 0;
+            for (JmmNode ref : entry.getValue()) {
+                boolean isStore = ASSIGN_STMT.check(ref.getParent()) && ref.getIndexOfSelf() == 0;
+                if (!isStore) loads++;
+                ref.put("name", local);
+            }
+
+            list.add(OptUtils.newAssign(local, OptUtils.newVarRef(field)), loop.getIndexOfSelf());
+            if (written.contains(field)) {
+                list.add(OptUtils.newAssign(field, OptUtils.newVarRef(local)), loop.getIndexOfSelf() + 1);
+            }
+
+            // One load before the loop replaces every load inside it
+            removed += Math.max(loads - 1, 0);
+            promoted.add(field);
+        }
+        return removed;
+    }
+
+    private Set<String> fieldsWritten(JmmNode loop, JmmNode method) {
+        Set<String> written = new HashSet<>();
+        for (JmmNode assign : loop.getDescendants(ASSIGN_STMT)) {
+            JmmNode target = assign.getChild(0);
+            if (VAR_REF_EXPR.check(target) && isField(target.get("name"), method)) written.add(target.get("name"));
+        }
+        return written;
+    }
+
+    private boolean isPrimitive(JmmNode expr) {
+        try {
+            Type type = types.getExprType(expr);
+            return type != null && (type.getName().equals("int") || type.getName().equals("boolean"));
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private boolean isField(String name, JmmNode method) {
+        return !isVariable(name, method) && table.getFields().stream().anyMatch(field -> field.getName().equals(name));
+    }
+
+    private boolean isVariable(String name, JmmNode method) {
+        String methodName = method.get("name");
+        return table.getParameters(methodName).stream().anyMatch(param -> param.getName().equals(name))
+                || table.getLocalVariables(methodName).stream().anyMatch(local -> local.getName().equals(name));
+    }
+
+    private static boolean isInStatementList(JmmNode stmt) {
+        JmmNode parent = stmt.getParent();
+        return METHOD_DECL.check(parent) || BRACKET_STMT.check(parent);
+    }
+}
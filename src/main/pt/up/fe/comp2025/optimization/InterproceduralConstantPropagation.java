@@ -0,0 +1,204 @@
+package pt.up.fe.comp2025.optimization;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2025.ast.Kind;
+import pt.up.fe.comp2025.ast.TypeUtils;
+import pt.up.fe.comp2025.utils.ReportUtils;
+
+import java.util.*;
+
+import static pt.up.fe.comp2025.ast.Kind.*;
+
+/**
+ * Constant propagation across the methods of the compiled class, driven by its {@link CallGraph}.
+ * <p>
+ * A parameter that receives the same literal at every call site is seeded as a constant into
+ * the callee's sparse constant propagation, and a call to a method whose returns all yield the
+ * same literal evaluates to that literal. Calls to methods without side effects are replaced by
+ * the literal outright; other calls are kept, but the value they produce is still propagated.
+ * <p>
+ * In a library, other classes may call the public methods and override any of them, so only the
+ * parameters of non-public methods are seeded (see {@link CallGraph#hasOnlyLocalCallers}), and
+ * only calls known to run this class's method use its return (see {@link CallGraph#hasKnownTarget}).
+ * <p>
+ * Since seeding can turn more arguments into literals, the process repeats until nothing new is learnt.
+ * Only applies when the class is a whole program (see {@link CallGraph#isClosedWorld()}).
+ */
+public class InterproceduralConstantPropagation {
+
+    private final SymbolTable table;
+    private final boolean library;
+    private final List<Report> reports;
+
+    public InterproceduralConstantPropagation(SymbolTable table, boolean library) {
+        this.table = table;
+        this.library = library;
+        this.reports = new ArrayList<>();
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    /**
+     * Runs the propagation on the class declared under 'root'.
+     *
+     * @return the number of constant parameters and constant calls found
+     */
+    public int apply(JmmNode root) {
+        if (!CallGraph.build(root, table).isClosedWorld()) return 0;
+
+        Map<String, Map<String, Object>> parameterConstants = new HashMap<>();
+        Map<String, Object> returnConstants = new HashMap<>();
+        int callsFolded = 0;
+
+        // Each round can only learn new facts, so the number of methods bounds the useful rounds
+        int maxRounds = table.getMethods().size() + 1;
+        for (int round = 0; round < maxRounds; round++) {
+            CallGraph graph = CallGraph.build(root, table);
+
+            Map<String, Map<String, Object>> newParams = findConstantParameters(graph);
+            Map<String, Object> newReturns = findConstantReturns(graph);
+
+            // Calls to constant-returning methods; side-effect free ones become literals, if the
+            // arguments are also pure and the receiver is not null, since their code would go with the call
+            Map<JmmNode, Object> callConstants = new IdentityHashMap<>();
+            int folded = 0;
+            for (var entry : newReturns.entrySet()) {
+                boolean pure = isSideEffectFree(graph.getMethod(entry.getKey()));
+                for (JmmNode call : graph.getCallSites(entry.getKey())) {
+                    if (!graph.hasKnownTarget(call, library)) continue;
+
+                    if (pure && graph.hasNonNullReceiver(call)
+                            && call.getChildren().stream().skip(1).allMatch(OptUtils::isPure)) {
+                        call.replace(OptUtils.newLiteral(entry.getValue()));
+                        folded++;
+                    } else {
+                        callConstants.put(call, entry.getValue());
+                    }
+                }
+            }
+            callsFolded += folded;
+
+            if (newParams.equals(parameterConstants) && newReturns.equals(returnConstants) && folded == 0) break;
+            parameterConstants = newParams;
+            returnConstants = newReturns;
+
+            SparseConstantPropagation propagation = new SparseConstantPropagation(table);
+            propagation.setParameterConstants(parameterConstants);
+            propagation.setCallConstants(callConstants);
+            propagation.apply(root);
+        }
+
+        int constantParams = parameterConstants.values().stream().mapToInt(Map::size).sum();
+        if (constantParams > 0 || !returnConstants.isEmpty()) {
+            StringBuilder message = new StringBuilder("Interprocedural constants:");
+            parameterConstants.forEach((method, params) -> params.forEach((param, value) ->
+                    message.append(String.format(" parameter '%s' of '%s' = %s;", param, method, value))));
+            returnConstants.forEach((method, value) ->
+                    message.append(String.format(" '%s' returns %s;", method, value)));
+            message.append(String.format(" %d calls folded", callsFolded));
+            reports.add(ReportUtils.buildLogReport(Stage.OPTIMIZATION, root, message.toString()));
+        }
+
+        return constantParams + returnConstants.size();
+    }
+
+    // Parameters that receive the same literal at every call site of their method
+    private Map<String, Map<String, Object>> findConstantParameters(CallGraph graph) {
+        Map<String, Map<String, Object>> result = new HashMap<>();
+
+        for (JmmNode method : graph.getMethods()) {
+            String name = method.get("name");
+            List<JmmNode> calls = graph.getCallSites(name);
+            List<Symbol> params = table.getParameters(name);
+            if (!graph.hasOnlyLocalCallers(name, library)) continue;
+            if (calls.isEmpty() || params.stream().anyMatch(p -> TypeUtils.isVararg(p.getType()))) continue;
+
+            Map<String, Object> constants = new HashMap<>();
+            for (int i = 0; i < params.size(); i++) {
+                if (!isScalar(params.get(i).getType())) continue;
+
+                Object value = null;
+                for (JmmNode call : calls) {
+                    if (call.getNumChildren() != params.size() + 1) {
+                        value = null;
+                        break;
+                    }
+                    Object arg = OptUtils.getLiteralValue(call.getChild(i + 1));
+                    if (arg == null || (value != null && !value.equals(arg))) {
+                        value = null;
+                        break;
+                    }
+                    value = arg;
+                }
+                if (value != null) constants.put(params.get(i).getName(), value);
+            }
+
+            if (!constants.isEmpty()) result.put(name, constants);
+        }
+        return result;
+    }
+
+    // Methods whose every return yields the same literal
+    private Map<String, Object> findConstantReturns(CallGraph graph) {
+        Map<String, Object> result = new HashMap<>();
+
+        for (JmmNode method : graph.getMethods()) {
+            String name = method.get("name");
+            if (!isScalar(table.getReturnType(name))) continue;
+
+            Object value = null;
+            for (JmmNode ret : method.getDescendants(RETURN_STMT)) {
+                Object returned = OptUtils.getLiteralValue(ret.getChild(0));
+                if (returned == null || (value != null && !value.equals(returned))) {
+                    value = null;
+                    break;
+                }
+                value = returned;
+            }
+            if (value != null) result.put(name, value);
+        }
+        return result;
+    }
+
+    private static boolean isScalar(Type type) {
+        return !type.isArray() && (type.getName().equals("int") || type.getName().equals("boolean"));
+    }
+
+    /**
+     * True if calling the method has no observable effect besides its return value:
+     * it always terminates (no loops, no calls), writes only its own locals and cannot throw.
+     */
+    private boolean isSideEffectFree(JmmNode method) {
+        String name = method.get("name");
+        Set<String> variables = new HashSet<>();
+        table.getParameters(name).forEach(p -> variables.add(p.getName()));
+        table.getLocalVariables(name).forEach(l -> variables.add(l.getName()));
+
+        for (JmmNode stmt : method.getDescendants(STMT)) {
+            switch (Kind.fromString(stmt.getKind())) {
+                case ASSIGN_STMT -> {
+                    JmmNode lhs = stmt.getChild(0);
+                    if (!VAR_REF_EXPR.check(lhs) || !variables.contains(lhs.get("name"))) return false;
+                    if (!OptUtils.isPure(stmt.getChild(1))) return false;
+                }
+                case RETURN_STMT, IF_STMT -> {
+                    if (!OptUtils.isPure(stmt.getChild(0))) return false;
+                }
+                case BRACKET_STMT -> {
+                }
+                default -> {
+                    // WhileStmt (may not terminate), ExprStmt
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
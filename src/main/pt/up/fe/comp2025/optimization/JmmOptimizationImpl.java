@@ -3,25 +3,51 @@ package pt.up.fe.comp2025.optimization;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
 import pt.up.fe.comp.jmm.ollir.JmmOptimization;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
 
 import pt.up.fe.comp2025.ConfigOptions;
+import pt.up.fe.comp2025.optimization.ollir.CopyPropagation;
+import pt.up.fe.comp2025.optimization.ollir.DeadStoreElimination;
+import pt.up.fe.comp2025.optimization.ollir.LocalValueNumbering;
+import pt.up.fe.comp2025.optimization.ollir.LoopInvariantCodeMotion;
+import pt.up.fe.comp2025.optimization.ollir.StrengthReduction;
 
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.List;
 
 public class JmmOptimizationImpl implements JmmOptimization {
 
     @Override
     public OllirResult toOllir(JmmSemanticsResult semanticsResult) {
 
+        List<Report> reports = new ArrayList<>();
+
+        // With -o, only the methods and fields reachable from the entry points are generated
+        Reachability reachability = null;
+        var config = semanticsResult.getConfig();
+        boolean optimize = config != null && ConfigOptions.getOptimize(config);
+        if (optimize) {
+            reachability = Reachability.analyze(semanticsResult.getRootNode(), semanticsResult.getSymbolTable(),
+                    ConfigOptions.getLibrary(config));
+            reports.addAll(reachability.getReports(semanticsResult.getRootNode()));
+        }
+
+        // With -o, loops are tested at the bottom and the likely arm of each if falls through
+        BranchProfile profile = optimize
+                ? BranchProfile.load(config, semanticsResult.getRootNode(), reports)
+                : BranchProfile.EMPTY;
+
         // Create visitor that will generate the OLLIR code
-        var visitor = new OllirGeneratorVisitor(semanticsResult.getSymbolTable());
+        var visitor = new OllirGeneratorVisitor(semanticsResult.getSymbolTable(), reachability, optimize, profile);
 
         // Visit the AST and obtain OLLIR code
         var ollirCode = visitor.visit(semanticsResult.getRootNode());
 
         //System.out.println("\nOLLIR:\n\n" + ollirCode);
 
-        return new OllirResult(semanticsResult, ollirCode, Collections.emptyList());
+        // OllirResult is only built from text, which it parses once into the ClassUnit that the
+        // OLLIR passes and the backend then change and read in place, without printing it again
+        return new OllirResult(semanticsResult, ollirCode, reports);
     }
 
     @Override
@@ -34,30 +60,154 @@ public class JmmOptimizationImpl implements JmmOptimization {
         }
 
         // Check for optimization option
-        if (semanticsResult.getConfig().containsKey("optimize")) {
-            // Instantiate visitors
-            ConstantPropagationVisitor propagationVisitor = new ConstantPropagationVisitor();
-            ConstantFoldingVisitor foldingVisitor = new ConstantFoldingVisitor();
-            do {
-                // reset state
-                propagationVisitor.resetModified();
-                foldingVisitor.resetModified();
-
-                // apply propagation optimization
+        if (ConfigOptions.getOptimize(semanticsResult.getConfig())) {
+            List<Report> reports = new ArrayList<>(semanticsResult.getReports());
+
+            // Inline small methods first, so that the passes below see through the calls
+            MethodInlining inlining = new MethodInlining(semanticsResult.getSymbolTable(),
+                    ConfigOptions.getInlineBudget(semanticsResult.getConfig()),
+                    ConfigOptions.getLibrary(semanticsResult.getConfig()));
+            try {
+                inlining.apply(semanticsResult.getRootNode());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            reports.addAll(inlining.getReports());
+
+            // Instances of the class that only serve as receivers of inlinable calls become field locals
+            ObjectScalarReplacement objects = new ObjectScalarReplacement(semanticsResult.getSymbolTable());
+            try {
+                objects.apply(semanticsResult.getRootNode());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            reports.addAll(objects.getReports());
+
+            // Small local arrays that do not escape become one local per element
+            ArrayScalarReplacement arrays = new ArrayScalarReplacement(semanticsResult.getSymbolTable());
+            try {
+                arrays.apply(semanticsResult.getRootNode());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            reports.addAll(arrays.getReports());
+
+            // Propagation + folding, driven by a worklist over each method's CFG
+            SparseConstantPropagation propagation = new SparseConstantPropagation(semanticsResult.getSymbolTable());
+            try {
+                propagation.apply(semanticsResult.getRootNode());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            reports.addAll(propagation.getReports());
+
+            // Constant arguments and return values across the class's own methods
+            InterproceduralConstantPropagation interprocedural =
+                    new InterproceduralConstantPropagation(semanticsResult.getSymbolTable(),
+                            ConfigOptions.getLibrary(semanticsResult.getConfig()));
+            try {
+                interprocedural.apply(semanticsResult.getRootNode());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            reports.addAll(interprocedural.getReports());
+
+            // Clones of small methods for call sites that pass some constant arguments
+            MethodSpecialization specialization = new MethodSpecialization(semanticsResult.getSymbolTable(),
+                    ConfigOptions.getCloneBudget(semanticsResult.getConfig()),
+                    ConfigOptions.getLibrary(semanticsResult.getConfig()));
+            try {
+                specialization.apply(semanticsResult.getRootNode());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            reports.addAll(specialization.getReports());
+
+            // Unused and repeated calls to methods without effects
+            RedundantCallElimination calls = new RedundantCallElimination(semanticsResult.getSymbolTable());
+            try {
+                calls.apply(semanticsResult.getRootNode());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            reports.addAll(calls.getReports());
+
+            // Fold comparisons whose outcome is known from the ranges of their operands
+            RangeAnalysis ranges = new RangeAnalysis(semanticsResult.getSymbolTable(),
+                    ConfigOptions.getPrintRanges(semanticsResult.getConfig()));
+            try {
+                ranges.apply(semanticsResult.getRootNode());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            reports.addAll(ranges.getReports());
+
+            // Loops with a known trip count become straight-line code, or run several iterations per test
+            if (ConfigOptions.getUnroll(semanticsResult.getConfig())) {
+                LoopUnrolling unrolling = new LoopUnrolling(ConfigOptions.getUnrollFactor(semanticsResult.getConfig()),
+                        ConfigOptions.getUnrollBudget(semanticsResult.getConfig()));
+                int unrolled = 0;
                 try {
-                    propagationVisitor.visit(semanticsResult.getRootNode(), semanticsResult.getSymbolTable());
+                    unrolled = unrolling.apply(semanticsResult.getRootNode());
                 } catch (Exception e) {
                     e.printStackTrace();
                 }
+                reports.addAll(unrolling.getReports());
+
+                // Each copy of an unrolled body sees a known value of the counter
+                if (unrolled > 0) {
+                    SparseConstantPropagation repropagation =
+                            new SparseConstantPropagation(semanticsResult.getSymbolTable());
+                    try {
+                        repropagation.apply(semanticsResult.getRootNode());
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                    reports.addAll(repropagation.getReports());
+                }
+            }
+
+            // Remove the dead arms, loops and locals left behind by folding
+            DeadCodeElimination dce = new DeadCodeElimination(semanticsResult.getSymbolTable());
+            try {
+                dce.apply(semanticsResult.getRootNode());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            reports.addAll(dce.getReports());
+
+            // Fields used in loops are kept in locals while the loop runs
+            FieldPromotion fieldPromotion = new FieldPromotion(semanticsResult.getSymbolTable());
+            try {
+                fieldPromotion.apply(semanticsResult.getRootNode());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            reports.addAll(fieldPromotion.getReports());
+
+            // Self-calls in tail position become jumps when the OLLIR is generated
+            TailRecursionElimination tailCalls = new TailRecursionElimination(semanticsResult.getSymbolTable());
+            try {
+                tailCalls.apply(semanticsResult.getRootNode());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            reports.addAll(tailCalls.getReports());
 
-                // apply folding optimization
+            // Opt-in: memo tables for recursive methods whose result depends only on their arguments,
+            // unless their tail calls above already turned the recursion into a loop
+            if (ConfigOptions.getMemoize(semanticsResult.getConfig())) {
+                Memoization memoization = new Memoization(semanticsResult.getSymbolTable(),
+                        ConfigOptions.getMemoStats(semanticsResult.getConfig()));
                 try {
-                    foldingVisitor.visit(semanticsResult.getRootNode());
+                    memoization.apply(semanticsResult.getRootNode());
                 } catch (Exception e) {
                     e.printStackTrace();
                 }
+                reports.addAll(memoization.getReports());
             }
-            while(propagationVisitor.hasModified() || foldingVisitor.hasModified());
+
+            return new JmmSemanticsResult(semanticsResult, reports);
         }
         return semanticsResult;
     }
@@ -68,6 +218,37 @@ public class JmmOptimizationImpl implements JmmOptimization {
         if (ollirResult.getConfig() == null)
             return ollirResult;
 
+        if (ConfigOptions.getOptimize(ollirResult.getConfig())) {
+            // Repeated computations within a block become copies
+            try {
+                new LocalValueNumbering(ollirResult.getOllirClass()).apply();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+
+            // Invariant computations leave their loops
+            try {
+                new LoopInvariantCodeMotion(ollirResult.getOllirClass()).apply();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+
+            // Multiplications by induction variables become additions
+            try {
+                new StrengthReduction(ollirResult.getOllirClass()).apply();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+
+            // Temporaries copied into variables are read directly, and stores nobody reads go
+            try {
+                new CopyPropagation(ollirResult.getOllirClass()).apply();
+                new DeadStoreElimination(ollirResult.getOllirClass()).apply();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+
         int registers = ConfigOptions.getRegisterAllocation(ollirResult.getConfig());
 
         if (registers < 0)
@@ -0,0 +1,145 @@
+package pt.up.fe.comp2025.optimization;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2025.utils.ReportUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static pt.up.fe.comp2025.ast.Kind.*;
+
+/**
+ * Unrolls the loops whose trip count {@link RangeAnalysis} found.
+ * <p>
+ * A loop with few iterations and a small body is replaced by one copy of its body per iteration.
+ * A longer loop runs 'factor' copies of its body per iteration, while its counter stays below the
+ * value it has after the last complete group of 'factor' iterations; since the trip count is
+ * known, the remaining iterations follow the loop as straight-line copies. The condition is pure
+ * (it only compares the counter), so skipping its evaluations is unobservable.
+ * <p>
+ * Inner loops are unrolled first, and the total growth stays within a budget (a percentage of the
+ * class size).
+ */
+public class LoopUnrolling {
+
+    // Loops with at most this many iterations, and bodies of at most this many nodes once copied, are fully unrolled
+    private static final int MAX_FULL_TRIPS = 16;
+    private static final int MAX_FULL_SIZE = 200;
+    // Bodies larger than this are not copied for partial unrolling
+    private static final int MAX_PARTIAL_BODY = 80;
+
+    private final int factor;
+    private final int budgetPercent;
+    private final List<Report> reports;
+
+    public LoopUnrolling(int factor, int budgetPercent) {
+        this.factor = factor;
+        this.budgetPercent = budgetPercent;
+        this.reports = new ArrayList<>();
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    /**
+     * Unrolls the loops of the class declared under 'root'.
+     *
+     * @return the number of loops unrolled
+     */
+    public int apply(JmmNode root) {
+        JmmNode classDecl = root.getDescendants(CLASS_DECL).getFirst();
+        int budget = classDecl.getDescendants().size() * budgetPercent / 100;
+        int growth = 0;
+
+        int full = 0;
+        int partial = 0;
+        for (JmmNode loop : innermostFirst(root)) {
+            Object trips = loop.getOptionalObject(RangeAnalysis.TRIP_COUNT).orElse(null);
+            if (!(trips instanceof Integer count)) continue;
+
+            JmmNode parent = loop.getParent();
+            if (!METHOD_DECL.check(parent) && !BRACKET_STMT.check(parent)) continue;
+
+            List<JmmNode> body = statementsOf(loop.getChild(1));
+            int size = body.stream().mapToInt(stmt -> stmt.getDescendants().size() + 1).sum();
+
+            int fullGrowth = (count - 1) * size;
+            int partialGrowth = (factor - 1 + count % factor) * size;
+            if (count <= MAX_FULL_TRIPS && count * size <= MAX_FULL_SIZE && growth + fullGrowth <= budget) {
+                unrollFully(loop, body, count);
+                growth += Math.max(fullGrowth, 0);
+                full++;
+            } else if (factor > 1 && count >= 2 * factor && size <= MAX_PARTIAL_BODY
+                    && growth + partialGrowth <= budget) {
+                unrollPartially(loop, body, count);
+                growth += partialGrowth;
+                partial++;
+            }
+        }
+
+        if (full + partial > 0) {
+            reports.add(ReportUtils.buildLogReport(Stage.OPTIMIZATION, classDecl,
+                    String.format("Loop unrolling: %d loops fully unrolled, %d unrolled by %d (%d nodes of budget %d used)",
+                            full, partial, factor, growth, budget)));
+        }
+        return full + partial;
+    }
+
+    private static void unrollFully(JmmNode loop, List<JmmNode> body, int count) {
+        JmmNode block = newBlock();
+        for (int i = 0; i < count; i++) {
+            body.forEach(stmt -> block.add(OptUtils.copyTree(stmt)));
+        }
+        loop.replace(block);
+    }
+
+    private void unrollPartially(JmmNode loop, List<JmmNode> body, int count) {
+        int start = (Integer) loop.getObject(RangeAnalysis.TRIP_START);
+        int step = (Integer) loop.getObject(RangeAnalysis.TRIP_STEP);
+        int groups = count / factor;
+
+        // The counter after the last complete group; the loop runs while it has not been reached
+        JmmNode cond = loop.getChild(0);
+        cond.getChild(1).replace(OptUtils.newLiteral(start + groups * factor * step));
+
+        JmmNode unrolled = newBlock();
+        for (int i = 0; i < factor; i++) {
+            body.forEach(stmt -> unrolled.add(OptUtils.copyTree(stmt)));
+        }
+        loop.getChild(1).replace(unrolled);
+
+        JmmNode list = loop.getParent();
+        int index = loop.getIndexOfSelf() + 1;
+        for (int i = 0; i < count % factor; i++) {
+            for (JmmNode stmt : body) list.add(OptUtils.copyTree(stmt), index++);
+        }
+
+        // Each iteration of the loop now advances the counter by 'factor' steps
+        loop.putObject(RangeAnalysis.TRIP_COUNT, groups);
+        loop.putObject(RangeAnalysis.TRIP_STEP, factor * step);
+    }
+
+    private static List<JmmNode> statementsOf(JmmNode body) {
+        return BRACKET_STMT.check(body) ? new ArrayList<>(body.getChildren()) : List.of(body);
+    }
+
+    // Post-order, so that inner loops come before the loops that contain them
+    private static List<JmmNode> innermostFirst(JmmNode root) {
+        List<JmmNode> loops = new ArrayList<>();
+        collectLoops(root, loops);
+        return loops;
+    }
+
+    private static void collectLoops(JmmNode node, List<JmmNode> loops) {
+        for (JmmNode child : node.getChildren()) collectLoops(child, loops);
+        if (WHILE_STMT.check(node)) loops.add(node);
+    }
+
+    private static JmmNode newBlock() {
+        return new JmmNodeImpl(List.of(BRACKET_STMT.toString(), STMT.toString()));
+    }
+}
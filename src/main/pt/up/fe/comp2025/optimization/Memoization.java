@@ -0,0 +1,289 @@
+package pt.up.fe.comp2025.optimization;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2025.ast.TypeUtils;
+import pt.up.fe.comp2025.parser.JmmParserImpl;
+import pt.up.fe.comp2025.symboltable.JmmSymbolTable;
+import pt.up.fe.comp2025.utils.ReportUtils;
+
+import java.util.*;
+
+import static pt.up.fe.comp2025.ast.Kind.*;
+
+/**
+ * Memoization of recursive methods whose result only depends on their int/boolean arguments
+ * (see {@link PurityAnalysis}).
+ * <p>
+ * The original body of such a method 'f' moves to 'f_compute', and 'f' becomes a wrapper that
+ * looks the arguments up in a memo table before computing. Recursive calls in the body still
+ * call 'f', so every recursive step goes through the table, except for the tail calls already
+ * marked by {@link TailRecursionElimination}, which jump back to the start of 'f_compute'.
+ * Methods that only recurse through such tail calls already run as loops and are left alone. The table is an open-addressing
+ * hash map with linear probing, stored as int array fields of the object and allocated on the
+ * first call; a call whose arguments find no slot within a few probes is just computed.
+ * <p>
+ * The generated code is written in Java-- and parsed, so it goes through the usual code
+ * generation. With the stats option, hits and misses are counted in fields that can be read
+ * through 'f_memoHitCount()' and 'f_memoMissCount()'.
+ */
+public class Memoization {
+
+    private static final int CAPACITY = 4096;
+    private static final int MAX_PROBES = 16;
+
+    private final SymbolTable table;
+    private final boolean stats;
+    private final List<Report> reports;
+
+    public Memoization(SymbolTable table, boolean stats) {
+        this.table = table;
+        this.stats = stats;
+        this.reports = new ArrayList<>();
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    /**
+     * Memoizes the qualifying methods of the class declared under 'root'.
+     *
+     * @return the number of methods memoized
+     */
+    public int apply(JmmNode root) {
+        if (!(table instanceof JmmSymbolTable jmmTable)) return 0;
+
+        CallGraph graph = CallGraph.build(root, table);
+        PurityAnalysis purity = PurityAnalysis.analyze(root, table);
+        JmmNode classDecl = root.getDescendants(CLASS_DECL).getFirst();
+
+        List<String> memoized = new ArrayList<>();
+        for (JmmNode method : new ArrayList<>(graph.getMethods())) {
+            String name = method.get("name");
+            if (purity.getEffect(name) != PurityAnalysis.Effect.PURE || !graph.isRecursive(name) || !qualifies(method)) continue;
+            if (recursesOnlyByTailCalls(method, graph)) continue;
+
+            memoize(method, classDecl, jmmTable);
+            memoized.add(name);
+        }
+
+        if (!memoized.isEmpty()) {
+            reports.add(ReportUtils.buildLogReport(Stage.OPTIMIZATION, classDecl,
+                    String.format("Memoized %d methods (table of %d slots each): %s",
+                            memoized.size(), CAPACITY, String.join(", ", memoized))));
+        }
+        return memoized.size();
+    }
+
+    // True if every call back into the method is a self-call marked as a tail call
+    private static boolean recursesOnlyByTailCalls(JmmNode method, CallGraph graph) {
+        String name = method.get("name");
+        for (JmmNode call : method.getDescendants(METHOD_CALL)) {
+            if (!graph.isLocalCall(call) || !graph.reaches(call.get("name"), name)) continue;
+
+            boolean tailCall = call.get("name").equals(name)
+                    && call.getParent().getOptionalObject(TailRecursionElimination.TAIL_CALL).isPresent();
+            if (!tailCall) return false;
+        }
+        return true;
+    }
+
+    private boolean qualifies(JmmNode method) {
+        String name = method.get("name");
+        if (Boolean.TRUE.equals(method.getOptionalObject("isStatic").orElse(false))) return false;
+        if (!isScalar(table.getReturnType(name))) return false;
+
+        List<Symbol> params = table.getParameters(name);
+        if (params.isEmpty() || !params.stream().allMatch(param -> isScalar(param.getType()))) return false;
+
+        // The generated names must be free
+        Set<String> taken = new HashSet<>(table.getMethods());
+        table.getFields().forEach(field -> taken.add(field.getName()));
+        params.forEach(param -> taken.add(param.getName()));
+        for (String generated : generatedNames(name, params.size())) {
+            if (taken.contains(generated)) return false;
+        }
+        return true;
+    }
+
+    private List<String> generatedNames(String name, int numParams) {
+        List<String> names = new ArrayList<>(List.of(name + "_compute", name + "_memoSlot", name + "_memoReady",
+                name + "_memoUsed", name + "_memoValue", name + "_memoHits", name + "_memoMisses",
+                name + "_memoHitCount", name + "_memoMissCount",
+                "memo_slot", "memo_result", "memo_used", "memo_values", "memo_keys"));
+        for (int i = 0; i < numParams; i++) {
+            names.add(name + "_memoKey" + i);
+            names.add("memo_k" + i);
+        }
+        return names;
+    }
+
+    private void memoize(JmmNode method, JmmNode classDecl, JmmSymbolTable jmmTable) {
+        String name = method.get("name");
+        List<Symbol> params = table.getParameters(name);
+        Type returnType = table.getReturnType(name);
+
+        // The original body becomes 'f_compute'
+        String compute = name + "_compute";
+        method.put("name", compute);
+        jmmTable.addMethod(compute, false, returnType, params, table.getLocalVariables(name));
+
+        int index = method.getIndexOfSelf();
+        List<String> methods = new ArrayList<>(List.of(wrapperCode(name, params, returnType), slotCode(name, params.size())));
+        if (stats) {
+            methods.add(String.format("public int %s_memoHitCount() { return %s_memoHits; }", name, name));
+            methods.add(String.format("public int %s_memoMissCount() { return %s_memoMisses; }", name, name));
+        }
+        for (String code : methods) {
+            JmmNode generated = parse(code, "methodDecl");
+            classDecl.add(generated, index++);
+            register(generated, jmmTable);
+        }
+
+        // Fields go before the methods
+        List<String> fields = new ArrayList<>(List.of("boolean " + name + "_memoReady;",
+                "int[] " + name + "_memoUsed;", "int[] " + name + "_memoValue;"));
+        for (int i = 0; i < params.size(); i++) fields.add("int[] " + name + "_memoKey" + i + ";");
+        if (stats) {
+            fields.add("int " + name + "_memoHits;");
+            fields.add("int " + name + "_memoMisses;");
+        }
+        int fieldIndex = classDecl.getChildren(METHOD_DECL).getFirst().getIndexOfSelf();
+        for (String code : fields) {
+            JmmNode field = parse(code, "varDecl");
+            classDecl.add(field, fieldIndex++);
+            jmmTable.addField(new Symbol(TypeUtils.convertType(field.getChild(0)), field.get("name")));
+        }
+    }
+
+    // The method that replaces 'name': looks the arguments up, computes and stores on a miss
+    private String wrapperCode(String name, List<Symbol> params, Type returnType) {
+        String ret = returnType.getName();
+        boolean booleanResult = ret.equals("boolean");
+
+        StringJoiner paramList = new StringJoiner(", ");
+        StringJoiner args = new StringJoiner(", ");
+        StringJoiner keys = new StringJoiner(", ");
+        for (int i = 0; i < params.size(); i++) {
+            paramList.add(params.get(i).getType().getName() + " " + params.get(i).getName());
+            args.add(params.get(i).getName());
+            keys.add("memo_k" + i);
+        }
+
+        StringBuilder code = new StringBuilder();
+        code.append(String.format("public %s %s(%s) {%n", ret, name, paramList));
+        code.append("int memo_slot; int[] memo_used; int[] memo_values; int[] memo_keys;\n");
+        code.append(ret).append(" memo_result;\n");
+        for (int i = 0; i < params.size(); i++) code.append("int memo_k").append(i).append(";\n");
+
+        // Allocate the table on the first call
+        code.append(String.format("if (!%s_memoReady) {%n", name));
+        code.append(String.format("%s_memoUsed = new int[%d];%n", name, CAPACITY));
+        code.append(String.format("%s_memoValue = new int[%d];%n", name, CAPACITY));
+        for (int i = 0; i < params.size(); i++) {
+            code.append(String.format("%s_memoKey%d = new int[%d];%n", name, i, CAPACITY));
+        }
+        code.append(String.format("%s_memoReady = true;%n}%n", name));
+
+        // Keys are ints
+        for (int i = 0; i < params.size(); i++) {
+            String param = params.get(i).getName();
+            if (params.get(i).getType().getName().equals("boolean")) {
+                code.append(String.format("if (%s) { memo_k%d = 1; } else { memo_k%d = 0; }%n", param, i, i));
+            } else {
+                code.append(String.format("memo_k%d = %s;%n", i, param));
+            }
+        }
+
+        String computeCall = String.format("memo_result = this.%s_compute(%s);%n", name, args);
+        String miss = stats ? String.format("%s_memoMisses = %s_memoMisses + 1;%n", name, name) : "";
+        String hit = stats ? String.format("%s_memoHits = %s_memoHits + 1;%n", name, name) : "";
+
+        code.append(String.format("memo_used = %s_memoUsed;%nmemo_values = %s_memoValue;%n", name, name));
+        code.append(String.format("memo_slot = this.%s_memoSlot(%s);%n", name, keys));
+        code.append("if (memo_slot < 0) {\n").append(computeCall).append(miss).append("} else {\n");
+
+        // Hit
+        code.append("if (0 < memo_used[memo_slot]) {\n");
+        code.append(booleanResult ? "memo_result = 0 < memo_values[memo_slot];\n" : "memo_result = memo_values[memo_slot];\n");
+        code.append(hit);
+
+        // Miss: the recursion may have filled the slot, so look again before storing
+        code.append("} else {\n").append(computeCall).append(miss);
+        code.append(String.format("memo_slot = this.%s_memoSlot(%s);%n", name, keys));
+        code.append("if (0 < memo_slot + 1) {\nmemo_used[memo_slot] = 1;\n");
+        for (int i = 0; i < params.size(); i++) {
+            code.append(String.format("memo_keys = %s_memoKey%d;%nmemo_keys[memo_slot] = memo_k%d;%n", name, i, i));
+        }
+        code.append(booleanResult
+                ? "if (memo_result) { memo_values[memo_slot] = 1; } else { memo_values[memo_slot] = 0; }\n"
+                : "memo_values[memo_slot] = memo_result;\n");
+        code.append("}\n}\n}\n");
+
+        code.append("return memo_result;\n}\n");
+        return code.toString();
+    }
+
+    // Slot holding the given keys, else the first empty slot, else -1 if none is found within the probes
+    private String slotCode(String name, int numParams) {
+        StringJoiner paramList = new StringJoiner(", ");
+        for (int i = 0; i < numParams; i++) paramList.add("int k" + i);
+
+        StringBuilder code = new StringBuilder();
+        code.append(String.format("public int %s_memoSlot(%s) {%n", name, paramList));
+        code.append("int[] used; int h; int probe; int slot;\n");
+        for (int i = 0; i < numParams; i++) code.append("int[] keys").append(i).append(";\n");
+
+        code.append(String.format("used = %s_memoUsed;%n", name));
+        for (int i = 0; i < numParams; i++) code.append(String.format("keys%d = %s_memoKey%d;%n", i, name, i));
+
+        code.append("h = k0;\n");
+        for (int i = 1; i < numParams; i++) code.append(String.format("h = h * 31 + k%d;%n", i));
+        code.append(String.format("h = h - (h / %d) * %d;%n", CAPACITY, CAPACITY));
+        code.append(String.format("if (h < 0) { h = h + %d; }%n", CAPACITY));
+
+        StringJoiner same = new StringJoiner(" && ");
+        for (int i = 0; i < numParams; i++) {
+            same.add(String.format("!(keys%d[h] < k%d) && !(k%d < keys%d[h])", i, i, i, i));
+        }
+
+        code.append("slot = 0 - 1;\nprobe = 0;\n");
+        code.append(String.format("while (probe < %d) {%n", MAX_PROBES));
+        code.append(String.format("if (used[h] < 1) { slot = h; probe = %d; } else {%n", MAX_PROBES));
+        code.append(String.format("if (%s) { slot = h; probe = %d; } else {%n", same, MAX_PROBES));
+        code.append(String.format("h = h + 1;%nif (h < %d) { } else { h = 0; }%nprobe = probe + 1;%n", CAPACITY));
+        code.append("}\n}\n}\n");
+        code.append("return slot;\n}\n");
+        return code.toString();
+    }
+
+    private static JmmNode parse(String code, String rule) {
+        JmmParserResult result = new JmmParserImpl().parse(code, rule, Collections.emptyMap());
+        if (result.getRootNode() == null) {
+            throw new IllegalStateException("Could not parse generated code:\n" + code);
+        }
+        return result.getRootNode();
+    }
+
+    private static void register(JmmNode method, JmmSymbolTable jmmTable) {
+        List<Symbol> params = new ArrayList<>();
+        for (JmmNode param : method.getChildren(PARAM)) {
+            params.add(new Symbol(TypeUtils.convertType(param.getChild(0)), param.get("name")));
+        }
+        List<Symbol> locals = new ArrayList<>();
+        for (JmmNode local : method.getChildren(VAR_DECL)) {
+            locals.add(new Symbol(TypeUtils.convertType(local.getChild(0)), local.get("name")));
+        }
+        jmmTable.addMethod(method.get("name"), false, TypeUtils.convertType(method.getChild(0)), params, locals);
+    }
+
+    private static boolean isScalar(Type type) {
+        return !type.isArray() && (type.getName().equals("int") || type.getName().equals("boolean"));
+    }
+}
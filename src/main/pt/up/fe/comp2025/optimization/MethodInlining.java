@@ -0,0 +1,319 @@
+package pt.up.fe.comp2025.optimization;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2025.ast.TypeUtils;
+import pt.up.fe.comp2025.utils.ReportUtils;
+
+import java.util.*;
+
+import static pt.up.fe.comp2025.ast.Kind.*;
+
+/**
+ * Inlining of small, non-recursive methods of the compiled class into their callers.
+ * <p>
+ * The body of the callee is copied before the statement that contains the call, with its
+ * parameters and locals renamed to fresh locals of the caller: each argument is stored in the
+ * renamed parameter, the returned expression in a result local, and the call is replaced by a
+ * reference to that local. The new locals are declared in the caller and added to its entry
+ * in the symbol table.
+ * <p>
+ * Since the AST has no jumps, only callees whose single return is their last statement are
+ * inlined. The call must also be at a point where running the body early is unobservable:
+ * not in a loop condition or on the right of a {@code &&}, and only after operands that
+ * neither the body nor a failure in it can affect. Methods that use fields or {@code this}
+ * are only inlined into calls on {@code this}.
+ * <p>
+ * The receiver is dropped, so it must be known not to be null, and the call must be known to run
+ * the method of this class: in a library a subclass may override it, so calls on {@code this} are
+ * then left alone (see {@link CallGraph#hasKnownTarget}).
+ * <p>
+ * Calls inside loops are inlined first, while the total growth stays within a budget
+ * (a percentage of the class size).
+ */
+public class MethodInlining {
+
+    // Methods with more AST nodes than this are never inlined
+    private static final int MAX_CALLEE_SIZE = 60;
+    // Inlined bodies can expose new calls, so a few rounds are done
+    private static final int MAX_ROUNDS = 3;
+
+    private final SymbolTable table;
+    private final int budgetPercent;
+    private final boolean library;
+    private final List<Report> reports;
+
+    private int nextId;
+
+    public MethodInlining(SymbolTable table, int budgetPercent, boolean library) {
+        this.table = table;
+        this.budgetPercent = budgetPercent;
+        this.library = library;
+        this.reports = new ArrayList<>();
+        this.nextId = 0;
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    /**
+     * Runs the inliner on the class declared under 'root'.
+     *
+     * @return the number of calls inlined
+     */
+    public int apply(JmmNode root) {
+        JmmNode classDecl = root.getDescendants(CLASS_DECL).getFirst();
+        int budget = classDecl.getDescendants().size() * budgetPercent / 100;
+        int growth = 0;
+
+        Map<String, Integer> inlined = new TreeMap<>();
+
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            CallGraph graph = CallGraph.build(root, table);
+
+            List<JmmNode> calls = new ArrayList<>();
+            for (JmmNode method : graph.getMethods()) {
+                for (JmmNode call : method.getDescendants(METHOD_CALL)) {
+                    if (graph.isLocalCall(call) && canInline(call, graph)) calls.add(call);
+                }
+            }
+            if (calls.isEmpty()) break;
+
+            // Calls in deeper loops run more often
+            calls.sort(Comparator.comparingInt(MethodInlining::loopDepth).reversed());
+
+            boolean changed = false;
+            for (JmmNode call : calls) {
+                JmmNode callee = graph.getMethod(call.get("name"));
+                int size = callee.getDescendants().size();
+                // An earlier inlining in this round may have moved the call
+                if (growth + size > budget || !canInline(call, graph)) continue;
+
+                JmmNode caller = call.getAncestor(METHOD_DECL).orElseThrow();
+                inline(call, callee, caller, Map.of());
+                growth += size;
+                changed = true;
+                inlined.merge(callee.get("name") + " into " + caller.get("name"), 1, Integer::sum);
+            }
+            if (!changed) break;
+        }
+
+        int total = inlined.values().stream().mapToInt(Integer::intValue).sum();
+        if (total > 0) {
+            StringJoiner sites = new StringJoiner(", ");
+            inlined.forEach((site, count) -> sites.add(String.format("'%s' (x%d)", site, count)));
+            reports.add(ReportUtils.buildLogReport(Stage.OPTIMIZATION, classDecl,
+                    String.format("Inlined %d calls (%d of %d nodes of budget used): %s", total, growth, budget, sites)));
+        }
+
+        return total;
+    }
+
+    private boolean canInline(JmmNode call, CallGraph graph) {
+        String name = call.get("name");
+        JmmNode callee = graph.getMethod(name);
+        JmmNode caller = call.getAncestor(METHOD_DECL).orElse(null);
+        if (callee == null || caller == null || callee == caller) return false;
+
+        if (!isInlinableCallee(callee, graph)) return false;
+        if (table.getParameters(name).size() != call.getNumChildren() - 1) return false;
+
+        // The receiver is dropped, so it must not be null nor select an override; the body may only use 'this' if it is 'this'
+        JmmNode receiver = call.getChild(0);
+        if (!graph.hasNonNullReceiver(call) || !graph.hasKnownTarget(call, library)) return false;
+        if (usesInstance(callee) && (!THIS_REF.check(receiver) || isStatic(caller))) return false;
+
+        // Names the body does not declare (fields, imported classes) must not be hidden by the caller's variables
+        Set<String> calleeVariables = variablesOf(name);
+        Set<String> callerVariables = variablesOf(caller.get("name"));
+        for (JmmNode ref : callee.getDescendants(VAR_REF_EXPR)) {
+            String refName = ref.get("name");
+            if (!calleeVariables.contains(refName) && callerVariables.contains(refName)) return false;
+        }
+
+        return isSafePoint(call, caller);
+    }
+
+    private boolean isInlinableCallee(JmmNode callee, CallGraph graph) {
+        String name = callee.get("name");
+        if (Boolean.TRUE.equals(callee.getOptionalObject("isMain").orElse(false))) return false;
+        if (graph.isRecursive(name)) return false;
+        if (table.getParameters(name).stream().anyMatch(p -> TypeUtils.isVararg(p.getType()))) return false;
+        if (callee.getDescendants().size() > MAX_CALLEE_SIZE) return false;
+
+        // A single return, as the last statement
+        List<JmmNode> returns = callee.getDescendants(RETURN_STMT);
+        return returns.size() == 1 && returns.getFirst().getParent() == callee
+                && returns.getFirst().getIndexOfSelf() == callee.getNumChildren() - 1;
+    }
+
+    /**
+     * True if the call can be inlined with the fields of its receiver held in locals of the caller,
+     * as done by {@link #inlineOnLocals}. The callee may only use its receiver through its fields.
+     */
+    boolean canInlineOnLocals(JmmNode call, CallGraph graph) {
+        String name = call.get("name");
+        JmmNode callee = graph.getMethod(name);
+        JmmNode caller = call.getAncestor(METHOD_DECL).orElse(null);
+        if (callee == null || caller == null || callee == caller || isStatic(callee)) return false;
+
+        if (!isInlinableCallee(callee, graph)) return false;
+        if (table.getParameters(name).size() != call.getNumChildren() - 1) return false;
+        if (!callee.getDescendants(THIS_REF).isEmpty()) return false;
+
+        // Names other than fields must not be hidden by the caller's variables
+        Set<String> calleeVariables = variablesOf(name);
+        Set<String> callerVariables = variablesOf(caller.get("name"));
+        Set<String> fields = new HashSet<>();
+        table.getFields().forEach(field -> fields.add(field.getName()));
+        for (JmmNode ref : callee.getDescendants(VAR_REF_EXPR)) {
+            String refName = ref.get("name");
+            if (calleeVariables.contains(refName) || fields.contains(refName)) continue;
+            if (callerVariables.contains(refName)) return false;
+        }
+
+        return isSafePoint(call, caller);
+    }
+
+    /**
+     * Inlines a call that passes {@link #canInlineOnLocals}, reading and writing the caller locals
+     * given for each field instead of the receiver's fields.
+     */
+    void inlineOnLocals(JmmNode call, CallGraph graph, Map<String, String> fieldLocals) {
+        JmmNode caller = call.getAncestor(METHOD_DECL).orElseThrow();
+        inline(call, graph.getMethod(call.get("name")), caller, fieldLocals);
+    }
+
+    /**
+     * True if the callee's body can be moved in front of the statement that contains the call.
+     */
+    private boolean isSafePoint(JmmNode call, JmmNode caller) {
+        return OptUtils.canHoist(call, variablesOf(caller.get("name")), table);
+    }
+
+    private void inline(JmmNode call, JmmNode callee, JmmNode caller, Map<String, String> fieldLocals) {
+        String calleeName = callee.get("name");
+        String callerName = caller.get("name");
+        List<Symbol> callerLocals = table.getLocalVariables(callerName);
+
+        // Fresh names for the callee's parameters and locals
+        Set<String> taken = new HashSet<>(variablesOf(callerName));
+        table.getFields().forEach(field -> taken.add(field.getName()));
+        taken.addAll(fieldLocals.values());
+        Map<String, String> renames = new HashMap<>(fieldLocals);
+        for (Symbol symbol : symbolsOf(calleeName)) {
+            String fresh = freshName(symbol.getName(), taken);
+            renames.put(symbol.getName(), fresh);
+            callerLocals.add(new Symbol(symbol.getType(), fresh));
+        }
+
+        JmmNode stmt = call;
+        while (!STMT.check(stmt)) stmt = stmt.getParent();
+        JmmNode list = stmt.getParent();
+
+        List<JmmNode> inlined = new ArrayList<>();
+        List<JmmNode> declarations = new ArrayList<>();
+
+        // Arguments, in evaluation order
+        List<JmmNode> params = callee.getChildren(PARAM);
+        List<JmmNode> args = new ArrayList<>(call.getChildren().subList(1, call.getNumChildren()));
+        for (int i = 0; i < params.size(); i++) {
+            String param = renames.get(params.get(i).get("name"));
+            declarations.add(OptUtils.newVarDecl(param, params.get(i).getChild(0)));
+            inlined.add(OptUtils.newAssign(param, args.get(i)));
+        }
+
+        for (JmmNode child : callee.getChildren()) {
+            if (VAR_DECL.check(child)) {
+                declarations.add(OptUtils.newVarDecl(renames.get(child.get("name")), child.getChild(0)));
+            } else if (STMT.check(child) && !RETURN_STMT.check(child)) {
+                inlined.add(rename(OptUtils.copyTree(child), renames));
+            }
+        }
+
+        JmmNode returned = rename(OptUtils.copyTree(callee.getChildren(RETURN_STMT).getFirst().getChild(0)), renames);
+
+        int index = stmt.getIndexOfSelf();
+        if (EXPR_STMT.check(stmt) && stmt.getChild(0) == call) {
+            // The value is discarded, so the returned expression is only kept if it does something
+            if (!OptUtils.isPure(returned)) inlined.add(resultOf(returned, callee, callerLocals, taken, declarations));
+            list.removeChild(stmt);
+        } else {
+            JmmNode result = resultOf(returned, callee, callerLocals, taken, declarations);
+            inlined.add(result);
+            call.replace(OptUtils.newVarRef(result.getChild(0).get("name")));
+        }
+        for (int i = 0; i < inlined.size(); i++) list.add(inlined.get(i), index + i);
+
+        int firstStmt = OptUtils.firstStatementIndex(caller);
+        for (int i = 0; i < declarations.size(); i++) caller.add(declarations.get(i), firstStmt + i);
+    }
+
+    // 'result = returned;', with 'result' a fresh local of the callee's return type
+    private JmmNode resultOf(JmmNode returned, JmmNode callee, List<Symbol> callerLocals, Set<String> taken,
+                             List<JmmNode> declarations) {
+        String result = freshName(callee.get("name") + "_ret", taken);
+        callerLocals.add(new Symbol(table.getReturnType(callee.get("name")), result));
+        declarations.add(OptUtils.newVarDecl(result, callee.getChild(0)));
+        return OptUtils.newAssign(result, returned);
+    }
+
+    private static JmmNode rename(JmmNode node, Map<String, String> renames) {
+        List<JmmNode> refs = new ArrayList<>(node.getDescendants(VAR_REF_EXPR));
+        if (VAR_REF_EXPR.check(node)) refs.add(node);
+        for (JmmNode ref : refs) {
+            String renamed = renames.get(ref.get("name"));
+            if (renamed != null) ref.put("name", renamed);
+        }
+        return node;
+    }
+
+    private String freshName(String base, Set<String> taken) {
+        String name;
+        do {
+            name = base + "_i" + nextId++;
+        } while (taken.contains(name));
+        taken.add(name);
+        return name;
+    }
+
+    private List<Symbol> symbolsOf(String method) {
+        List<Symbol> symbols = new ArrayList<>(table.getParameters(method));
+        symbols.addAll(table.getLocalVariables(method));
+        return symbols;
+    }
+
+    private Set<String> variablesOf(String method) {
+        Set<String> names = new HashSet<>();
+        symbolsOf(method).forEach(symbol -> names.add(symbol.getName()));
+        return names;
+    }
+
+    // True if the body reads or writes fields, or uses 'this'
+    private boolean usesInstance(JmmNode method) {
+        if (!method.getDescendants(THIS_REF).isEmpty()) return true;
+
+        Set<String> variables = variablesOf(method.get("name"));
+        Set<String> fields = new HashSet<>();
+        table.getFields().forEach(field -> fields.add(field.getName()));
+        return method.getDescendants(VAR_REF_EXPR).stream()
+                .map(ref -> ref.get("name"))
+                .anyMatch(name -> !variables.contains(name) && fields.contains(name));
+    }
+
+    private static boolean isStatic(JmmNode method) {
+        return Boolean.TRUE.equals(method.getOptionalObject("isStatic").orElse(false));
+    }
+
+    private static int loopDepth(JmmNode node) {
+        int depth = 0;
+        for (JmmNode current = node.getParent(); current != null; current = current.getParent()) {
+            if (WHILE_STMT.check(current)) depth++;
+        }
+        return depth;
+    }
+}
@@ -0,0 +1,256 @@
+package pt.up.fe.comp2025.optimization;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2025.ast.TypeUtils;
+import pt.up.fe.comp2025.symboltable.JmmSymbolTable;
+import pt.up.fe.comp2025.utils.ReportUtils;
+
+import java.util.*;
+
+import static pt.up.fe.comp2025.ast.Kind.*;
+
+/**
+ * Method specialization: call sites that pass literals to some parameters of a small method
+ * are redirected to a clone of that method where those parameters are constants.
+ * <p>
+ * The clone drops the constant parameters (they become literals, or locals initialized to the
+ * literal if the method assigns them), is registered in the symbol table, and goes through
+ * constant propagation and folding on its own. Recursive calls inside the clone that pass the
+ * same constants are redirected to the clone as well.
+ * <p>
+ * Candidates are ranked by how often they are called, with calls inside loops weighing more,
+ * and are cloned while the total growth stays within a budget (a percentage of the class size).
+ * Parameters that receive the same literal at every call site are left to
+ * {@link InterproceduralConstantPropagation} when it seeds them, and in a library only calls
+ * known to run this class's method are redirected, as a subclass may override it.
+ */
+public class MethodSpecialization {
+
+    // Methods with more AST nodes than this are never cloned
+    private static final int MAX_METHOD_SIZE = 300;
+    private static final int MAX_CLONES_PER_METHOD = 3;
+    private static final int LOOP_WEIGHT = 10;
+
+    private final SymbolTable table;
+    private final int budgetPercent;
+    private final boolean library;
+    private final List<Report> reports;
+
+    public MethodSpecialization(SymbolTable table, int budgetPercent, boolean library) {
+        this.table = table;
+        this.budgetPercent = budgetPercent;
+        this.library = library;
+        this.reports = new ArrayList<>();
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    // Call sites of one method that pass the same literals at the same positions
+    private static class Candidate {
+        final JmmNode method;
+        final SortedMap<Integer, Object> constants;
+        final List<JmmNode> calls = new ArrayList<>();
+        int score;
+
+        Candidate(JmmNode method, SortedMap<Integer, Object> constants) {
+            this.method = method;
+            this.constants = constants;
+        }
+    }
+
+    /**
+     * Runs the specialization on the class declared under 'root'.
+     *
+     * @return the number of clones created
+     */
+    public int apply(JmmNode root) {
+        if (!(table instanceof JmmSymbolTable jmmTable)) return 0;
+
+        CallGraph graph = CallGraph.build(root, table);
+        if (!graph.isClosedWorld()) return 0;
+
+        JmmNode classDecl = root.getDescendants(CLASS_DECL).getFirst();
+        int budget = classDecl.getDescendants().size() * budgetPercent / 100;
+
+        List<Candidate> candidates = findCandidates(graph);
+        candidates.sort(Comparator.comparingInt((Candidate c) -> c.score).reversed());
+
+        int growth = 0;
+        Map<String, Integer> clonesPerMethod = new HashMap<>();
+        List<String> created = new ArrayList<>();
+
+        for (Candidate candidate : candidates) {
+            String name = candidate.method.get("name");
+            int size = candidate.method.getDescendants().size();
+            if (growth + size > budget || clonesPerMethod.getOrDefault(name, 0) >= MAX_CLONES_PER_METHOD) continue;
+
+            String cloneName = createClone(candidate, classDecl, jmmTable, graph);
+            growth += size;
+            clonesPerMethod.merge(name, 1, Integer::sum);
+
+            StringJoiner args = new StringJoiner(", ");
+            List<Symbol> params = table.getParameters(name);
+            candidate.constants.forEach((i, value) -> args.add(params.get(i).getName() + "=" + value));
+            created.add(String.format("'%s' from '%s' with %s (%d call sites)",
+                    cloneName, name, args, candidate.calls.size()));
+        }
+
+        if (!created.isEmpty()) {
+            reports.add(ReportUtils.buildLogReport(Stage.OPTIMIZATION, classDecl,
+                    String.format("Method specialization (%d of %d nodes of budget used): %s",
+                            growth, budget, String.join("; ", created))));
+        }
+
+        return created.size();
+    }
+
+    private List<Candidate> findCandidates(CallGraph graph) {
+        Map<String, Candidate> candidates = new LinkedHashMap<>();
+
+        for (JmmNode method : graph.getMethods()) {
+            String name = method.get("name");
+            List<Symbol> params = table.getParameters(name);
+            List<JmmNode> calls = graph.getCallSites(name);
+
+            if (Boolean.TRUE.equals(method.getOptionalObject("isMain").orElse(false))) continue;
+            if (params.isEmpty() || params.stream().anyMatch(p -> TypeUtils.isVararg(p.getType()))) continue;
+            if (method.getDescendants().size() > MAX_METHOD_SIZE) continue;
+
+            Set<Integer> agreed = graph.hasOnlyLocalCallers(name, library)
+                    ? agreedPositions(calls, params.size())
+                    : Set.of();
+
+            for (JmmNode call : calls) {
+                if (call.getNumChildren() != params.size() + 1 || !graph.hasKnownTarget(call, library)) continue;
+
+                SortedMap<Integer, Object> constants = new TreeMap<>();
+                for (int i = 0; i < params.size(); i++) {
+                    Object value = OptUtils.getLiteralValue(call.getChild(i + 1));
+                    if (value != null && isScalar(params.get(i).getType()) && !agreed.contains(i)) {
+                        constants.put(i, value);
+                    }
+                }
+                if (constants.isEmpty()) continue;
+
+                Candidate candidate = candidates.computeIfAbsent(name + constants,
+                        key -> new Candidate(method, constants));
+                candidate.calls.add(call);
+                candidate.score += 1 + LOOP_WEIGHT * loopDepth(call);
+            }
+        }
+        return new ArrayList<>(candidates.values());
+    }
+
+    // Positions where every call site passes the same literal (seeded interprocedurally)
+    private static Set<Integer> agreedPositions(List<JmmNode> calls, int numParams) {
+        Set<Integer> agreed = new HashSet<>();
+        for (int i = 0; i < numParams; i++) {
+            Object value = null;
+            boolean same = true;
+            for (JmmNode call : calls) {
+                Object arg = call.getNumChildren() == numParams + 1 ? OptUtils.getLiteralValue(call.getChild(i + 1)) : null;
+                if (arg == null || (value != null && !value.equals(arg))) {
+                    same = false;
+                    break;
+                }
+                value = arg;
+            }
+            if (same) agreed.add(i);
+        }
+        return agreed;
+    }
+
+    private static int loopDepth(JmmNode node) {
+        int depth = 0;
+        for (JmmNode current = node.getParent(); current != null; current = current.getParent()) {
+            if (WHILE_STMT.check(current)) depth++;
+        }
+        return depth;
+    }
+
+    private String createClone(Candidate candidate, JmmNode classDecl, JmmSymbolTable jmmTable, CallGraph graph) {
+        JmmNode method = candidate.method;
+        String name = method.get("name");
+
+        int suffix = 0;
+        while (table.getMethods().contains(name + "_s" + suffix)) suffix++;
+        String cloneName = name + "_s" + suffix;
+
+        JmmNode clone = OptUtils.copyTree(method);
+        clone.put("name", cloneName);
+        clone.putObject("isMain", false);
+
+        List<Symbol> params = new ArrayList<>(table.getParameters(name));
+        List<Symbol> locals = new ArrayList<>(table.getLocalVariables(name));
+        List<JmmNode> paramNodes = clone.getChildren(PARAM);
+
+        // Highest positions first, so the remaining indices stay valid
+        List<Integer> positions = new ArrayList<>(candidate.constants.keySet());
+        Collections.reverse(positions);
+        for (int i : positions) {
+            JmmNode paramNode = paramNodes.get(i);
+            Symbol param = params.remove(i);
+            JmmNode literal = OptUtils.newLiteral(candidate.constants.get(i));
+            clone.removeChild(paramNode);
+
+            if (isAssigned(clone, param.getName())) {
+                // The method writes to the parameter, so it becomes a local starting at the constant
+                int firstStmt = OptUtils.firstStatementIndex(clone);
+                clone.add(OptUtils.newVarDecl(param.getName(), paramNode.getChild(0)), firstStmt);
+                clone.add(OptUtils.newAssign(param.getName(), literal), firstStmt + 1);
+                locals.add(param);
+            } else {
+                for (JmmNode ref : clone.getDescendants(VAR_REF_EXPR)) {
+                    if (ref.get("name").equals(param.getName())) ref.replace(OptUtils.copyTree(literal));
+                }
+            }
+        }
+
+        jmmTable.addMethod(cloneName, jmmTable.isMethodStatic(name), table.getReturnType(name), params, locals);
+        classDecl.add(clone, method.getIndexOfSelf() + 1);
+
+        // Redirect the candidate's call sites, and recursive calls in the clone that pass the same constants
+        List<JmmNode> calls = new ArrayList<>(candidate.calls);
+        for (JmmNode call : clone.getDescendants(METHOD_CALL)) {
+            if (call.get("name").equals(name) && graph.isLocalCall(call) && graph.hasKnownTarget(call, library)
+                    && passesConstants(call, candidate)) {
+                calls.add(call);
+            }
+        }
+        for (JmmNode call : calls) {
+            call.put("name", cloneName);
+            for (int i : positions) call.removeChild(i + 1);
+        }
+
+        new SparseConstantPropagation(table).apply(clone);
+
+        return cloneName;
+    }
+
+    private static boolean passesConstants(JmmNode call, Candidate candidate) {
+        int numParams = candidate.method.getChildren(PARAM).size();
+        if (call.getNumChildren() != numParams + 1) return false;
+
+        for (var entry : candidate.constants.entrySet()) {
+            if (!entry.getValue().equals(OptUtils.getLiteralValue(call.getChild(entry.getKey() + 1)))) return false;
+        }
+        return true;
+    }
+
+    private static boolean isAssigned(JmmNode method, String name) {
+        return method.getDescendants(ASSIGN_STMT).stream()
+                .map(assign -> assign.getChild(0))
+                .anyMatch(lhs -> VAR_REF_EXPR.check(lhs) && lhs.get("name").equals(name));
+    }
+
+    private static boolean isScalar(Type type) {
+        return !type.isArray() && (type.getName().equals("int") || type.getName().equals("boolean"));
+    }
+}
@@ -0,0 +1,189 @@
+package pt.up.fe.comp2025.optimization;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2025.utils.ReportUtils;
+
+import java.util.*;
+
+import static pt.up.fe.comp2025.ast.Kind.*;
+
+/**
+ * Replaces instances of the compiled class that do not escape their method by one local per field.
+ * <p>
+ * A local of the class type qualifies if it is assigned exactly once, by a statement of the method
+ * body itself whose value is {@code new C()}, and if every later use is the receiver of a call
+ * that {@link MethodInlining} can inline with the fields held in locals: the callee is small, not
+ * recursive and does not use {@code this}. Any other use (passing it, returning it, storing it)
+ * lets the object escape. The fields the callees use must be int or boolean, so that their
+ * locals can start at the default value. The allocation becomes the initialization of the field
+ * locals and every call is inlined, so the object is never created.
+ * <p>
+ * Classes with a superclass are skipped, since its constructor may have effects.
+ */
+public class ObjectScalarReplacement {
+
+    private final SymbolTable table;
+    private final MethodInlining inlining;
+    private final List<Report> reports;
+
+    public ObjectScalarReplacement(SymbolTable table) {
+        this.table = table;
+        this.inlining = new MethodInlining(table, 0, true);
+        this.reports = new ArrayList<>();
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    /**
+     * Replaces the non-escaping objects of every method of the program.
+     *
+     * @return the number of objects replaced
+     */
+    public int apply(JmmNode root) {
+        if (table.getSuper() != null && !table.getSuper().isEmpty()) return 0;
+
+        int total = 0;
+        for (JmmNode method : root.getDescendants(METHOD_DECL)) {
+            String methodName = method.get("name");
+
+            List<String> replaced = new ArrayList<>();
+            for (Symbol local : new ArrayList<>(table.getLocalVariables(methodName))) {
+                Type type = local.getType();
+                if (type.isArray() || !type.getName().equals(table.getClassName())) continue;
+
+                // Each replacement changes the method, so the graph is rebuilt
+                CallGraph graph = CallGraph.build(root, table);
+                JmmNode definition = findDefinition(local.getName(), method, graph);
+                if (definition != null) {
+                    replace(local, definition, method, root, graph);
+                    replaced.add(local.getName());
+                }
+            }
+
+            if (!replaced.isEmpty()) {
+                reports.add(ReportUtils.buildLogReport(Stage.OPTIMIZATION, method,
+                        String.format("Scalar replacement in '%s': objects %s replaced by locals", methodName, replaced)));
+            }
+            total += replaced.size();
+        }
+
+        return total;
+    }
+
+    // The only assignment of the object, if the object qualifies
+    private JmmNode findDefinition(String name, JmmNode method, CallGraph graph) {
+        List<JmmNode> refs = method.getDescendants(VAR_REF_EXPR).stream()
+                .filter(ref -> ref.get("name").equals(name))
+                .toList();
+
+        JmmNode definition = null;
+        for (JmmNode ref : refs) {
+            JmmNode parent = ref.getParent();
+            if (ASSIGN_STMT.check(parent) && ref.getIndexOfSelf() == 0) {
+                if (definition != null || parent.getParent() != method) return null;
+                definition = parent;
+            }
+        }
+        if (definition == null) return null;
+
+        JmmNode value = definition.getChild(1);
+        if (!OBJECT_CREATION.check(value) || !value.get("name").equals(table.getClassName())) return null;
+
+        int definitionIndex = definition.getIndexOfSelf();
+        for (JmmNode ref : refs) {
+            if (ref.getParent() == definition) continue;
+
+            // Uses must run after the allocation
+            JmmNode stmt = ref;
+            while (stmt.getParent() != method) stmt = stmt.getParent();
+            if (stmt.getIndexOfSelf() <= definitionIndex) return null;
+
+            JmmNode call = ref.getParent();
+            if (!METHOD_CALL.check(call) || ref.getIndexOfSelf() != 0) return null;
+            if (!graph.isLocalCall(call) || !inlining.canInlineOnLocals(call, graph)) return null;
+
+            // Field locals start at the default value, which only int and boolean have in the AST
+            for (Symbol field : fieldsUsedBy(graph.getMethod(call.get("name")))) {
+                Type type = field.getType();
+                if (type.isArray() || !(type.getName().equals("int") || type.getName().equals("boolean"))) return null;
+            }
+        }
+        return definition;
+    }
+
+    private void replace(Symbol object, JmmNode definition, JmmNode method, JmmNode root, CallGraph graph) {
+        String methodName = method.get("name");
+        String name = object.getName();
+
+        List<JmmNode> calls = method.getDescendants(METHOD_CALL).stream()
+                .filter(call -> VAR_REF_EXPR.check(call.getChild(0)) && call.getChild(0).get("name").equals(name))
+                .toList();
+        Set<Symbol> fields = new LinkedHashSet<>();
+        for (JmmNode call : calls) fields.addAll(fieldsUsedBy(graph.getMethod(call.get("name"))));
+
+        Set<String> taken = new HashSet<>();
+        table.getParameters(methodName).forEach(param -> taken.add(param.getName()));
+        table.getLocalVariables(methodName).forEach(local -> taken.add(local.getName()));
+        table.getFields().forEach(field -> taken.add(field.getName()));
+
+        // One local per field, declared where the object was, starting at the field's default value
+        JmmNode declaration = method.getChildren(VAR_DECL).stream()
+                .filter(varDecl -> varDecl.get("name").equals(name))
+                .findFirst().orElseThrow();
+        int declarationIndex = declaration.getIndexOfSelf();
+        method.removeChild(declarationIndex);
+        table.getLocalVariables(methodName).remove(object);
+
+        Map<String, String> fieldLocals = new HashMap<>();
+        List<JmmNode> initializations = new ArrayList<>();
+        for (Symbol field : fields) {
+            String local = name + "_" + field.getName();
+            while (taken.contains(local)) local += "_";
+            taken.add(local);
+            fieldLocals.put(field.getName(), local);
+
+            table.getLocalVariables(methodName).add(new Symbol(field.getType(), local));
+            method.add(OptUtils.newVarDecl(local, fieldType(field.getName(), root)), declarationIndex++);
+            initializations.add(OptUtils.newAssign(local,
+                    OptUtils.newLiteral(field.getType().getName().equals("int") ? 0 : false)));
+        }
+
+        int definitionIndex = definition.getIndexOfSelf();
+        method.removeChild(definitionIndex);
+        for (int i = 0; i < initializations.size(); i++) method.add(initializations.get(i), definitionIndex + i);
+
+        for (JmmNode call : calls) inlining.inlineOnLocals(call, graph, fieldLocals);
+    }
+
+    // Fields read or written by a method (not hidden by its own variables)
+    private Set<Symbol> fieldsUsedBy(JmmNode method) {
+        String name = method.get("name");
+        Set<String> variables = new HashSet<>();
+        table.getParameters(name).forEach(param -> variables.add(param.getName()));
+        table.getLocalVariables(name).forEach(local -> variables.add(local.getName()));
+
+        Set<Symbol> used = new LinkedHashSet<>();
+        for (JmmNode ref : method.getDescendants(VAR_REF_EXPR)) {
+            if (variables.contains(ref.get("name"))) continue;
+            table.getFields().stream()
+                    .filter(field -> field.getName().equals(ref.get("name")))
+                    .findFirst().ifPresent(used::add);
+        }
+        return used;
+    }
+
+    private static JmmNode fieldType(String field, JmmNode root) {
+        JmmNode classDecl = root.getDescendants(CLASS_DECL).getFirst();
+        return classDecl.getChildren(VAR_DECL).stream()
+                .filter(varDecl -> varDecl.get("name").equals(field))
+                .findFirst().orElseThrow()
+                .getChild(0);
+    }
+}
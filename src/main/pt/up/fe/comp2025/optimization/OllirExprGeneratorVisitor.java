@@ -23,6 +23,11 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
     private final String END_STMT = ";\n";
     private final String NL = "\n";
 
+    // Constant array literals with at least this many elements are filled in runs
+    private static final int COMPACT_ARRAY_SIZE = 16;
+    // Shortest run of equally spaced values that is filled with a loop
+    private static final int MIN_FILL_RUN = 4;
+
     private final SymbolTable table;
 
     private final TypeUtils types;
@@ -236,6 +241,46 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
         return new OllirExprResult(code, computation);
     }
 
+    /**
+     * Generates a condition that jumps to the label when it is false, and falls through when it is true.
+     * <p>
+     * Unlike {@link #visit(JmmNode)}, '&&' and '!' become jumps instead of a boolean that is tested
+     * afterwards: '&&' jumps on the first operand that is false, and '!' tests its operand with
+     * the targets swapped. Other conditions are computed and tested as usual.
+     */
+    public String visitJumpIfFalse(JmmNode node, String label) {
+        if (PARENTHESIS.check(node)) return visitJumpIfFalse(node.getChild(0), label);
+        if (UNARY_EXPR.check(node)) return visitJumpIfTrue(node.getChild(0), label);
+        if (LOGIC_EXPR.check(node)) {
+            return visitJumpIfFalse(node.getChild(0), label) + visitJumpIfFalse(node.getChild(1), label);
+        }
+
+        var condition = visit(node);
+        return condition.getComputation()
+                + "if (!" + OptUtils.bool_t + SPACE + condition.getCode() + ") goto " + label + END_STMT;
+    }
+
+    /**
+     * Generates a condition that jumps to the label when it is true, and falls through when it is false.
+     *
+     * @see #visitJumpIfFalse(JmmNode, String)
+     */
+    public String visitJumpIfTrue(JmmNode node, String label) {
+        if (PARENTHESIS.check(node)) return visitJumpIfTrue(node.getChild(0), label);
+        if (UNARY_EXPR.check(node)) return visitJumpIfFalse(node.getChild(0), label);
+        if (LOGIC_EXPR.check(node)) {
+            // Both operands must hold, so a false first operand skips the test of the second
+            String skipLabel = ollirTypes.nextTemp("andSkip");
+            return visitJumpIfFalse(node.getChild(0), skipLabel)
+                    + visitJumpIfTrue(node.getChild(1), label)
+                    + NL + skipLabel + ":\n";
+        }
+
+        var condition = visit(node);
+        return condition.getComputation()
+                + "if (" + condition.getCode() + ") goto " + label + END_STMT;
+    }
+
     private OllirExprResult visitObjectCreation(JmmNode node, Void unused) {
         StringBuilder computation = new StringBuilder();
 
@@ -327,6 +372,12 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
                 .append(typeCode)
                 .append(END_STMT);
 
+        // Large constant literals are filled in runs instead of one store per element
+        if (arraySize >= COMPACT_ARRAY_SIZE && node.getChildren().stream().allMatch(c -> OptUtils.getLiteralValue(c) != null)) {
+            computation.append(fillConstants(node, tmp, rawTypeCode));
+            return new OllirExprResult(code, computation);
+        }
+
         // Then set the values
         for (int i=0; i<arraySize; i++) {
             var child = node.getChild(i);
@@ -350,6 +401,79 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
         return new OllirExprResult(code, computation);
     }
 
+    /**
+     * Stores the elements of a constant array literal into the new array 'tmp'. Zeros are skipped,
+     * since new arrays are zeroed, and runs of at least {@link #MIN_FILL_RUN} equally spaced
+     * values (such as 7, 7, 7, 7 or 1, 2, 3, 4) are stored by a loop.
+     */
+    private String fillConstants(JmmNode node, String tmp, String rawTypeCode) {
+        StringBuilder code = new StringBuilder();
+
+        List<Integer> values = new ArrayList<>();
+        for (JmmNode child : node.getChildren()) {
+            Object value = OptUtils.getLiteralValue(child);
+            values.add(value instanceof Boolean b ? (b ? 1 : 0) : (Integer) value);
+        }
+        boolean isBoolean = rawTypeCode.equals(OptUtils.bool_t);
+
+        int i = 0;
+        while (i < values.size()) {
+            // Booleans can only repeat, ints can also step
+            int step = i + 1 < values.size() && !isBoolean ? values.get(i + 1) - values.get(i) : 0;
+            int end = i + 1;
+            while (end < values.size() && values.get(end) - values.get(end - 1) == step) end++;
+
+            if (step == 0 && values.get(i) == 0) {
+                i = end;
+            } else if (end - i >= MIN_FILL_RUN) {
+                code.append(fillLoop(tmp, rawTypeCode, i, end, values.get(i), step));
+                i = end;
+            } else {
+                if (values.get(i) != 0) {
+                    code.append(tmp).append("[").append(i).append(OptUtils.i32_t).append("]").append(rawTypeCode)
+                            .append(SPACE).append(ASSIGN).append(rawTypeCode).append(SPACE)
+                            .append(values.get(i)).append(rawTypeCode).append(END_STMT);
+                }
+                i++;
+            }
+        }
+        return code.toString();
+    }
+
+    // Loop storing first, first + step, ... at indices [start, end)
+    private String fillLoop(String tmp, String rawTypeCode, int start, int end, int first, int step) {
+        String index = ollirTypes.nextTemp() + OptUtils.i32_t;
+        String value = ollirTypes.nextTemp() + rawTypeCode;
+        String condition = ollirTypes.nextTemp() + OptUtils.bool_t;
+        String fillLabel = ollirTypes.nextTemp("fill");
+        String endLabel = ollirTypes.nextTemp("endfill");
+
+        StringBuilder code = new StringBuilder();
+        code.append(index).append(SPACE).append(ASSIGN).append(OptUtils.i32_t).append(SPACE)
+                .append(start).append(OptUtils.i32_t).append(END_STMT);
+        code.append(value).append(SPACE).append(ASSIGN).append(rawTypeCode).append(SPACE)
+                .append(first).append(rawTypeCode).append(END_STMT);
+
+        code.append(fillLabel).append(":\n");
+        code.append(condition).append(SPACE).append(ASSIGN).append(OptUtils.bool_t).append(SPACE)
+                .append(index).append(" <").append(OptUtils.bool_t).append(SPACE)
+                .append(end).append(OptUtils.i32_t).append(END_STMT);
+        code.append("if (!.bool ").append(condition).append(") goto ").append(endLabel).append(END_STMT);
+
+        code.append(tmp).append("[").append(index).append("]").append(rawTypeCode)
+                .append(SPACE).append(ASSIGN).append(rawTypeCode).append(SPACE).append(value).append(END_STMT);
+        code.append(index).append(SPACE).append(ASSIGN).append(OptUtils.i32_t).append(SPACE)
+                .append(index).append(" +").append(OptUtils.i32_t).append(" 1").append(OptUtils.i32_t).append(END_STMT);
+        if (step != 0) {
+            code.append(value).append(SPACE).append(ASSIGN).append(rawTypeCode).append(SPACE)
+                    .append(value).append(" +").append(OptUtils.i32_t).append(SPACE)
+                    .append(step).append(OptUtils.i32_t).append(END_STMT);
+        }
+        code.append("goto ").append(fillLabel).append(END_STMT);
+        code.append(endLabel).append(":\n");
+        return code.toString();
+    }
+
     private OllirExprResult visitArrayAccess(JmmNode node, Void unused) {
         JmmNode arrayNode = node.getChild(0);
         JmmNode parent = node.getParent();
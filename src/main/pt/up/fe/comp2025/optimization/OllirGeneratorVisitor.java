@@ -30,8 +30,31 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
     private final OllirExprGeneratorVisitor exprVisitor;
 
+    // Label at the start of the current method, target of its tail calls
+    private String entryLabel;
+
+    // Members to emit, or null to emit every method and field
+    private final Reachability reachability;
+
+    // Whether while loops test their condition at the bottom and the likely arm of each if falls through
+    private final boolean optimizeLayout;
+
+    // Counts of the arms of if statements, which override the guess of the likely arm
+    private final BranchProfile profile;
+
+    // Unlikely arms of the current method, placed after its last statement
+    private StringBuilder outOfLine;
+
     public OllirGeneratorVisitor(SymbolTable table) {
+        this(table, null, false, BranchProfile.EMPTY);
+    }
+
+    public OllirGeneratorVisitor(SymbolTable table, Reachability reachability, boolean optimizeLayout,
+                                 BranchProfile profile) {
         this.table = table;
+        this.reachability = reachability;
+        this.optimizeLayout = optimizeLayout;
+        this.profile = profile;
         this.types = new TypeUtils(table);
         this.ollirTypes = new OptUtils();
         exprVisitor = new OllirExprGeneratorVisitor(table, ollirTypes);
@@ -116,6 +139,7 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
         // Code for fields
         for (var child : node.getChildren(VAR_DECL)) {
+            if (reachability != null && !reachability.isLive(child.get("name"))) continue;
             var result = visitVarDecl(child);
             code.append(result);
         }
@@ -125,6 +149,7 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         code.append(NL);
 
         for (var child : node.getChildren(METHOD_DECL)) {
+            if (reachability != null && !reachability.isReachable(child.get("name"))) continue;
             var result = visit(child);
             code.append(result);
         }
@@ -160,7 +185,16 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         code.append(typeCode);
         code.append(L_BRACKET);
 
+        // Tail calls jump back here
+        boolean hasTailCalls = node.getDescendants().stream()
+                .anyMatch(child -> child.getOptionalObject(TailRecursionElimination.TAIL_CALL).isPresent());
+        if (hasTailCalls) {
+            entryLabel = ollirTypes.nextTemp("entry");
+            code.append(entryLabel).append(":\n");
+        }
+
         // Code for statements
+        outOfLine = new StringBuilder();
         var stmtsCode = node.getChildren(STMT).stream()
                 .map(this::visit)
                 .collect(Collectors.joining("\n   ", "   ", ""));
@@ -171,6 +205,7 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         if (retType.equals(TypeUtils.newVoidType()))
             code.append("ret.V;").append(NL);
 
+        code.append(outOfLine);
         code.append(R_BRACKET);
         code.append(NL);
 
@@ -187,6 +222,9 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
     }
 
     private String visitExprStmt(JmmNode node, Void unused) {
+        if (node.getOptionalObject(TailRecursionElimination.TAIL_CALL).isPresent())
+            return visitTailCall(node.getChild(0));
+
         var exprResult = exprVisitor.visit(node.getChild(0));
         return exprResult.getComputation();
     }
@@ -203,6 +241,9 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
     }
 
     private String visitReturn(JmmNode node, Void unused) {
+        if (node.getOptionalObject(TailRecursionElimination.TAIL_CALL).isPresent())
+            return visitTailCall(node.getChild(0));
+
         StringBuilder code = new StringBuilder();
 
         JmmNode method = TypeUtils.getEnclosingMethod(node);
@@ -225,7 +266,50 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         return code.toString();
     }
 
+    /**
+     * A self-call in tail position: the arguments are evaluated into temporaries,
+     * then copied to the parameters, then the code jumps back to the method entry.
+     */
+    private String visitTailCall(JmmNode call) {
+        StringBuilder code = new StringBuilder();
+        StringBuilder copies = new StringBuilder();
+
+        JmmNode method = TypeUtils.getEnclosingMethod(call);
+        var params = table.getParameters(method.get("name"));
+
+        for (int i = 0; i < params.size(); i++) {
+            String param = params.get(i).getName();
+            String typeCode = ollirTypes.toOllirType(params.get(i).getType());
+            JmmNode arg = call.getChild(i + 1);
+
+            // The parameter is passed on unchanged
+            if (VAR_REF_EXPR.check(arg) && arg.get("name").equals(param))
+                continue;
+
+            var argResult = exprVisitor.visit(arg);
+            code.append(argResult.getComputation());
+
+            // Every argument must be evaluated before any parameter changes
+            String value = argResult.getCode();
+            if (!INTEGER_LIT.check(arg) && !BOOLEAN_LIT.check(arg)) {
+                value = ollirTypes.nextTemp() + typeCode;
+                code.append(value).append(SPACE).append(ASSIGN).append(typeCode).append(SPACE)
+                        .append(argResult.getCode()).append(END_STMT);
+            }
+
+            copies.append(param).append(typeCode).append(SPACE).append(ASSIGN).append(typeCode).append(SPACE)
+                    .append(value).append(END_STMT);
+        }
+
+        code.append(copies);
+        code.append("goto ").append(entryLabel).append(END_STMT);
+        return code.toString();
+    }
+
     private String visitAssignStmt(JmmNode node, Void unused) {
+        if (node.getOptionalObject(TailRecursionElimination.TAIL_CALL).isPresent())
+            return visitTailCall(node.getChild(1));
+
         StringBuilder code = new StringBuilder();
 
         JmmNode leftNode = node.getChild(0);
@@ -246,13 +330,22 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
                 fieldName = "\"String\"";
 
             var rhs = exprVisitor.visit(rightNode);
-
-            code.append(rhs.getComputation())
-                    .append("putfield(this, ")
+            code.append(rhs.getComputation());
+
+            // putfield only takes a simple operand, not an operation or allocation
+            String value = rhs.getCode();
+            if (value.contains(SPACE)) {
+                String temp = ollirTypes.nextTemp() + typeCode;
+                code.append(temp).append(SPACE).append(ASSIGN).append(typeCode).append(SPACE)
+                        .append(value).append(END_STMT);
+                value = temp;
+            }
+
+            code.append("putfield(this, ")
                     .append(fieldName)
                     .append(typeCode)
                     .append(", ")
-                    .append(rhs.getCode())
+                    .append(value)
                     .append(").V")
                     .append(END_STMT);
         }
@@ -277,23 +370,15 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
     }
 
     private String visitIfStmt(JmmNode node, Void unused) {
+        if (optimizeLayout) return visitLaidOutIfStmt(node);
+
         StringBuilder code = new StringBuilder();
 
         String thenLabel = ollirTypes.nextTemp("then");
         String endLabel = ollirTypes.nextTemp("endif");
 
-        var conditionResult = exprVisitor.visit(node.getChild(0));
-
-        // X.computation
-        code.append(conditionResult.getComputation());
-        code.append(NL);
-
-        // IF X.code GOTO then
-        code.append("if (");
-        code.append(conditionResult.getCode());
-        code.append(") goto ");
-        code.append(thenLabel);
-        code.append(END_STMT);
+        // IF X GOTO then
+        code.append(exprVisitor.visitJumpIfTrue(node.getChild(0), thenLabel));
 
         // "Else" code (if applicable)
         if (node.getNumChildren() > 2) {
@@ -320,7 +405,106 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         return code.toString();
     }
 
+    /**
+     * An if statement with its likely arm right after the test, so the common path runs no taken
+     * jump, which is cheaper on the JVM's interpreter and keeps the hot code together.
+     * <p>
+     * Without a profile, the "then" arm is the likely one, unless it always leaves the method (an
+     * early return) and the "else" arm does not. An unlikely arm that leaves the method, or that the
+     * profile shows to be rare, is moved after the end of the method and jumps back if needed;
+     * otherwise the "else" arm follows the "then" arm, as usual.
+     */
+    private String visitLaidOutIfStmt(JmmNode node) {
+        StringBuilder code = new StringBuilder();
+
+        JmmNode thenStmt = node.getChild(1);
+        JmmNode elseStmt = node.getNumChildren() > 2 ? node.getChild(2) : null;
+        if (elseStmt != null && BRACKET_STMT.check(elseStmt) && elseStmt.getChildren(STMT).isEmpty())
+            elseStmt = null;
+        boolean thenExits = alwaysExits(thenStmt);
+        boolean elseExits = elseStmt != null && alwaysExits(elseStmt);
+
+        var profiled = profile.isThenLikely(node);
+        boolean thenLikely = profiled.orElse(!thenExits || elseExits);
+        JmmNode likely = thenLikely ? thenStmt : elseStmt;
+        JmmNode unlikely = thenLikely ? elseStmt : thenStmt;
+        boolean moveOut = unlikely != null && (profiled.isPresent() || (thenLikely ? elseExits : thenExits));
+
+        String unlikelyLabel = unlikely != null ? ollirTypes.nextTemp(thenLikely ? "else" : "then") : null;
+        String endLabel = ollirTypes.nextTemp("endif");
+
+        // Jump to the unlikely arm, or past the likely one if there is no other
+        if (thenLikely)
+            code.append(exprVisitor.visitJumpIfFalse(node.getChild(0), unlikely != null ? unlikelyLabel : endLabel));
+        else
+            code.append(exprVisitor.visitJumpIfTrue(node.getChild(0), unlikelyLabel));
+
+        // A missing arm goes straight to the join
+        String likelyCode = likely != null ? visit(likely) : "";
+        String unlikelyCode = unlikely != null ? visit(unlikely) : "";
+        boolean likelyFallsThrough = likely == null || fallsThrough(likely, likelyCode);
+        boolean unlikelyFallsThrough = unlikely == null || fallsThrough(unlikely, unlikelyCode);
+
+        // Likely arm
+        code.append(likelyCode);
+
+        // Unlikely arm, when it stays in place
+        if (unlikely != null && !moveOut) {
+            if (likelyFallsThrough) {
+                code.append("goto ");
+                code.append(endLabel);
+                code.append(END_STMT);
+            }
+            code.append(NL);
+            code.append(unlikelyLabel);
+            code.append(":\n");
+            code.append(unlikelyCode);
+        }
+
+        // "Endif" label, unless no code reaches it
+        if (likelyFallsThrough || unlikelyFallsThrough) {
+            code.append(NL);
+            code.append(endLabel);
+            code.append(":\n");
+        }
+
+        // Unlikely arm, when it moves after the end of the method
+        if (moveOut) {
+            outOfLine.append(unlikelyLabel);
+            outOfLine.append(":\n");
+            outOfLine.append(unlikelyCode);
+            if (unlikelyFallsThrough) {
+                outOfLine.append("goto ");
+                outOfLine.append(endLabel);
+                outOfLine.append(END_STMT);
+            }
+        }
+
+        return code.toString();
+    }
+
+    // Whether the code of a statement can go on to the next one: it may complete normally, or it
+    // ends on a label (after dead code), which must be followed by an instruction
+    private static boolean fallsThrough(JmmNode stmt, String stmtCode) {
+        return !alwaysExits(stmt) || stmtCode.strip().endsWith(":");
+    }
+
+    // Whether a statement never completes normally: it returns or makes a tail call on every path
+    private static boolean alwaysExits(JmmNode stmt) {
+        if (stmt.getOptionalObject(TailRecursionElimination.TAIL_CALL).isPresent())
+            return true;
+        if (RETURN_STMT.check(stmt))
+            return true;
+        if (BRACKET_STMT.check(stmt))
+            return stmt.getChildren(STMT).stream().anyMatch(OllirGeneratorVisitor::alwaysExits);
+        if (IF_STMT.check(stmt))
+            return stmt.getNumChildren() > 2 && alwaysExits(stmt.getChild(1)) && alwaysExits(stmt.getChild(2));
+        return false;
+    }
+
     private String visitWhileStmt(JmmNode node, Void unused) {
+        if (optimizeLayout) return visitRotatedWhileStmt(node);
+
         StringBuilder code = new StringBuilder();
 
         String whileLabel = ollirTypes.nextTemp("while");
@@ -330,16 +514,8 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         code.append(whileLabel);
         code.append(":\n");
 
-        // Condition computation
-        var conditionResult = exprVisitor.visit(node.getChild(0));
-        code.append(conditionResult.getComputation());
-
         // Condition check
-        code.append("if (!.bool ");
-        code.append(conditionResult.getCode());
-        code.append(") goto ");
-        code.append(endLabel);
-        code.append(END_STMT);
+        code.append(exprVisitor.visitJumpIfFalse(node.getChild(0), endLabel));
 
         // Condition code
         code.append(visit(node.getChild(1)));
@@ -357,6 +533,41 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         return code.toString();
     }
 
+    /**
+     * A while loop with its condition tested once before entering and then at the end of each
+     * iteration, so an iteration runs a single branch instead of a test and a jump back. The first
+     * test is left out for loops marked with {@link SparseConstantPropagation#ENTERED}.
+     */
+    private String visitRotatedWhileStmt(JmmNode node) {
+        StringBuilder code = new StringBuilder();
+
+        String whileLabel = ollirTypes.nextTemp("while");
+        String endLabel = ollirTypes.nextTemp("endwhile");
+
+        // Entry check, unless constant propagation showed that the first test passes
+        boolean entered = Boolean.TRUE.equals(node.getOptionalObject(SparseConstantPropagation.ENTERED).orElse(null));
+        if (!entered)
+            code.append(exprVisitor.visitJumpIfFalse(node.getChild(0), endLabel));
+
+        // "While" label
+        code.append(NL);
+        code.append(whileLabel);
+        code.append(":\n");
+
+        // Condition code
+        code.append(visit(node.getChild(1)));
+
+        // Loop while the condition holds
+        code.append(exprVisitor.visitJumpIfTrue(node.getChild(0), whileLabel));
+
+        // "Endwhile" label
+        code.append(NL);
+        code.append(endLabel);
+        code.append(":\n");
+
+        return code.toString();
+    }
+
     /**
      * Default visitor. Visits every child node and return an empty string.
      */
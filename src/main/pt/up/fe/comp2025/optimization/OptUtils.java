@@ -1,11 +1,16 @@
 package pt.up.fe.comp2025.optimization;
 
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
 import pt.up.fe.comp2025.ast.Kind;
 import pt.up.fe.comp2025.ast.TypeUtils;
 import pt.up.fe.specs.util.collections.AccumulatorMap;
 
+import java.util.List;
+import java.util.Set;
+
 /**
  * Utility methods related to the optimization middle-end.
  */
@@ -55,4 +60,175 @@ public class OptUtils {
             default -> "." + typeName;
         };
     }
+
+    /**
+     * Creates a literal expression node for a constant value (Integer or Boolean).
+     * <p>
+     * Nodes are created with the same hierarchy as parsed expressions, so that
+     * lookups such as {@code getChildren(EXPR)} still find them.
+     */
+    public static JmmNode newLiteral(Object value) {
+        Kind kind = value instanceof Boolean ? Kind.BOOLEAN_LIT : Kind.INTEGER_LIT;
+
+        JmmNode literal = new JmmNodeImpl(List.of(kind.toString(), Kind.EXPR.toString()));
+        literal.put("value", value.toString());
+        return literal;
+    }
+
+    /**
+     * Returns the constant value (Integer or Boolean) of a literal node, or null if it is not a literal.
+     */
+    public static Object getLiteralValue(JmmNode node) {
+        if (Kind.INTEGER_LIT.check(node))
+            return Integer.parseInt(node.get("value"));
+        if (Kind.BOOLEAN_LIT.check(node))
+            return Boolean.parseBoolean(node.get("value"));
+        return null;
+    }
+
+    /**
+     * Returns true if evaluating the expression can neither have side effects nor throw,
+     * so it can be dropped or duplicated freely.
+     */
+    public static boolean isPure(JmmNode expr) {
+        Kind kind = Kind.fromString(expr.getKind());
+
+        return switch (kind) {
+            case INTEGER_LIT, BOOLEAN_LIT, VAR_REF_EXPR, THIS_REF -> true;
+            case PARENTHESIS, UNARY_EXPR, LOGIC_EXPR, ARRAY_INIT ->
+                    expr.getChildren().stream().allMatch(OptUtils::isPure);
+            case BINARY_EXPR -> {
+                // Division by a divisor that may be zero can throw
+                if (expr.get("op").equals("/")) {
+                    Object divisor = getLiteralValue(expr.getChild(1));
+                    if (!(divisor instanceof Integer i) || i == 0) yield false;
+                }
+                yield isPure(expr.getChild(0)) && isPure(expr.getChild(1));
+            }
+            case ARRAY_CREATION -> {
+                // Only a known non-negative size cannot throw
+                Object size = getLiteralValue(expr.getChild(1));
+                yield size instanceof Integer i && i >= 0;
+            }
+            // Calls, array accesses (bounds), length (null) and constructors of other classes
+            default -> false;
+        };
+    }
+
+    /**
+     * Returns true if both expressions have the same structure (kinds, names, values and operators).
+     * For pure expressions this means they evaluate to the same value.
+     */
+    public static boolean sameExpr(JmmNode a, JmmNode b) {
+        if (!a.getKind().equals(b.getKind()) || a.getNumChildren() != b.getNumChildren()) return false;
+
+        for (String attr : List.of("name", "value", "op")) {
+            if (!a.getOptional(attr).equals(b.getOptional(attr))) return false;
+        }
+
+        for (int i = 0; i < a.getNumChildren(); i++) {
+            if (!sameExpr(a.getChild(i), b.getChild(i))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Creates a variable reference expression node.
+     */
+    public static JmmNode newVarRef(String name) {
+        JmmNode varRef = new JmmNodeImpl(List.of(Kind.VAR_REF_EXPR.toString(), Kind.EXPR.toString()));
+        varRef.put("name", name);
+        return varRef;
+    }
+
+    /**
+     * Creates the statement {@code name = rhs;}.
+     */
+    public static JmmNode newAssign(String name, JmmNode rhs) {
+        JmmNode assign = new JmmNodeImpl(List.of(Kind.ASSIGN_STMT.toString(), Kind.STMT.toString()));
+        assign.add(newVarRef(name));
+        assign.add(rhs);
+        return assign;
+    }
+
+    /**
+     * Deep copy of a subtree, attributes included.
+     */
+    public static JmmNode copyTree(JmmNode node) {
+        JmmNode copy = new JmmNodeImpl(node.getHierarchy());
+        for (String attr : node.getAttributes()) {
+            copy.putObject(attr, node.getObject(attr));
+        }
+        for (JmmNode child : node.getChildren()) {
+            copy.add(copyTree(child));
+        }
+        return copy;
+    }
+
+    /**
+     * Creates the declaration {@code type name;}, with a copy of the given Type node.
+     */
+    public static JmmNode newVarDecl(String name, JmmNode type) {
+        JmmNode varDecl = new JmmNodeImpl(List.of(Kind.VAR_DECL.toString()));
+        varDecl.put("name", name);
+        varDecl.add(copyTree(type));
+        return varDecl;
+    }
+
+    /**
+     * Index of the first statement among the children of a method, or the number of children if it has none.
+     */
+    public static int firstStatementIndex(JmmNode method) {
+        for (int i = 0; i < method.getNumChildren(); i++) {
+            if (Kind.STMT.check(method.getChild(i))) return i;
+        }
+        return method.getNumChildren();
+    }
+
+    /**
+     * True if 'expr' can be evaluated into a temporary right before its statement: it is evaluated
+     * whenever the statement is, and the operands evaluated before it are pure reads of the given
+     * method variables (or references to classes), which the hoisted code cannot change.
+     */
+    public static boolean canHoist(JmmNode expr, Set<String> variables, SymbolTable table) {
+        JmmNode node = expr;
+        while (!Kind.STMT.check(node)) {
+            JmmNode parent = node.getParent();
+            int index = node.getIndexOfSelf();
+
+            // Only evaluated on some paths
+            if (Kind.LOGIC_EXPR.check(parent) && index == 1) return false;
+            if (Kind.WHILE_STMT.check(parent)) return false;
+
+            // Operands evaluated before the expression must not see the effects of moving it
+            for (int i = 0; i < index; i++) {
+                JmmNode sibling = parent.getChild(i);
+                if (!Kind.EXPR.check(sibling)) continue;
+                // The target variable of an assignment is only written afterwards
+                if (Kind.ASSIGN_STMT.check(parent) && Kind.VAR_REF_EXPR.check(sibling)) continue;
+                if (!isStable(sibling, variables, table)) return false;
+            }
+            node = parent;
+        }
+
+        // The statement must be in a statement list, so the temporary can be placed before it
+        JmmNode list = node.getParent();
+        return Kind.METHOD_DECL.check(list) || Kind.BRACKET_STMT.check(list);
+    }
+
+    // Cannot throw and only reads method variables
+    private static boolean isStable(JmmNode expr, Set<String> variables, SymbolTable table) {
+        if (!isPure(expr)) return false;
+        if (Kind.VAR_REF_EXPR.check(expr) && !isStableName(expr.get("name"), variables, table)) return false;
+        return expr.getDescendants(Kind.VAR_REF_EXPR).stream()
+                .allMatch(ref -> isStableName(ref.get("name"), variables, table));
+    }
+
+    // A method variable, or a name that can only refer to a class (the receiver of a static call)
+    private static boolean isStableName(String name, Set<String> variables, SymbolTable table) {
+        if (variables.contains(name)) return true;
+        if (table.getFields().stream().anyMatch(field -> field.getName().equals(name))) return false;
+        return name.equals(table.getClassName()) || table.getImports().stream()
+                .anyMatch(imported -> imported.equals(name) || imported.endsWith("." + name));
+    }
 }
@@ -0,0 +1,175 @@
+package pt.up.fe.comp2025.optimization;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static pt.up.fe.comp2025.ast.Kind.*;
+
+/**
+ * Effects of the methods of the compiled class.
+ * <p>
+ * A method is {@link Effect#READ_ONLY} if it writes no fields and no arrays, and only calls
+ * read-only methods of this class (calls to imported classes may do anything). It is
+ * {@link Effect#PURE} if, besides, neither it nor its callees read fields or take arrays, so
+ * its result depends only on its arguments. Both properties are computed as greatest fixpoints
+ * over the {@link CallGraph}, so mutually recursive methods can be pure.
+ * <p>
+ * Separately, a method may fail if it can throw or loop forever: it has loops, recursion,
+ * array accesses, divisions or allocations that can throw, or calls a method that may fail.
+ */
+public class PurityAnalysis {
+
+    public enum Effect {
+        /**
+         * No effects, and the result only depends on the arguments.
+         */
+        PURE,
+        /**
+         * No effects, but the result may depend on fields or array contents.
+         */
+        READ_ONLY,
+        EFFECTFUL
+    }
+
+    private final Map<String, Effect> effects;
+    private final Set<String> mayFail;
+
+    private PurityAnalysis() {
+        this.effects = new HashMap<>();
+        this.mayFail = new HashSet<>();
+    }
+
+    /**
+     * Analyzes the methods of the class declared under 'root'.
+     */
+    public static PurityAnalysis analyze(JmmNode root, SymbolTable table) {
+        PurityAnalysis analysis = new PurityAnalysis();
+        CallGraph graph = CallGraph.build(root, table);
+
+        // Start from the methods that are pure on their own and weaken those that call less pure ones
+        for (JmmNode method : graph.getMethods()) {
+            String name = method.get("name");
+            Effect effect;
+            if (hasLocalEffects(method, graph, table)) effect = Effect.EFFECTFUL;
+            else if (readsFields(method, table) || hasArrayParams(name, table)) effect = Effect.READ_ONLY;
+            else effect = Effect.PURE;
+            analysis.effects.put(name, effect);
+
+            if (graph.isRecursive(name) || mayFailLocally(method, graph, table)) analysis.mayFail.add(name);
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (JmmNode method : graph.getMethods()) {
+                String name = method.get("name");
+
+                Effect effect = analysis.effects.get(name);
+                for (String callee : graph.getCallees(name)) {
+                    Effect calleeEffect = analysis.effects.get(callee);
+                    if (calleeEffect.compareTo(effect) > 0) effect = calleeEffect;
+                }
+                if (effect != analysis.effects.get(name)) {
+                    analysis.effects.put(name, effect);
+                    changed = true;
+                }
+
+                if (!analysis.mayFail.contains(name)
+                        && graph.getCallees(name).stream().anyMatch(analysis.mayFail::contains)) {
+                    analysis.mayFail.add(name);
+                    changed = true;
+                }
+            }
+        }
+
+        return analysis;
+    }
+
+    /**
+     * The effect of calling the method, EFFECTFUL for methods that are not declared in this class.
+     */
+    public Effect getEffect(String method) {
+        return effects.getOrDefault(method, Effect.EFFECTFUL);
+    }
+
+    /**
+     * True if calling the method may throw or not terminate.
+     */
+    public boolean mayFail(String method) {
+        return !effects.containsKey(method) || mayFail.contains(method);
+    }
+
+    // Field or array writes, and calls that do not target this class
+    private static boolean hasLocalEffects(JmmNode method, CallGraph graph, SymbolTable table) {
+        String name = method.get("name");
+
+        for (JmmNode assign : method.getDescendants(ASSIGN_STMT)) {
+            JmmNode target = assign.getChild(0);
+            if (ARRAY_ACCESS.check(target)) return true;
+            if (VAR_REF_EXPR.check(target) && !isVariable(target.get("name"), name, table)) return true;
+        }
+
+        for (JmmNode call : method.getDescendants(METHOD_CALL)) {
+            if (!graph.isLocalCall(call)) return true;
+        }
+
+        // Constructors of other classes (and of a superclass) may have effects
+        boolean hasSuper = table.getSuper() != null && !table.getSuper().isEmpty();
+        for (JmmNode creation : method.getDescendants(OBJECT_CREATION)) {
+            if (hasSuper || !creation.get("name").equals(table.getClassName())) return true;
+        }
+        return false;
+    }
+
+    private static boolean readsFields(JmmNode method, SymbolTable table) {
+        String name = method.get("name");
+        for (JmmNode ref : method.getDescendants(VAR_REF_EXPR)) {
+            String refName = ref.get("name");
+            if (isVariable(refName, name, table)) continue;
+            if (table.getFields().stream().anyMatch(field -> field.getName().equals(refName))) return true;
+        }
+        return false;
+    }
+
+    // The contents of an array argument can change between two calls with the same reference
+    private static boolean hasArrayParams(String method, SymbolTable table) {
+        return table.getParameters(method).stream().anyMatch(param -> param.getType().isArray());
+    }
+
+    // Loops, and operations that can throw (the callees are checked by the fixpoint)
+    private static boolean mayFailLocally(JmmNode method, CallGraph graph, SymbolTable table) {
+        if (!method.getDescendants(WHILE_STMT).isEmpty()) return true;
+        return method.getDescendants(EXPR).stream().anyMatch(expr -> mayThrow(expr, method, graph, table));
+    }
+
+    // Only the node itself matters, its operands are checked separately
+    private static boolean mayThrow(JmmNode expr, JmmNode method, CallGraph graph, SymbolTable table) {
+        if (METHOD_CALL.check(expr)) {
+            if (!graph.isLocalCall(expr)) return true;
+            // Any other receiver may be null
+            JmmNode receiver = expr.getChild(0);
+            return !THIS_REF.check(receiver) && !(VAR_REF_EXPR.check(receiver)
+                    && receiver.get("name").equals(table.getClassName())
+                    && !isVariable(receiver.get("name"), method.get("name"), table));
+        }
+        if (BINARY_EXPR.check(expr)) {
+            if (!expr.get("op").equals("/")) return false;
+            return !(OptUtils.getLiteralValue(expr.getChild(1)) instanceof Integer i) || i == 0;
+        }
+        if (ARRAY_CREATION.check(expr)) {
+            return !(OptUtils.getLiteralValue(expr.getChild(1)) instanceof Integer i) || i < 0;
+        }
+        if (OBJECT_CREATION.check(expr)) return !expr.get("name").equals(table.getClassName());
+        return ARRAY_ACCESS.check(expr) || LENGTH_ACCESS.check(expr);
+    }
+
+    private static boolean isVariable(String name, String method, SymbolTable table) {
+        return table.getParameters(method).stream().anyMatch(param -> param.getName().equals(name))
+                || table.getLocalVariables(method).stream().anyMatch(local -> local.getName().equals(name));
+    }
+}
@@ -0,0 +1,517 @@
+package pt.up.fe.comp2025.optimization;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2025.ast.Kind;
+import pt.up.fe.comp2025.optimization.cfg.BasicBlock;
+import pt.up.fe.comp2025.optimization.cfg.ControlFlowGraph;
+import pt.up.fe.comp2025.optimization.cfg.Interval;
+import pt.up.fe.comp2025.utils.ReportUtils;
+
+import java.util.*;
+
+import static pt.up.fe.comp2025.ast.Kind.*;
+
+/**
+ * Interval-based value-range analysis of int locals and parameters over the AST control-flow graph.
+ * <p>
+ * Branch conditions refine the ranges on each outgoing edge ({@code i < n} bounds i from above on the
+ * true edge and from below on the false edge), and an edge whose refined state is empty is never taken.
+ * At WhileStmt headers, variables assigned in the loop are widened while the analysis climbs and
+ * narrowed once it has stabilised, so loop counters keep their bounds; variables the loop does not
+ * assign simply keep the range they had on entry.
+ * <p>
+ * The results are used to:
+ * <ul>
+ *     <li>replace comparisons whose outcome is known with a literal, so that dead-code elimination
+ *     can remove the untaken branch;</li>
+ *     <li>attach a {@code tripCount} attribute to WhileStmts of the form
+ *     {@code while (i < n) { ... i = i + c; ... }} whose trip count is known, for later loop passes,
+ *     along with the initial value ({@code tripStart}) and step ({@code tripStep}) of the counter.</li>
+ * </ul>
+ * {@code MathUtils.random(a, b)} is assumed to return a value in [a, b] when a <= b is known;
+ * otherwise nothing is assumed about it.
+ */
+public class RangeAnalysis {
+
+    public static final String TRIP_COUNT = "tripCount";
+    public static final String TRIP_START = "tripStart";
+    public static final String TRIP_STEP = "tripStep";
+
+    // Bound on the descending passes after the widening fixpoint (narrowing converges on its own)
+    private static final int MAX_NARROWING_PASSES = 20;
+
+    private final SymbolTable table;
+    private final boolean printRanges;
+    private final List<Report> reports;
+
+    private Set<String> tracked;
+    private int comparisonsFolded;
+
+    public RangeAnalysis(SymbolTable table, boolean printRanges) {
+        this.table = table;
+        this.printRanges = printRanges;
+        this.reports = new ArrayList<>();
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    /**
+     * Runs the analysis on every method of the program.
+     *
+     * @return the number of comparisons replaced by literals
+     */
+    public int apply(JmmNode root) {
+        int total = 0;
+
+        for (JmmNode method : root.getDescendants(METHOD_DECL)) {
+            comparisonsFolded = 0;
+            analyseMethod(method);
+            total += comparisonsFolded;
+        }
+
+        // Folded comparisons may leave 'true && e' and similar behind
+        if (total > 0) new ConstantFoldingVisitor().visit(root, table);
+
+        return total;
+    }
+
+    private void analyseMethod(JmmNode method) {
+        String methodName = method.get("name");
+        ControlFlowGraph cfg = ControlFlowGraph.build(method);
+        tracked = trackedVariables(methodName);
+
+        Map<String, Interval> entryState = new HashMap<>();
+        for (Symbol param : table.getParameters(methodName)) {
+            if (tracked.contains(param.getName())) entryState.put(param.getName(), Interval.FULL);
+        }
+
+        Map<BasicBlock, Map<String, Interval>> in = new HashMap<>();
+        Map<BasicBlock, Map<String, Interval>> out = new HashMap<>();
+
+        List<BasicBlock> order = reversePostorder(cfg);
+
+        // Ascending phase, widening at loop headers
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (BasicBlock block : order) {
+                changed |= update(cfg, block, entryState, in, out, true);
+            }
+        }
+
+        // Descending phase, narrowing at loop headers
+        for (int pass = 0; pass < MAX_NARROWING_PASSES; pass++) {
+            changed = false;
+            for (BasicBlock block : order) {
+                changed |= update(cfg, block, entryState, in, out, false);
+            }
+            if (!changed) break;
+        }
+
+        // Rewrite and collect the ranges each variable can take anywhere in the method
+        Map<String, Interval> summary = new TreeMap<>();
+        for (BasicBlock block : cfg.getBlocks()) {
+            if (!in.containsKey(block)) continue;
+
+            Map<String, Interval> state = new HashMap<>(in.get(block));
+            joinInto(summary, state);
+            for (JmmNode stmt : block.getStatements()) {
+                for (JmmNode child : new ArrayList<>(stmt.getChildren())) {
+                    if (!(ASSIGN_STMT.check(stmt) && child == stmt.getChild(0) && VAR_REF_EXPR.check(child))) {
+                        foldComparisons(child, state);
+                    }
+                }
+                transfer(stmt, state);
+                joinInto(summary, state);
+            }
+
+            if (block.isBranch()) {
+                foldComparisons(block.getCondition(), state);
+            }
+        }
+
+        List<String> loops = computeTripCounts(cfg, in, out);
+        report(method, summary, loops);
+    }
+
+    // Recomputes the in/out state of a block; returns true if its in-state changed
+    private boolean update(ControlFlowGraph cfg, BasicBlock block, Map<String, Interval> entryState,
+                           Map<BasicBlock, Map<String, Interval>> in,
+                           Map<BasicBlock, Map<String, Interval>> out, boolean widening) {
+        Map<String, Interval> state;
+        if (block == cfg.getEntry()) {
+            state = new HashMap<>(entryState);
+        } else {
+            state = null;
+            for (BasicBlock pred : block.getPredecessors()) {
+                Map<String, Interval> edge = edgeState(pred, block, out);
+                if (edge != null) state = state == null ? new HashMap<>(edge) : join(state, edge);
+            }
+            if (state == null) return false;
+        }
+
+        Map<String, Interval> old = in.get(block);
+        if (isLoopHeader(block)) {
+            Set<String> assigned = assignedVariables(block.getBranchStmt().getChild(1));
+
+            // Variables the loop never assigns hold the value they had on entry
+            Map<String, Interval> entering = edgeState(block.getPredecessors().getFirst(), block, out);
+            if (entering == null) return false;
+            state.keySet().removeIf(name -> !assigned.contains(name));
+            for (var entry : entering.entrySet()) {
+                if (!assigned.contains(entry.getKey())) state.put(entry.getKey(), entry.getValue());
+            }
+
+            if (old != null) {
+                for (var entry : old.entrySet()) {
+                    Interval next = state.get(entry.getKey());
+                    if (next == null || !assigned.contains(entry.getKey())) continue;
+                    state.put(entry.getKey(), widening ? entry.getValue().widen(next) : entry.getValue().narrow(next));
+                }
+            }
+        }
+
+        if (state.equals(old)) return false;
+
+        in.put(block, new HashMap<>(state));
+        for (JmmNode stmt : block.getStatements()) {
+            transfer(stmt, state);
+        }
+        out.put(block, state);
+        return true;
+    }
+
+    // Blocks reachable from the entry, each one after its predecessors (ignoring back-edges)
+    private static List<BasicBlock> reversePostorder(ControlFlowGraph cfg) {
+        List<BasicBlock> postorder = new ArrayList<>();
+        Set<BasicBlock> visited = new HashSet<>();
+        Deque<Iterator<BasicBlock>> stack = new ArrayDeque<>();
+        Deque<BasicBlock> path = new ArrayDeque<>();
+
+        visited.add(cfg.getEntry());
+        stack.push(cfg.getEntry().getSuccessors().iterator());
+        path.push(cfg.getEntry());
+
+        while (!stack.isEmpty()) {
+            Iterator<BasicBlock> successors = stack.peek();
+            if (successors.hasNext()) {
+                BasicBlock succ = successors.next();
+                if (visited.add(succ)) {
+                    stack.push(succ.getSuccessors().iterator());
+                    path.push(succ);
+                }
+            } else {
+                stack.pop();
+                postorder.add(path.pop());
+            }
+        }
+
+        Collections.reverse(postorder);
+        return postorder;
+    }
+
+    private static Set<String> assignedVariables(JmmNode stmt) {
+        Set<String> assigned = new HashSet<>();
+        List<JmmNode> assigns = new ArrayList<>(stmt.getDescendants(ASSIGN_STMT));
+        if (ASSIGN_STMT.check(stmt)) assigns.add(stmt);
+
+        for (JmmNode assign : assigns) {
+            if (VAR_REF_EXPR.check(assign.getChild(0))) assigned.add(assign.getChild(0).get("name"));
+        }
+        return assigned;
+    }
+
+    private static boolean isLoopHeader(BasicBlock block) {
+        return block.isBranch() && WHILE_STMT.check(block.getBranchStmt());
+    }
+
+    // State along the edge pred -> succ, or null if the edge cannot be taken
+    private Map<String, Interval> edgeState(BasicBlock pred, BasicBlock succ,
+                                            Map<BasicBlock, Map<String, Interval>> out) {
+        Map<String, Interval> state = out.get(pred);
+        if (state == null) return null;
+        if (!pred.isBranch()) return state;
+
+        return refine(state, pred.getCondition(), pred.getTrueSuccessor() == succ);
+    }
+
+    // Only int locals and parameters are tracked; fields may change across calls
+    private Set<String> trackedVariables(String methodName) {
+        Set<String> vars = new HashSet<>();
+        List<Symbol> symbols = new ArrayList<>(table.getParameters(methodName));
+        symbols.addAll(table.getLocalVariables(methodName));
+
+        for (Symbol symbol : symbols) {
+            Type type = symbol.getType();
+            if (!type.isArray() && type.getName().equals("int")) vars.add(symbol.getName());
+        }
+        return vars;
+    }
+
+    private static Map<String, Interval> join(Map<String, Interval> a, Map<String, Interval> b) {
+        Map<String, Interval> result = new HashMap<>(a);
+        for (var entry : b.entrySet()) {
+            result.merge(entry.getKey(), entry.getValue(), Interval::join);
+        }
+        return result;
+    }
+
+    private static void joinInto(Map<String, Interval> summary, Map<String, Interval> state) {
+        for (var entry : state.entrySet()) {
+            summary.merge(entry.getKey(), entry.getValue(), Interval::join);
+        }
+    }
+
+    private void transfer(JmmNode stmt, Map<String, Interval> state) {
+        if (!ASSIGN_STMT.check(stmt)) return;
+
+        JmmNode lhs = stmt.getChild(0);
+        if (VAR_REF_EXPR.check(lhs) && tracked.contains(lhs.get("name"))) {
+            state.put(lhs.get("name"), evaluate(stmt.getChild(1), state));
+        }
+    }
+
+    /**
+     * Range of an int expression under the given state.
+     */
+    private Interval evaluate(JmmNode expr, Map<String, Interval> state) {
+        Kind kind = Kind.fromString(expr.getKind());
+
+        switch (kind) {
+            case INTEGER_LIT:
+                return Interval.of(Integer.parseInt(expr.get("value")));
+
+            case VAR_REF_EXPR:
+                // Unassigned or untracked variables may hold anything
+                return state.getOrDefault(expr.get("name"), Interval.FULL);
+
+            case PARENTHESIS:
+                return evaluate(expr.getChild(0), state);
+
+            case BINARY_EXPR: {
+                Interval lhs = evaluate(expr.getChild(0), state);
+                Interval rhs = evaluate(expr.getChild(1), state);
+                return switch (expr.get("op")) {
+                    case "+" -> lhs.add(rhs);
+                    case "-" -> lhs.sub(rhs);
+                    case "*" -> lhs.mul(rhs);
+                    case "/" -> lhs.div(rhs);
+                    default -> Interval.FULL;
+                };
+            }
+
+            case LENGTH_ACCESS:
+                return Interval.of(0, Integer.MAX_VALUE);
+
+            case METHOD_CALL: {
+                if (isRandomCall(expr)) {
+                    Interval low = evaluate(expr.getChild(1), state);
+                    Interval high = evaluate(expr.getChild(2), state);
+                    // Only valid if every possible 'a' is at most every possible 'b'
+                    if (low.isEmpty() || high.isEmpty() || low.getHi() > high.getLo()) return Interval.FULL;
+                    return Interval.of(low.getLo(), high.getHi());
+                }
+                return Interval.FULL;
+            }
+
+            default:
+                return Interval.FULL;
+        }
+    }
+
+    private boolean isRandomCall(JmmNode call) {
+        JmmNode callee = call.getChild(0);
+        if (!call.get("name").equals("random") || call.getNumChildren() != 3) return false;
+        if (!VAR_REF_EXPR.check(callee) || !callee.get("name").equals("MathUtils")) return false;
+
+        return table.getImports().stream().anyMatch(i -> i.equals("MathUtils") || i.endsWith(".MathUtils"));
+    }
+
+    /**
+     * Narrows the state with the knowledge that 'cond' evaluated to 'outcome'.
+     *
+     * @return the refined state, or null if the condition can never have that outcome
+     */
+    private Map<String, Interval> refine(Map<String, Interval> state, JmmNode cond, boolean outcome) {
+        Kind kind = Kind.fromString(cond.getKind());
+
+        switch (kind) {
+            case BOOLEAN_LIT:
+                return Boolean.parseBoolean(cond.get("value")) == outcome ? state : null;
+
+            case PARENTHESIS:
+                return refine(state, cond.getChild(0), outcome);
+
+            case UNARY_EXPR:
+                return refine(state, cond.getChild(0), !outcome);
+
+            case LOGIC_EXPR: {
+                Map<String, Interval> lhsTrue = refine(state, cond.getChild(0), true);
+                Map<String, Interval> bothTrue = lhsTrue == null ? null : refine(lhsTrue, cond.getChild(1), true);
+                if (outcome) return bothTrue;
+
+                // Either the lhs is false, or the lhs is true and the rhs is false
+                Map<String, Interval> lhsFalse = refine(state, cond.getChild(0), false);
+                Map<String, Interval> rhsFalse = lhsTrue == null ? null : refine(lhsTrue, cond.getChild(1), false);
+                if (lhsFalse == null) return rhsFalse;
+                if (rhsFalse == null) return lhsFalse;
+                return join(lhsFalse, rhsFalse);
+            }
+
+            case BINARY_EXPR: {
+                String op = cond.get("op");
+                if (!op.equals("<") && !op.equals(">")) return state;
+
+                // Normalize to 'a < b' (or 'a >= b' when the outcome is false)
+                JmmNode a = op.equals("<") ? cond.getChild(0) : cond.getChild(1);
+                JmmNode b = op.equals("<") ? cond.getChild(1) : cond.getChild(0);
+                Interval ra = evaluate(a, state);
+                Interval rb = evaluate(b, state);
+
+                Interval newA, newB;
+                if (outcome) {
+                    newA = ra.meet(Long.MIN_VALUE, (long) rb.getHi() - 1);
+                    newB = rb.meet((long) ra.getLo() + 1, Long.MAX_VALUE);
+                } else {
+                    newA = ra.meet(rb.getLo(), Long.MAX_VALUE);
+                    newB = rb.meet(Long.MIN_VALUE, ra.getHi());
+                }
+                if (newA.isEmpty() || newB.isEmpty()) return null;
+
+                Map<String, Interval> result = new HashMap<>(state);
+                if (VAR_REF_EXPR.check(a) && tracked.contains(a.get("name"))) result.put(a.get("name"), newA);
+                if (VAR_REF_EXPR.check(b) && tracked.contains(b.get("name"))) result.put(b.get("name"), newB);
+                return result;
+            }
+
+            default:
+                return state;
+        }
+    }
+
+    // Replaces comparisons with a known outcome by a literal
+    private void foldComparisons(JmmNode expr, Map<String, Interval> state) {
+        if (LOGIC_EXPR.check(expr)) {
+            // The rhs is only evaluated when the lhs is true
+            foldComparisons(expr.getChild(0), state);
+            Map<String, Interval> lhsTrue = refine(state, expr.getChild(0), true);
+            if (lhsTrue != null) foldComparisons(expr.getChild(1), lhsTrue);
+            return;
+        }
+
+        for (JmmNode child : new ArrayList<>(expr.getChildren())) {
+            foldComparisons(child, state);
+        }
+
+        if (!BINARY_EXPR.check(expr) || !OptUtils.isPure(expr)) return;
+
+        String op = expr.get("op");
+        if (!op.equals("<") && !op.equals(">")) return;
+
+        boolean canBeTrue = refine(state, expr, true) != null;
+        boolean canBeFalse = refine(state, expr, false) != null;
+        if (canBeTrue == canBeFalse) return;
+
+        expr.replace(OptUtils.newLiteral(canBeTrue));
+        comparisonsFolded++;
+    }
+
+    /**
+     * Attaches the trip count to loops of the form 'while (i < n) { ... i = i + c; ... }'
+     * (or 'while (i > n)' with a decrement), where i starts and n stays at a known value.
+     *
+     * @return a description of each loop with a known trip count
+     */
+    private List<String> computeTripCounts(ControlFlowGraph cfg, Map<BasicBlock, Map<String, Interval>> in,
+                                           Map<BasicBlock, Map<String, Interval>> out) {
+        List<String> loops = new ArrayList<>();
+
+        for (BasicBlock header : cfg.getBlocks()) {
+            if (!isLoopHeader(header) || !in.containsKey(header)) continue;
+
+            JmmNode whileStmt = header.getBranchStmt();
+            JmmNode cond = whileStmt.getChild(0);
+            JmmNode body = whileStmt.getChild(1);
+
+            if (!BINARY_EXPR.check(cond) || !VAR_REF_EXPR.check(cond.getChild(0))) continue;
+            String counter = cond.getChild(0).get("name");
+            if (!tracked.contains(counter) || !OptUtils.isPure(cond.getChild(1))) continue;
+
+            // The first predecessor is the block before the loop, the others are back-edges
+            Map<String, Interval> before = out.get(header.getPredecessors().getFirst());
+            if (before == null) continue;
+            Interval init = before.getOrDefault(counter, Interval.FULL);
+            Interval bound = evaluate(cond.getChild(1), in.get(header));
+            if (!init.isConstant() || !bound.isConstant()) continue;
+
+            Integer step = loopStep(body, counter);
+            if (step == null || !body.getDescendants(RETURN_STMT).isEmpty()) continue;
+
+            long i0 = init.getLo();
+            long n = bound.getLo();
+            long count;
+            if (cond.get("op").equals("<") && step > 0 && n - 1 + step <= Integer.MAX_VALUE) {
+                count = i0 >= n ? 0 : (n - i0 + step - 1) / step;
+            } else if (cond.get("op").equals(">") && step < 0 && n + 1 + step >= Integer.MIN_VALUE) {
+                count = i0 <= n ? 0 : (i0 - n - step - 1) / -step;
+            } else {
+                continue;
+            }
+
+            whileStmt.putObject(TRIP_COUNT, (int) count);
+            whileStmt.putObject(TRIP_START, (int) i0);
+            whileStmt.putObject(TRIP_STEP, step);
+            loops.add(String.format("loop on '%s' at line %d: %d iterations", counter, whileStmt.getLine(), count));
+        }
+        return loops;
+    }
+
+    // Step c of the only update 'i = i + c' / 'i = i - c' of the counter, made directly in the loop body
+    private static Integer loopStep(JmmNode body, String counter) {
+        List<JmmNode> updates = new ArrayList<>();
+        if (ASSIGN_STMT.check(body)) updates.add(body);
+        updates.addAll(body.getDescendants(ASSIGN_STMT));
+        updates.removeIf(assign -> !VAR_REF_EXPR.check(assign.getChild(0))
+                || !assign.getChild(0).get("name").equals(counter));
+
+        if (updates.size() != 1) return null;
+        JmmNode update = updates.getFirst();
+        if (update != body && update.getParent() != body) return null;
+
+        JmmNode rhs = update.getChild(1);
+        if (!BINARY_EXPR.check(rhs) || !VAR_REF_EXPR.check(rhs.getChild(0))
+                || !rhs.getChild(0).get("name").equals(counter)) return null;
+        if (!(OptUtils.getLiteralValue(rhs.getChild(1)) instanceof Integer c)) return null;
+
+        return switch (rhs.get("op")) {
+            case "+" -> c;
+            case "-" -> -c;
+            default -> null;
+        };
+    }
+
+    private void report(JmmNode method, Map<String, Interval> summary, List<String> loops) {
+        String methodName = method.get("name");
+
+        StringBuilder listing = new StringBuilder();
+        listing.append("Value ranges in '").append(methodName).append("':");
+        summary.forEach((name, range) -> listing.append("\n  ").append(name).append(" in ").append(range));
+        loops.forEach(loop -> listing.append("\n  ").append(loop));
+        if (comparisonsFolded > 0) {
+            listing.append("\n  ").append(comparisonsFolded).append(" comparisons with a known outcome");
+        }
+
+        if (printRanges) System.out.println(listing);
+
+        if (comparisonsFolded > 0 || !loops.isEmpty()) {
+            reports.add(ReportUtils.buildLogReport(Stage.OPTIMIZATION, method, listing.toString()));
+        }
+    }
+}
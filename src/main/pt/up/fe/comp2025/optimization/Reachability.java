@@ -0,0 +1,102 @@
+package pt.up.fe.comp2025.optimization;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2025.utils.ReportUtils;
+
+import java.util.*;
+
+import static pt.up.fe.comp2025.ast.Kind.*;
+
+/**
+ * Methods and fields of the compiled class that can be used when the program runs.
+ * <p>
+ * Reachable methods are found from the entry points, following every call whose name is a
+ * method of this class (whatever the receiver, since its type is not always known). The entry
+ * point is {@code main}, plus the public methods for a library. Without a {@code main}, or with
+ * a superclass (whose code may call overriding methods), every method is an entry point.
+ * Live fields are those referenced by a reachable method.
+ */
+public class Reachability {
+
+    private final Set<String> methods;
+    private final Set<String> fields;
+    private final List<String> unusedMethods;
+    private final List<String> unusedFields;
+
+    private Reachability() {
+        this.methods = new LinkedHashSet<>();
+        this.fields = new HashSet<>();
+        this.unusedMethods = new ArrayList<>();
+        this.unusedFields = new ArrayList<>();
+    }
+
+    /**
+     * Analyzes the class declared under 'root'.
+     *
+     * @param library whether public methods are entry points
+     */
+    public static Reachability analyze(JmmNode root, SymbolTable table, boolean library) {
+        Reachability reachability = new Reachability();
+
+        Map<String, JmmNode> declared = new LinkedHashMap<>();
+        root.getDescendants(METHOD_DECL).forEach(method -> declared.put(method.get("name"), method));
+
+        boolean hasSuper = table.getSuper() != null && !table.getSuper().isEmpty();
+        Deque<String> worklist = new ArrayDeque<>();
+        for (JmmNode method : declared.values()) {
+            boolean isMain = method.getBoolean("isMain", false);
+            boolean isPublic = method.getBoolean("isPublic", false);
+            if (isMain || (library && isPublic) || hasSuper || !declared.containsKey("main")) {
+                worklist.add(method.get("name"));
+            }
+        }
+
+        while (!worklist.isEmpty()) {
+            String name = worklist.poll();
+            if (!reachability.methods.add(name)) continue;
+
+            JmmNode method = declared.get(name);
+            for (JmmNode call : method.getDescendants(METHOD_CALL)) {
+                if (declared.containsKey(call.get("name"))) worklist.add(call.get("name"));
+            }
+
+            Set<String> variables = new HashSet<>();
+            table.getParameters(name).forEach(param -> variables.add(param.getName()));
+            table.getLocalVariables(name).forEach(local -> variables.add(local.getName()));
+            for (JmmNode ref : method.getDescendants(VAR_REF_EXPR)) {
+                if (!variables.contains(ref.get("name"))) reachability.fields.add(ref.get("name"));
+            }
+        }
+        reachability.fields.retainAll(table.getFields().stream().map(Symbol::getName).toList());
+
+        declared.keySet().stream().filter(name -> !reachability.methods.contains(name))
+                .forEach(reachability.unusedMethods::add);
+        table.getFields().stream().map(Symbol::getName).filter(name -> !reachability.fields.contains(name))
+                .forEach(reachability.unusedFields::add);
+
+        return reachability;
+    }
+
+    public boolean isReachable(String method) {
+        return methods.contains(method);
+    }
+
+    public boolean isLive(String field) {
+        return fields.contains(field);
+    }
+
+    /**
+     * A LOG report with the members left out, if there are any.
+     */
+    public List<Report> getReports(JmmNode root) {
+        if (unusedMethods.isEmpty() && unusedFields.isEmpty()) return List.of();
+
+        JmmNode classDecl = root.getDescendants(CLASS_DECL).getFirst();
+        return List.of(ReportUtils.buildLogReport(Stage.OPTIMIZATION, classDecl,
+                String.format("Unused members removed: methods %s, fields %s", unusedMethods, unusedFields)));
+    }
+}
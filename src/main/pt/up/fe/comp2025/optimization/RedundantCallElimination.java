@@ -0,0 +1,301 @@
+package pt.up.fe.comp2025.optimization;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2025.optimization.PurityAnalysis.Effect;
+import pt.up.fe.comp2025.utils.ReportUtils;
+
+import java.util.*;
+
+import static pt.up.fe.comp2025.ast.Kind.*;
+
+/**
+ * Removes calls to methods of this class that {@link PurityAnalysis} shows to be free of effects.
+ * <p>
+ * A call statement whose result is discarded is dropped if the method can neither throw nor loop.
+ * Within a basic block (a run of assignments, call statements and returns), a call that repeats an
+ * earlier one with the same receiver and arguments reuses its result instead: either the local the
+ * first result was assigned to, or a fresh local the first call is moved to. A reused result is
+ * forgotten when a variable it depends on is assigned, and, if it may depend on fields or array
+ * contents, on any field or array write and any call that may have effects.
+ * <p>
+ * Only int and boolean results are reused, since a fresh object or array is not the same as an
+ * earlier one.
+ */
+public class RedundantCallElimination {
+
+    private final SymbolTable table;
+    private final List<Report> reports;
+
+    private CallGraph graph;
+    private PurityAnalysis effects;
+    private int nextId;
+
+    public RedundantCallElimination(SymbolTable table) {
+        this.table = table;
+        this.reports = new ArrayList<>();
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    /**
+     * Removes dead and repeated calls in every method of the program.
+     *
+     * @return the number of calls removed
+     */
+    public int apply(JmmNode root) {
+        graph = CallGraph.build(root, table);
+        effects = PurityAnalysis.analyze(root, table);
+
+        int total = 0;
+        for (JmmNode method : root.getDescendants(METHOD_DECL)) {
+            int dropped = dropDeadCalls(method);
+
+            int reused = reuseCalls(method, method);
+            for (JmmNode block : method.getDescendants(BRACKET_STMT)) {
+                reused += reuseCalls(block, method);
+            }
+
+            if (dropped + reused > 0) {
+                reports.add(ReportUtils.buildLogReport(Stage.OPTIMIZATION, method,
+                        String.format("Call elimination in '%s': %d unused calls dropped, %d repeated calls reused",
+                                method.get("name"), dropped, reused)));
+            }
+            total += dropped + reused;
+        }
+
+        return total;
+    }
+
+    private int dropDeadCalls(JmmNode method) {
+        int dropped = 0;
+        for (JmmNode stmt : method.getDescendants(EXPR_STMT)) {
+            JmmNode call = stmt.getChild(0);
+            if (!hasNoEffects(call, method) || effects.mayFail(call.get("name"))) continue;
+
+            // The receiver cannot be null
+            JmmNode receiver = call.getChild(0);
+            if (!THIS_REF.check(receiver) && !isClassName(receiver, method)) continue;
+
+            JmmNode list = stmt.getParent();
+            if (!METHOD_DECL.check(list) && !BRACKET_STMT.check(list)) continue;
+
+            list.removeChild(stmt);
+            dropped++;
+        }
+        return dropped;
+    }
+
+    private int reuseCalls(JmmNode list, JmmNode method) {
+        int reused = 0;
+        List<Available> available = new ArrayList<>();
+
+        for (int i = 0; i < list.getNumChildren(); i++) {
+            JmmNode stmt = list.getChild(i);
+
+            // The condition of an if still runs right after the block
+            if (IF_STMT.check(stmt)) {
+                for (JmmNode call : callsOf(stmt.getChild(0))) {
+                    Available match = find(available, call);
+                    if (match != null) {
+                        call.replace(OptUtils.newVarRef(match.variable));
+                        reused++;
+                    }
+                }
+            }
+            if (!ASSIGN_STMT.check(stmt) && !EXPR_STMT.check(stmt) && !RETURN_STMT.check(stmt)) {
+                available.clear();
+                continue;
+            }
+
+            Available assigned = null;
+            for (JmmNode call : callsOf(stmt)) {
+                if (!isReusable(call, method)) {
+                    if (!hasNoEffects(call, method)) available.removeIf(entry -> entry.readsHeap);
+                    continue;
+                }
+
+                Available match = find(available, call);
+                if (match != null) {
+                    call.replace(OptUtils.newVarRef(match.variable));
+                    reused++;
+                    continue;
+                }
+                if (isConditional(call)) continue;
+
+                // 'x = call' keeps the result in 'x'
+                JmmNode target = stmt.getChild(0);
+                if (ASSIGN_STMT.check(stmt) && stmt.getChild(1) == call && VAR_REF_EXPR.check(target)
+                        && isVariable(target.get("name"), method) && !namesOf(call).contains(target.get("name"))) {
+                    assigned = newAvailable(call, target.get("name"), method);
+                    continue;
+                }
+
+                // Otherwise move the call to a fresh local, if it is repeated later
+                if (!isRepeated(call, list, i, method)) continue;
+                if (!OptUtils.canHoist(call, variablesOf(method), table)) continue;
+
+                // The declaration may shift the statements of the method
+                String temp = newLocal(call, method);
+                Available entry = newAvailable(call, temp, method);
+                list.add(OptUtils.newAssign(temp, OptUtils.copyTree(call)), stmt.getIndexOfSelf());
+                call.replace(OptUtils.newVarRef(temp));
+                available.add(entry);
+                i = stmt.getIndexOfSelf();
+            }
+
+            if (RETURN_STMT.check(stmt)) {
+                available.clear();
+                continue;
+            }
+            if (ASSIGN_STMT.check(stmt)) killStore(available, stmt.getChild(0), method);
+            if (assigned != null) available.add(assigned);
+        }
+
+        return reused;
+    }
+
+    // Forgets the results an assignment may change
+    private void killStore(List<Available> available, JmmNode target, JmmNode method) {
+        if (VAR_REF_EXPR.check(target)) {
+            String name = target.get("name");
+            available.removeIf(entry -> entry.variable.equals(name) || entry.names.contains(name));
+            if (isVariable(name, method)) return;
+        }
+        available.removeIf(entry -> entry.readsHeap);
+    }
+
+    // True if a call with the same receiver and arguments runs later in the block, before an assignment to its variables
+    private boolean isRepeated(JmmNode call, JmmNode list, int index, JmmNode method) {
+        Set<String> names = namesOf(call);
+        boolean readsHeap = readsHeap(call, method);
+
+        boolean after = false;
+        for (int i = index; i < list.getNumChildren(); i++) {
+            JmmNode stmt = list.getChild(i);
+            if (!ASSIGN_STMT.check(stmt) && !EXPR_STMT.check(stmt) && !RETURN_STMT.check(stmt)) {
+                return IF_STMT.check(stmt) && callsOf(stmt.getChild(0)).stream()
+                        .anyMatch(other -> OptUtils.sameExpr(other, call));
+            }
+
+            for (JmmNode other : callsOf(stmt)) {
+                if (other == call) {
+                    after = true;
+                    continue;
+                }
+                if (!after) continue;
+                if (OptUtils.sameExpr(other, call)) return true;
+                if (readsHeap && !hasNoEffects(other, method)) return false;
+            }
+            if (!after) continue;
+
+            if (ASSIGN_STMT.check(stmt)) {
+                JmmNode target = stmt.getChild(0);
+                if (VAR_REF_EXPR.check(target) && names.contains(target.get("name"))) return false;
+                if (readsHeap && (ARRAY_ACCESS.check(target) || !isVariable(target.get("name"), method))) return false;
+            }
+        }
+        return false;
+    }
+
+    private Available newAvailable(JmmNode call, String variable, JmmNode method) {
+        return new Available(OptUtils.copyTree(call), variable, namesOf(call), readsHeap(call, method));
+    }
+
+    // Declares a fresh local of the call's return type
+    private String newLocal(JmmNode call, JmmNode method) {
+        String callee = call.get("name");
+
+        Set<String> taken = variablesOf(method);
+        table.getFields().forEach(field -> taken.add(field.getName()));
+        String name;
+        do {
+            name = callee + "_cse" + nextId++;
+        } while (taken.contains(name));
+
+        table.getLocalVariables(method.get("name")).add(new Symbol(table.getReturnType(callee), name));
+        method.add(OptUtils.newVarDecl(name, graph.getMethod(callee).getChild(0)), OptUtils.firstStatementIndex(method));
+        return name;
+    }
+
+    private static Available find(List<Available> available, JmmNode call) {
+        for (Available entry : available) {
+            if (OptUtils.sameExpr(entry.call, call)) return entry;
+        }
+        return null;
+    }
+
+    // Calls to this class with no effects, whose receiver and arguments can be evaluated again freely
+    private boolean hasNoEffects(JmmNode call, JmmNode method) {
+        if (!METHOD_CALL.check(call) || !graph.isLocalCall(call)) return false;
+        if (effects.getEffect(call.get("name")) == Effect.EFFECTFUL) return false;
+
+        JmmNode receiver = call.getChild(0);
+        if (!THIS_REF.check(receiver) && !VAR_REF_EXPR.check(receiver)) return false;
+        return call.getChildren().subList(1, call.getNumChildren()).stream().allMatch(OptUtils::isPure);
+    }
+
+    private boolean isReusable(JmmNode call, JmmNode method) {
+        if (!hasNoEffects(call, method)) return false;
+        Type type = table.getReturnType(call.get("name"));
+        return !type.isArray() && (type.getName().equals("int") || type.getName().equals("boolean"));
+    }
+
+    // The result may change without any of the call's variables changing
+    private boolean readsHeap(JmmNode call, JmmNode method) {
+        if (effects.getEffect(call.get("name")) != Effect.PURE) return true;
+        return namesOf(call).stream()
+                .anyMatch(name -> !isVariable(name, method) && !name.equals(table.getClassName()));
+    }
+
+    private static boolean isConditional(JmmNode call) {
+        for (JmmNode node = call; !STMT.check(node); node = node.getParent()) {
+            if (LOGIC_EXPR.check(node.getParent()) && node.getIndexOfSelf() == 1) return true;
+        }
+        return false;
+    }
+
+    // Calls in evaluation order: operands before the call, left to right
+    private static List<JmmNode> callsOf(JmmNode node) {
+        List<JmmNode> calls = new ArrayList<>();
+        collectCalls(node, calls);
+        return calls;
+    }
+
+    private static void collectCalls(JmmNode node, List<JmmNode> calls) {
+        for (JmmNode child : node.getChildren()) collectCalls(child, calls);
+        if (METHOD_CALL.check(node)) calls.add(node);
+    }
+
+    private static Set<String> namesOf(JmmNode expr) {
+        Set<String> names = new HashSet<>();
+        expr.getDescendants(VAR_REF_EXPR).forEach(ref -> names.add(ref.get("name")));
+        return names;
+    }
+
+    private boolean isClassName(JmmNode receiver, JmmNode method) {
+        return VAR_REF_EXPR.check(receiver) && receiver.get("name").equals(table.getClassName())
+                && !isVariable(receiver.get("name"), method);
+    }
+
+    private boolean isVariable(String name, JmmNode method) {
+        return variablesOf(method).contains(name);
+    }
+
+    private Set<String> variablesOf(JmmNode method) {
+        String name = method.get("name");
+        Set<String> names = new HashSet<>();
+        table.getParameters(name).forEach(param -> names.add(param.getName()));
+        table.getLocalVariables(name).forEach(local -> names.add(local.getName()));
+        return names;
+    }
+
+    private record Available(JmmNode call, String variable, Set<String> names, boolean readsHeap) {
+    }
+}
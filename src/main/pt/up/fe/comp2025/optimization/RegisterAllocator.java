@@ -7,6 +7,7 @@ import org.specs.comp.ollir.Operand;
 
 import org.specs.comp.ollir.type.Type;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2025.optimization.ollir.FlowGraph;
 
 import java.util.*;
 
@@ -46,7 +47,7 @@ public class RegisterAllocator {
             if (method.isConstructMethod()) continue;
 
             // Build CFG and reset temps
-            method.buildCFG();
+            FlowGraph.rebuild(method);
             reservedThis = method.isStaticMethod() ? 0 : 1;
             reservedSize = reservedThis + method.getParams().size();
             if (method.getInstructions().getFirst().getSuccessors() != null) {
@@ -0,0 +1,318 @@
+package pt.up.fe.comp2025.optimization;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2025.ast.Kind;
+import pt.up.fe.comp2025.optimization.cfg.BasicBlock;
+import pt.up.fe.comp2025.optimization.cfg.ControlFlowGraph;
+import pt.up.fe.comp2025.optimization.cfg.LatticeValue;
+import pt.up.fe.comp2025.utils.ReportUtils;
+
+import java.util.*;
+
+import static pt.up.fe.comp2025.ast.Kind.*;
+
+/**
+ * Sparse conditional constant propagation over the AST control-flow graph of each method.
+ * <p>
+ * Blocks are only analysed once one of their incoming edges is known to be executable,
+ * and a branch whose condition evaluates to a constant only marks the taken edge.
+ * Values only move down the lattice (TOP -> constant -> BOTTOM), so each block is
+ * re-evaluated a bounded number of times and the analysis never needs to revisit the whole AST.
+ * <p>
+ * Once the analysis converges, uses of variables that hold a constant are replaced by literals
+ * and the resulting constant expressions are folded in a single pass. WhileStmts whose condition
+ * is known to hold when the loop is reached are marked with {@link #ENTERED}, so that the OLLIR
+ * generator can leave out the test before the first iteration.
+ */
+public class SparseConstantPropagation {
+
+    public static final String ENTERED = "entered";
+
+    private final SymbolTable table;
+    private final List<Report> reports;
+
+    // Interprocedural facts: constant parameters (method -> param -> value) and calls with a constant result
+    private Map<String, Map<String, Object>> parameterConstants = Map.of();
+    private Map<JmmNode, Object> callConstants = Map.of();
+
+    private int propagated;
+
+    public SparseConstantPropagation(SymbolTable table) {
+        this.table = table;
+        this.reports = new ArrayList<>();
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    /**
+     * Parameters known to hold the same constant on every call, per method.
+     */
+    public void setParameterConstants(Map<String, Map<String, Object>> parameterConstants) {
+        this.parameterConstants = parameterConstants;
+    }
+
+    /**
+     * MethodCall nodes known to always return the given constant (compared by identity).
+     */
+    public void setCallConstants(Map<JmmNode, Object> callConstants) {
+        this.callConstants = callConstants;
+    }
+
+    /**
+     * Runs the propagation on every method of the program (or on a single MethodDecl).
+     *
+     * @return the number of variable uses replaced by constants
+     */
+    public int apply(JmmNode root) {
+        propagated = 0;
+
+        List<JmmNode> methods = METHOD_DECL.check(root) ? List.of(root) : root.getDescendants(METHOD_DECL);
+        for (JmmNode method : methods) {
+            optimizeMethod(method);
+        }
+
+        // Substituted literals may enable folding of their enclosing expressions
+        new ConstantFoldingVisitor().visit(root, table);
+
+        return propagated;
+    }
+
+    private void optimizeMethod(JmmNode method) {
+        String methodName = method.get("name");
+        ControlFlowGraph cfg = ControlFlowGraph.build(method);
+        Set<String> tracked = trackedVariables(methodName);
+
+        Map<BasicBlock, Map<String, LatticeValue>> in = new HashMap<>();
+        Map<BasicBlock, Map<String, LatticeValue>> out = new HashMap<>();
+        Map<BasicBlock, Set<BasicBlock>> executableEdges = new HashMap<>();
+
+        // Parameters hold unknown values on entry, unless every caller passes the same constant;
+        // locals start undefined (TOP)
+        Map<String, LatticeValue> entryState = new HashMap<>();
+        Map<String, Object> constantParams = parameterConstants.getOrDefault(methodName, Map.of());
+        for (Symbol param : table.getParameters(methodName)) {
+            if (tracked.contains(param.getName())) {
+                Object constant = constantParams.get(param.getName());
+                entryState.put(param.getName(), constant != null ? LatticeValue.of(constant) : LatticeValue.BOTTOM);
+            }
+        }
+
+        Deque<BasicBlock> worklist = new ArrayDeque<>();
+        Set<BasicBlock> queued = new HashSet<>();
+        worklist.add(cfg.getEntry());
+        queued.add(cfg.getEntry());
+
+        while (!worklist.isEmpty()) {
+            BasicBlock block = worklist.poll();
+            queued.remove(block);
+
+            // Meet of all executable incoming edges
+            Map<String, LatticeValue> state;
+            if (block == cfg.getEntry()) {
+                state = new HashMap<>(entryState);
+            } else {
+                state = null;
+                for (BasicBlock pred : block.getPredecessors()) {
+                    if (!executableEdges.getOrDefault(pred, Set.of()).contains(block)) continue;
+                    state = state == null ? new HashMap<>(out.get(pred)) : meet(state, out.get(pred));
+                }
+                if (state == null) continue;
+            }
+            in.put(block, new HashMap<>(state));
+
+            for (JmmNode stmt : block.getStatements()) {
+                transfer(stmt, state, tracked);
+            }
+
+            boolean changed = !state.equals(out.get(block));
+            out.put(block, state);
+
+            // Decide which outgoing edges can be taken
+            List<BasicBlock> targets;
+            if (block.isBranch()) {
+                Boolean cond = evaluate(block.getCondition(), state, tracked).asBool();
+                if (cond == null) targets = block.getSuccessors();
+                else targets = List.of(cond ? block.getTrueSuccessor() : block.getFalseSuccessor());
+            } else {
+                targets = block.getSuccessors();
+            }
+
+            for (BasicBlock succ : targets) {
+                boolean newEdge = executableEdges.computeIfAbsent(block, k -> new HashSet<>()).add(succ);
+                if ((newEdge || changed) && queued.add(succ)) {
+                    worklist.add(succ);
+                }
+            }
+        }
+
+        // Rewrite: replay the transfer functions over reachable blocks and substitute constants
+        int before = propagated;
+        int branchesFolded = 0;
+        for (BasicBlock block : cfg.getBlocks()) {
+            if (!in.containsKey(block)) continue;
+
+            Map<String, LatticeValue> state = new HashMap<>(in.get(block));
+            for (JmmNode stmt : block.getStatements()) {
+                substituteStmt(stmt, state, tracked);
+                transfer(stmt, state, tracked);
+            }
+
+            if (block.isBranch()) {
+                if (WHILE_STMT.check(block.getBranchStmt())) {
+                    block.getBranchStmt().putObject(ENTERED, isEntered(block, out, executableEdges, tracked));
+                }
+                if (evaluate(block.getCondition(), state, tracked).isConstant()) branchesFolded++;
+                substitute(block.getCondition(), state, tracked);
+            }
+        }
+
+        if (propagated > before || branchesFolded > 0) {
+            reports.add(ReportUtils.buildLogReport(Stage.OPTIMIZATION, method,
+                    String.format("Constant propagation in '%s': %d values propagated, %d constant branches",
+                            methodName, propagated - before, branchesFolded)));
+        }
+    }
+
+    // Whether the condition of a loop header holds with the values that reach it from before the loop
+    private boolean isEntered(BasicBlock header, Map<BasicBlock, Map<String, LatticeValue>> out,
+                              Map<BasicBlock, Set<BasicBlock>> executableEdges, Set<String> tracked) {
+        BasicBlock before = header.getPredecessors().getFirst();
+        if (!executableEdges.getOrDefault(before, Set.of()).contains(header)) return false;
+        return Boolean.TRUE.equals(evaluate(header.getCondition(), out.get(before), tracked).asBool());
+    }
+
+    // Only int and boolean locals and parameters are tracked; fields may change across calls
+    private Set<String> trackedVariables(String methodName) {
+        Set<String> tracked = new HashSet<>();
+        List<Symbol> symbols = new ArrayList<>(table.getParameters(methodName));
+        symbols.addAll(table.getLocalVariables(methodName));
+
+        for (Symbol symbol : symbols) {
+            Type type = symbol.getType();
+            if (!type.isArray() && (type.getName().equals("int") || type.getName().equals("boolean"))) {
+                tracked.add(symbol.getName());
+            }
+        }
+        return tracked;
+    }
+
+    private static Map<String, LatticeValue> meet(Map<String, LatticeValue> a, Map<String, LatticeValue> b) {
+        Map<String, LatticeValue> result = new HashMap<>(a);
+        for (var entry : b.entrySet()) {
+            result.merge(entry.getKey(), entry.getValue(), LatticeValue::meet);
+        }
+        return result;
+    }
+
+    private void transfer(JmmNode stmt, Map<String, LatticeValue> state, Set<String> tracked) {
+        if (!ASSIGN_STMT.check(stmt)) return;
+
+        JmmNode lhs = stmt.getChild(0);
+        if (VAR_REF_EXPR.check(lhs) && tracked.contains(lhs.get("name"))) {
+            state.put(lhs.get("name"), evaluate(stmt.getChild(1), state, tracked));
+        }
+    }
+
+    /**
+     * Abstractly evaluates an expression under the given variable state.
+     */
+    LatticeValue evaluate(JmmNode expr, Map<String, LatticeValue> state, Set<String> tracked) {
+        Kind kind = Kind.fromString(expr.getKind());
+
+        switch (kind) {
+            case INTEGER_LIT:
+            case BOOLEAN_LIT:
+                return LatticeValue.of(OptUtils.getLiteralValue(expr));
+
+            case VAR_REF_EXPR:
+                String name = expr.get("name");
+                if (!tracked.contains(name)) return LatticeValue.BOTTOM;
+                return state.getOrDefault(name, LatticeValue.TOP);
+
+            case PARENTHESIS:
+                return evaluate(expr.getChild(0), state, tracked);
+
+            case UNARY_EXPR: {
+                LatticeValue operand = evaluate(expr.getChild(0), state, tracked);
+                if (!operand.isConstant()) return operand;
+                return LatticeValue.of(!operand.asBool());
+            }
+
+            case LOGIC_EXPR: {
+                // Short-circuit: a false lhs decides the result on its own
+                LatticeValue lhs = evaluate(expr.getChild(0), state, tracked);
+                if (lhs.isTop()) return LatticeValue.TOP;
+                if (Boolean.FALSE.equals(lhs.asBool())) return lhs;
+
+                LatticeValue rhs = evaluate(expr.getChild(1), state, tracked);
+                if (lhs.isConstant()) return rhs;
+                return Boolean.FALSE.equals(rhs.asBool()) ? rhs : LatticeValue.BOTTOM;
+            }
+
+            case BINARY_EXPR: {
+                LatticeValue lhs = evaluate(expr.getChild(0), state, tracked);
+                LatticeValue rhs = evaluate(expr.getChild(1), state, tracked);
+                if (lhs.isBottom() || rhs.isBottom()) return LatticeValue.BOTTOM;
+                if (lhs.isTop() || rhs.isTop()) return LatticeValue.TOP;
+
+                int l = lhs.asInt();
+                int r = rhs.asInt();
+                return switch (expr.get("op")) {
+                    case "+" -> LatticeValue.of(l + r);
+                    case "-" -> LatticeValue.of(l - r);
+                    case "*" -> LatticeValue.of(l * r);
+                    // Division by zero must still throw at runtime
+                    case "/" -> r == 0 ? LatticeValue.BOTTOM : LatticeValue.of(l / r);
+                    case "<" -> LatticeValue.of(l < r);
+                    case ">" -> LatticeValue.of(l > r);
+                    default -> LatticeValue.BOTTOM;
+                };
+            }
+
+            case METHOD_CALL: {
+                Object constant = callConstants.get(expr);
+                return constant != null ? LatticeValue.of(constant) : LatticeValue.BOTTOM;
+            }
+
+            default:
+                // Array accesses, object creation, ...
+                return LatticeValue.BOTTOM;
+        }
+    }
+
+    private void substituteStmt(JmmNode stmt, Map<String, LatticeValue> state, Set<String> tracked) {
+        if (ASSIGN_STMT.check(stmt)) {
+            // The assigned variable is a definition, not a use
+            JmmNode lhs = stmt.getChild(0);
+            if (!VAR_REF_EXPR.check(lhs)) substitute(lhs, state, tracked);
+            substitute(stmt.getChild(1), state, tracked);
+            return;
+        }
+
+        for (JmmNode child : new ArrayList<>(stmt.getChildren())) {
+            substitute(child, state, tracked);
+        }
+    }
+
+    private void substitute(JmmNode expr, Map<String, LatticeValue> state, Set<String> tracked) {
+        if (VAR_REF_EXPR.check(expr)) {
+            LatticeValue value = evaluate(expr, state, tracked);
+            if (value.isConstant()) {
+                expr.replace(OptUtils.newLiteral(value.getConstant()));
+                propagated++;
+            }
+            return;
+        }
+
+        for (JmmNode child : new ArrayList<>(expr.getChildren())) {
+            substitute(child, state, tracked);
+        }
+    }
+}
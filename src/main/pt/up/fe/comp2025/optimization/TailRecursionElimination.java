@@ -0,0 +1,150 @@
+package pt.up.fe.comp2025.optimization;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2025.ast.TypeUtils;
+import pt.up.fe.comp2025.utils.ReportUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static pt.up.fe.comp2025.ast.Kind.*;
+
+/**
+ * Finds self-recursive calls in tail position and marks them with {@link #TAIL_CALL}, so that
+ * {@link OllirGeneratorVisitor} emits them as parameter reassignments plus a jump back to the
+ * entry of the method instead of a call.
+ * <p>
+ * Tail calls are {@code return this.f(...)}, an assignment {@code x = this.f(...)} to a local
+ * whose next statement is {@code return x}, and a call statement whose next statement is
+ * {@code return c}, when every other return of the method also yields the literal {@code c}
+ * (e.g. a quicksort that always returns true). The next statement may be after the end of
+ * the enclosing if/else arms.
+ */
+public class TailRecursionElimination {
+
+    public static final String TAIL_CALL = "tailCall";
+
+    private final SymbolTable table;
+    private final List<Report> reports;
+
+    public TailRecursionElimination(SymbolTable table) {
+        this.table = table;
+        this.reports = new ArrayList<>();
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    /**
+     * Marks the tail calls of every method of the program.
+     *
+     * @return the number of tail calls found
+     */
+    public int apply(JmmNode root) {
+        int total = 0;
+
+        for (JmmNode method : root.getDescendants(METHOD_DECL)) {
+            String name = method.get("name");
+            if (table.getParameters(name).stream().anyMatch(p -> TypeUtils.isVararg(p.getType()))) continue;
+
+            int found = 0;
+            for (JmmNode ret : method.getDescendants(RETURN_STMT)) {
+                if (isSelfCall(ret.getChild(0), method)) {
+                    ret.putObject(TAIL_CALL, true);
+                    found++;
+                }
+            }
+
+            for (JmmNode assign : method.getDescendants(ASSIGN_STMT)) {
+                JmmNode target = assign.getChild(0);
+                if (!VAR_REF_EXPR.check(target) || !isLocal(target.get("name"), method)) continue;
+                if (!isSelfCall(assign.getChild(1), method)) continue;
+
+                JmmNode next = nextReturn(assign);
+                if (next != null && VAR_REF_EXPR.check(next.getChild(0))
+                        && next.getChild(0).get("name").equals(target.get("name"))) {
+                    assign.putObject(TAIL_CALL, true);
+                    found++;
+                }
+            }
+
+            Object returned = commonReturnValue(method);
+            if (returned != null) {
+                for (JmmNode stmt : method.getDescendants(EXPR_STMT)) {
+                    if (!isSelfCall(stmt.getChild(0), method)) continue;
+
+                    JmmNode next = nextReturn(stmt);
+                    if (next != null && returned.equals(OptUtils.getLiteralValue(next.getChild(0)))) {
+                        stmt.putObject(TAIL_CALL, true);
+                        found++;
+                    }
+                }
+            }
+
+            if (found > 0) {
+                reports.add(ReportUtils.buildLogReport(Stage.OPTIMIZATION, method,
+                        String.format("Tail-recursion elimination in '%s': %d tail calls turned into jumps", name, found)));
+            }
+            total += found;
+        }
+
+        return total;
+    }
+
+    private boolean isSelfCall(JmmNode expr, JmmNode method) {
+        if (!METHOD_CALL.check(expr) || !expr.get("name").equals(method.get("name"))) return false;
+        if (expr.getNumChildren() - 1 != table.getParameters(method.get("name")).size()) return false;
+
+        // An instance method must be called on the same object
+        JmmNode receiver = expr.getChild(0);
+        if (Boolean.TRUE.equals(method.getOptionalObject("isStatic").orElse(false))) {
+            return VAR_REF_EXPR.check(receiver) && receiver.get("name").equals(table.getClassName())
+                    && !isLocal(table.getClassName(), method);
+        }
+        return THIS_REF.check(receiver);
+    }
+
+    private boolean isLocal(String name, JmmNode method) {
+        String methodName = method.get("name");
+        return table.getLocalVariables(methodName).stream().anyMatch(local -> local.getName().equals(name))
+                || table.getParameters(methodName).stream().anyMatch(param -> param.getName().equals(name));
+    }
+
+    // The literal returned by every return that is not itself a tail call, or null if they differ
+    private static Object commonReturnValue(JmmNode method) {
+        Object value = null;
+        for (JmmNode ret : method.getDescendants(RETURN_STMT)) {
+            if (ret.getOptionalObject(TAIL_CALL).isPresent()) continue;
+
+            Object returned = OptUtils.getLiteralValue(ret.getChild(0));
+            if (returned == null || (value != null && !value.equals(returned))) return null;
+            value = returned;
+        }
+        return value;
+    }
+
+    // The return executed right after 'stmt', or null if the next statement is not a return
+    private static JmmNode nextReturn(JmmNode stmt) {
+        JmmNode current = stmt;
+        while (true) {
+            JmmNode parent = current.getParent();
+
+            if (METHOD_DECL.check(parent) || BRACKET_STMT.check(parent)) {
+                int next = current.getIndexOfSelf() + 1;
+                if (next < parent.getNumChildren()) {
+                    JmmNode following = parent.getChild(next);
+                    return RETURN_STMT.check(following) ? following : null;
+                }
+                if (METHOD_DECL.check(parent)) return null;
+            } else if (!IF_STMT.check(parent) || current.getIndexOfSelf() == 0) {
+                // The end of a loop body goes back to the condition
+                return null;
+            }
+            current = parent;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package pt.up.fe.comp2025.optimization.cfg;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A basic block of the AST control-flow graph.
+ * <p>
+ * Holds a straight-line sequence of simple statements (AssignStmt, ExprStmt, ReturnStmt)
+ * and, optionally, the condition of the IfStmt/WhileStmt that ends the block.
+ */
+public class BasicBlock {
+
+    private final int id;
+    private final List<JmmNode> statements;
+    private final List<BasicBlock> successors;
+    private final List<BasicBlock> predecessors;
+
+    // Branch information (only set when the block ends on a condition)
+    private JmmNode condition;
+    private JmmNode branchStmt;
+    private BasicBlock trueSuccessor;
+    private BasicBlock falseSuccessor;
+
+    public BasicBlock(int id) {
+        this.id = id;
+        this.statements = new ArrayList<>();
+        this.successors = new ArrayList<>();
+        this.predecessors = new ArrayList<>();
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public List<JmmNode> getStatements() {
+        return statements;
+    }
+
+    public List<BasicBlock> getSuccessors() {
+        return successors;
+    }
+
+    public List<BasicBlock> getPredecessors() {
+        return predecessors;
+    }
+
+    public void addStatement(JmmNode stmt) {
+        statements.add(stmt);
+    }
+
+    public void addSuccessor(BasicBlock succ) {
+        successors.add(succ);
+        succ.predecessors.add(this);
+    }
+
+    public boolean isBranch() {
+        return condition != null;
+    }
+
+    public JmmNode getCondition() {
+        return condition;
+    }
+
+    /**
+     * The IfStmt or WhileStmt whose condition ends this block.
+     */
+    public JmmNode getBranchStmt() {
+        return branchStmt;
+    }
+
+    public BasicBlock getTrueSuccessor() {
+        return trueSuccessor;
+    }
+
+    public BasicBlock getFalseSuccessor() {
+        return falseSuccessor;
+    }
+
+    void setBranch(JmmNode branchStmt, BasicBlock onTrue, BasicBlock onFalse) {
+        this.branchStmt = branchStmt;
+        this.condition = branchStmt.getChild(0);
+        this.trueSuccessor = onTrue;
+        this.falseSuccessor = onFalse;
+        addSuccessor(onTrue);
+        addSuccessor(onFalse);
+    }
+
+    @Override
+    public String toString() {
+        return "BB" + id;
+    }
+}
@@ -0,0 +1,127 @@
+package pt.up.fe.comp2025.optimization.cfg;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2025.ast.Kind;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static pt.up.fe.comp2025.ast.Kind.*;
+
+/**
+ * Control-flow graph of the statements of a single method, built directly from the AST.
+ * <p>
+ * IfStmt and WhileStmt conditions end a block with a two-way branch; a WhileStmt
+ * gets its own header block holding the condition, which is the target of the back-edge.
+ * The first predecessor of a header is the block that enters the loop.
+ * Statements that follow a ReturnStmt end up in blocks with no predecessors.
+ */
+public class ControlFlowGraph {
+
+    private final JmmNode method;
+    private final List<BasicBlock> blocks;
+    private final BasicBlock entry;
+    private final BasicBlock exit;
+
+    private ControlFlowGraph(JmmNode method) {
+        this.method = method;
+        this.blocks = new ArrayList<>();
+        this.entry = newBlock();
+        this.exit = newBlock();
+    }
+
+    /**
+     * Builds the CFG of a MethodDecl node.
+     */
+    public static ControlFlowGraph build(JmmNode method) {
+        Kind.METHOD_DECL.checkOrThrow(method);
+
+        ControlFlowGraph cfg = new ControlFlowGraph(method);
+
+        BasicBlock last = cfg.entry;
+        for (JmmNode stmt : method.getChildren(STMT)) {
+            last = cfg.visitStmt(stmt, last);
+        }
+
+        // Falling off the end of the method (void methods)
+        last.addSuccessor(cfg.exit);
+
+        return cfg;
+    }
+
+    public JmmNode getMethod() {
+        return method;
+    }
+
+    public List<BasicBlock> getBlocks() {
+        return blocks;
+    }
+
+    public BasicBlock getEntry() {
+        return entry;
+    }
+
+    public BasicBlock getExit() {
+        return exit;
+    }
+
+    private BasicBlock newBlock() {
+        BasicBlock block = new BasicBlock(blocks.size());
+        blocks.add(block);
+        return block;
+    }
+
+    // Appends a statement to the CFG, starting at 'current';
+    // returns the block where control continues after the statement
+    private BasicBlock visitStmt(JmmNode stmt, BasicBlock current) {
+        Kind kind = Kind.fromString(stmt.getKind());
+
+        switch (kind) {
+            case BRACKET_STMT:
+                for (JmmNode inner : stmt.getChildren(STMT)) {
+                    current = visitStmt(inner, current);
+                }
+                return current;
+
+            case IF_STMT: {
+                BasicBlock thenBlock = newBlock();
+                BasicBlock elseBlock = newBlock();
+                current.setBranch(stmt, thenBlock, elseBlock);
+
+                BasicBlock thenEnd = visitStmt(stmt.getChild(1), thenBlock);
+                BasicBlock elseEnd = stmt.getNumChildren() > 2
+                        ? visitStmt(stmt.getChild(2), elseBlock)
+                        : elseBlock;
+
+                BasicBlock join = newBlock();
+                thenEnd.addSuccessor(join);
+                elseEnd.addSuccessor(join);
+                return join;
+            }
+
+            case WHILE_STMT: {
+                BasicBlock header = newBlock();
+                current.addSuccessor(header);
+
+                BasicBlock body = newBlock();
+                BasicBlock after = newBlock();
+                header.setBranch(stmt, body, after);
+
+                BasicBlock bodyEnd = visitStmt(stmt.getChild(1), body);
+                bodyEnd.addSuccessor(header);
+                return after;
+            }
+
+            case RETURN_STMT:
+                current.addStatement(stmt);
+                current.addSuccessor(exit);
+                // Anything after the return is unreachable
+                return newBlock();
+
+            default:
+                // AssignStmt, ExprStmt
+                current.addStatement(stmt);
+                return current;
+        }
+    }
+}
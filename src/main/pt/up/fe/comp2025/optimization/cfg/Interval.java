@@ -0,0 +1,135 @@
+package pt.up.fe.comp2025.optimization.cfg;
+
+/**
+ * A closed range [lo, hi] of int values, used by the value-range analysis.
+ * <p>
+ * Arithmetic that may overflow gives {@link #FULL}, since Java ints wrap around.
+ * {@link #EMPTY} stands for a value that cannot occur (e.g. on an infeasible branch).
+ */
+public final class Interval {
+
+    public static final Interval FULL = new Interval(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    public static final Interval EMPTY = new Interval(1, 0);
+
+    private final int lo;
+    private final int hi;
+
+    private Interval(int lo, int hi) {
+        this.lo = lo;
+        this.hi = hi;
+    }
+
+    public static Interval of(int value) {
+        return new Interval(value, value);
+    }
+
+    /**
+     * Builds [lo, hi] from exact bounds; bounds outside the int range mean the operation overflowed.
+     */
+    public static Interval of(long lo, long hi) {
+        if (lo > hi) return EMPTY;
+        if (lo < Integer.MIN_VALUE || hi > Integer.MAX_VALUE) return FULL;
+        return new Interval((int) lo, (int) hi);
+    }
+
+    public int getLo() {
+        return lo;
+    }
+
+    public int getHi() {
+        return hi;
+    }
+
+    public boolean isEmpty() {
+        return lo > hi;
+    }
+
+    public boolean isConstant() {
+        return lo == hi;
+    }
+
+    public Interval join(Interval other) {
+        if (isEmpty()) return other;
+        if (other.isEmpty()) return this;
+        return new Interval(Math.min(lo, other.lo), Math.max(hi, other.hi));
+    }
+
+    /**
+     * Intersection, clamping the bounds instead of treating them as overflow.
+     */
+    public Interval meet(long otherLo, long otherHi) {
+        long newLo = Math.max(lo, otherLo);
+        long newHi = Math.min(hi, otherHi);
+        return newLo > newHi ? EMPTY : new Interval((int) newLo, (int) newHi);
+    }
+
+    /**
+     * Widening: a bound that is still moving jumps straight to infinity.
+     */
+    public Interval widen(Interval next) {
+        if (isEmpty()) return next;
+        if (next.isEmpty()) return this;
+        return new Interval(next.lo < lo ? Integer.MIN_VALUE : lo, next.hi > hi ? Integer.MAX_VALUE : hi);
+    }
+
+    /**
+     * Narrowing: only infinite bounds are refined, so the descending sequence stays finite.
+     */
+    public Interval narrow(Interval next) {
+        if (isEmpty() || next.isEmpty()) return next;
+        return new Interval(lo == Integer.MIN_VALUE ? next.lo : lo, hi == Integer.MAX_VALUE ? next.hi : hi);
+    }
+
+    public Interval add(Interval other) {
+        if (isEmpty() || other.isEmpty()) return EMPTY;
+        return of((long) lo + other.lo, (long) hi + other.hi);
+    }
+
+    public Interval sub(Interval other) {
+        if (isEmpty() || other.isEmpty()) return EMPTY;
+        return of((long) lo - other.hi, (long) hi - other.lo);
+    }
+
+    public Interval mul(Interval other) {
+        if (isEmpty() || other.isEmpty()) return EMPTY;
+        long a = (long) lo * other.lo;
+        long b = (long) lo * other.hi;
+        long c = (long) hi * other.lo;
+        long d = (long) hi * other.hi;
+        return of(Math.min(Math.min(a, b), Math.min(c, d)), Math.max(Math.max(a, b), Math.max(c, d)));
+    }
+
+    public Interval div(Interval other) {
+        if (isEmpty() || other.isEmpty()) return EMPTY;
+        // A divisor that may be zero (or change sign) gives no useful bound
+        if (other.lo <= 0 && other.hi >= 0) return FULL;
+
+        // Truncating division is monotonic in each operand when the divisor keeps its sign
+        long a = (long) lo / other.lo;
+        long b = (long) lo / other.hi;
+        long c = (long) hi / other.lo;
+        long d = (long) hi / other.hi;
+        return of(Math.min(Math.min(a, b), Math.min(c, d)), Math.max(Math.max(a, b), Math.max(c, d)));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Interval that)) return false;
+        if (isEmpty() || that.isEmpty()) return isEmpty() && that.isEmpty();
+        return lo == that.lo && hi == that.hi;
+    }
+
+    @Override
+    public int hashCode() {
+        return isEmpty() ? 0 : 31 * lo + hi;
+    }
+
+    @Override
+    public String toString() {
+        if (isEmpty()) return "[]";
+        String low = lo == Integer.MIN_VALUE ? "-inf" : Integer.toString(lo);
+        String high = hi == Integer.MAX_VALUE ? "+inf" : Integer.toString(hi);
+        return "[" + low + ", " + high + "]";
+    }
+}
@@ -0,0 +1,76 @@
+package pt.up.fe.comp2025.optimization.cfg;
+
+import java.util.Objects;
+
+/**
+ * Element of the constant propagation lattice: TOP (no value seen yet),
+ * a single constant (Integer or Boolean), or BOTTOM (not a constant).
+ */
+public final class LatticeValue {
+
+    public static final LatticeValue TOP = new LatticeValue(null);
+    public static final LatticeValue BOTTOM = new LatticeValue(null);
+
+    private final Object constant;
+
+    private LatticeValue(Object constant) {
+        this.constant = constant;
+    }
+
+    public static LatticeValue of(Object constant) {
+        return new LatticeValue(Objects.requireNonNull(constant));
+    }
+
+    public boolean isTop() {
+        return this == TOP;
+    }
+
+    public boolean isBottom() {
+        return this == BOTTOM;
+    }
+
+    public boolean isConstant() {
+        return constant != null;
+    }
+
+    public Object getConstant() {
+        return constant;
+    }
+
+    public Integer asInt() {
+        return constant instanceof Integer i ? i : null;
+    }
+
+    public Boolean asBool() {
+        return constant instanceof Boolean b ? b : null;
+    }
+
+    /**
+     * Meet operator: TOP is the identity, BOTTOM absorbs, different constants go to BOTTOM.
+     */
+    public LatticeValue meet(LatticeValue other) {
+        if (this.isTop()) return other;
+        if (other.isTop()) return this;
+        if (this.isBottom() || other.isBottom()) return BOTTOM;
+        return this.equals(other) ? this : BOTTOM;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LatticeValue that)) return false;
+        return constant != null && constant.equals(that.constant);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(constant);
+    }
+
+    @Override
+    public String toString() {
+        if (isTop()) return "TOP";
+        if (isBottom()) return "BOTTOM";
+        return constant.toString();
+    }
+}
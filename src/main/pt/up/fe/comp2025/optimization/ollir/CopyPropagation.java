@@ -0,0 +1,163 @@
+package pt.up.fe.comp2025.optimization.ollir;
+
+import org.specs.comp.ollir.*;
+import org.specs.comp.ollir.inst.*;
+
+import java.util.*;
+
+/**
+ * Removes the copies between OLLIR temporaries and variables that the generator leaves behind.
+ * <p>
+ * After {@code t := y}, with t a temporary and y a variable or a literal, reads of t are replaced
+ * by y wherever the copy is available: every path to the read goes through the copy, and neither
+ * t nor y is assigned after it. The copies are left for {@link DeadStoreElimination}, which
+ * removes those that are no longer read.
+ * <p>
+ * The other way around, a temporary read only by the copy {@code x := t} that follows its
+ * assignment {@code t := rhs} is dropped, and the two become {@code x := rhs}.
+ * <p>
+ * Array names, the callers of calls and the object of field accesses are never replaced, since
+ * OLLIR keeps no way to change them; their indices, arguments and values are.
+ */
+public class CopyPropagation {
+
+    private final ClassUnit ollirClass;
+
+    public CopyPropagation(ClassUnit ollirClass) {
+        this.ollirClass = ollirClass;
+    }
+
+    /**
+     * Propagates the copies of every method of the class.
+     *
+     * @return the number of operands replaced and copies merged
+     */
+    public int apply() {
+        int total = 0;
+        for (Method method : ollirClass.getMethods()) {
+            int merged = mergeCopies(method);
+
+            FlowGraph.rebuild(method);
+            Map<Instruction, Map<String, Element>> available = availableCopies(method);
+            for (Instruction inst : method.getInstructions()) {
+                Map<String, Element> copies = available.get(inst);
+                if (copies != null && !copies.isEmpty()) {
+                    total += InstUtils.replaceUses(inst, operand -> replacement(operand, copies));
+                }
+            }
+
+            if (merged > 0) FlowGraph.rebuildVarTable(method);
+            total += merged;
+        }
+        return total;
+    }
+
+    // Turns 't := rhs; x := t' into 'x := rhs' when t is not read anywhere else
+    private int mergeCopies(Method method) {
+        FlowGraph graph = FlowGraph.build(method);
+        List<Instruction> instructions = graph.getInstructions();
+
+        Map<String, Integer> uses = new HashMap<>();
+        Map<String, Integer> definitions = new HashMap<>();
+        for (Instruction inst : instructions) {
+            InstUtils.usedVariables(inst).forEach(name -> uses.merge(name, 1, Integer::sum));
+            InstUtils.definedVariable(inst).ifPresent(name -> definitions.merge(name, 1, Integer::sum));
+        }
+
+        int merged = 0;
+        for (int i = 0; i + 1 < instructions.size(); i++) {
+            Instruction inst = instructions.get(i);
+            Instruction next = instructions.get(i + 1);
+            String temporary = InstUtils.definedVariable(inst).orElse(null);
+            if (temporary == null || !InstUtils.isTemporary(temporary, method)) continue;
+            if (uses.get(temporary) == null || uses.get(temporary) != 1 || definitions.get(temporary) != 1) continue;
+
+            if (!(next instanceof AssignInstruction copy) || InstUtils.definedVariable(copy).isEmpty()
+                    || !(copy.getRhs() instanceof SingleOpInstruction single)
+                    || !InstUtils.isVariable(single.getSingleOperand(), temporary)
+                    || !graph.labelsOf(next).isEmpty()) continue;
+
+            graph.replace(inst, new AssignInstruction(copy.getDest(), copy.getTypeOfAssign(), ((AssignInstruction) inst).getRhs()));
+            graph.remove(next);
+            merged++;
+        }
+        return merged;
+    }
+
+    // Copies available before each reachable instruction, as variable -> copied value
+    private Map<Instruction, Map<String, Element>> availableCopies(Method method) {
+        List<Instruction> instructions = method.getInstructions();
+        Map<Instruction, Map<String, Element>> in = new IdentityHashMap<>();
+        Map<Instruction, Map<String, Element>> out = new IdentityHashMap<>();
+        if (instructions.isEmpty()) return in;
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Instruction inst : instructions) {
+                // Intersection of the copies of the predecessors seen so far (none at the entry)
+                Map<String, Element> copies = null;
+                for (Node pred : inst.getPredecessors()) {
+                    Map<String, Element> predCopies = pred instanceof Instruction predInst ? out.get(predInst) : Map.of();
+                    if (predCopies == null) continue;
+                    if (copies == null) copies = new HashMap<>(predCopies);
+                    else copies.entrySet().removeIf(entry -> !sameValue(entry.getValue(), predCopies.get(entry.getKey())));
+                }
+                if (inst == instructions.getFirst()) copies = new HashMap<>();
+                if (copies == null) continue;
+
+                in.put(inst, copies);
+                Map<String, Element> after = transfer(inst, copies, method);
+                if (!sameCopies(after, out.get(inst))) {
+                    out.put(inst, after);
+                    changed = true;
+                }
+            }
+        }
+        return in;
+    }
+
+    private static Map<String, Element> transfer(Instruction inst, Map<String, Element> copies, Method method) {
+        Map<String, Element> after = new HashMap<>(copies);
+        String dest = InstUtils.definedVariable(inst).orElse(null);
+        if (dest == null) return after;
+
+        after.remove(dest);
+        after.values().removeIf(value -> InstUtils.isVariable(value, dest));
+
+        if (!(((AssignInstruction) inst).getRhs() instanceof SingleOpInstruction single)) return after;
+        Element value = resolve(single.getSingleOperand(), copies);
+        if (InstUtils.isTemporary(dest, method) && !(value instanceof ArrayOperand) && !InstUtils.isVariable(value, dest)) {
+            after.put(dest, value);
+        }
+        return after;
+    }
+
+    private static Element resolve(Element element, Map<String, Element> copies) {
+        if (!(element instanceof Operand operand) || element.isLiteral() || element instanceof ArrayOperand) return element;
+        return copies.getOrDefault(operand.getName(), element);
+    }
+
+    private static boolean sameCopies(Map<String, Element> a, Map<String, Element> b) {
+        return b != null && a.keySet().equals(b.keySet())
+                && a.entrySet().stream().allMatch(entry -> sameValue(entry.getValue(), b.get(entry.getKey())));
+    }
+
+    // Elements are compared by value, since each instruction has its own
+    private static boolean sameValue(Element a, Element b) {
+        if (a == null || b == null) return false;
+        if (a instanceof LiteralElement literalA) {
+            return b instanceof LiteralElement literalB && literalA.getLiteral().equals(literalB.getLiteral())
+                    && literalA.getType().toString().equals(literalB.getType().toString());
+        }
+        return !(b instanceof LiteralElement) && ((Operand) a).getName().equals(((Operand) b).getName());
+    }
+
+    // A fresh copy of the value that replaces a variable read, or null if it stays
+    private static Element replacement(Operand operand, Map<String, Element> copies) {
+        Element value = copies.get(operand.getName());
+        if (value == null) return null;
+        if (value instanceof LiteralElement literal) return new LiteralElement(literal.getLiteral(), literal.getType());
+        return new Operand(((Operand) value).getName(), value.getType());
+    }
+}
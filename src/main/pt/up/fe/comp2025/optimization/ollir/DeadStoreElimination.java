@@ -0,0 +1,78 @@
+package pt.up.fe.comp2025.optimization.ollir;
+
+import org.specs.comp.ollir.*;
+import org.specs.comp.ollir.inst.*;
+
+import java.util.List;
+
+/**
+ * Removes assignments to OLLIR temporaries whose value is never read, and copies of a variable
+ * to itself.
+ * <p>
+ * Only assignments that cannot throw or have other effects go: arithmetic (divisions by a
+ * non-zero literal), comparisons, boolean operations, copies and fields of {@code this}. Array
+ * loads and lengths may throw, and calls may do anything, so they stay. Removing a store can
+ * leave the values it read dead, so liveness is computed again until nothing changes, and the
+ * var table is rebuilt without the variables that are no longer used.
+ */
+public class DeadStoreElimination {
+
+    private final ClassUnit ollirClass;
+
+    public DeadStoreElimination(ClassUnit ollirClass) {
+        this.ollirClass = ollirClass;
+    }
+
+    /**
+     * Removes the dead stores of every method of the class.
+     *
+     * @return the number of instructions removed
+     */
+    public int apply() {
+        int total = 0;
+        for (Method method : ollirClass.getMethods()) {
+            int removed = 0;
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                FlowGraph graph = FlowGraph.build(method);
+                Liveness liveness = Liveness.analyze(method);
+                for (Instruction inst : List.copyOf(graph.getInstructions())) {
+                    String dest = InstUtils.definedVariable(inst).orElse(null);
+                    if (dest == null || !InstUtils.isLocal(dest, method)) continue;
+
+                    Instruction rhs = ((AssignInstruction) inst).getRhs();
+                    boolean selfCopy = rhs instanceof SingleOpInstruction single
+                            && InstUtils.isVariable(single.getSingleOperand(), dest);
+                    if (!selfCopy && (!InstUtils.isTemporary(dest, method) || liveness.isLiveAfter(inst, dest)
+                            || !hasNoEffects(rhs))) continue;
+
+                    if (graph.remove(inst)) {
+                        removed++;
+                        changed = true;
+                    }
+                }
+            }
+
+            if (removed > 0) FlowGraph.rebuildVarTable(method);
+            FlowGraph.rebuild(method);
+            total += removed;
+        }
+        return total;
+    }
+
+    private static boolean hasNoEffects(Instruction rhs) {
+        return switch (rhs) {
+            case BinaryOpInstruction binary -> switch (binary.getOperation().getOpType()) {
+                case DIV, REM -> binary.getRightOperand() instanceof LiteralElement literal
+                        && !literal.getLiteral().equals("0");
+                default -> !(binary.getLeftOperand() instanceof ArrayOperand)
+                        && !(binary.getRightOperand() instanceof ArrayOperand);
+            };
+            case UnaryOpInstruction unary -> !(unary.getOperand() instanceof ArrayOperand);
+            case SingleOpInstruction single -> !(single.getSingleOperand() instanceof ArrayOperand);
+            case GetFieldInstruction getField -> getField.getObject().getName().equals("this");
+            default -> false;
+        };
+    }
+}
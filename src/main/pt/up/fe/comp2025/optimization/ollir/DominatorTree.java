@@ -0,0 +1,167 @@
+package pt.up.fe.comp2025.optimization.ollir;
+
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.inst.Instruction;
+
+import java.util.*;
+
+/**
+ * Dominator tree and dominance frontiers of the instructions of an OLLIR method.
+ * <p>
+ * Immediate dominators come from the iterative algorithm of Cooper, Harvey and Kennedy over the
+ * reverse postorder, which is linear in practice, unlike the dominator sets of {@link FlowGraph}.
+ * The root is a virtual entry node that precedes the first instruction, so a first instruction
+ * that is also a loop header (jumped back to) has a frontier and can get phis. Unreachable
+ * instructions are not part of the tree.
+ * <p>
+ * The method's CFG must be up to date ({@link FlowGraph#rebuild(Method)}).
+ */
+public class DominatorTree {
+
+    // Node 0 is the entry; the other nodes are the reachable instructions, in reverse postorder
+    private final List<Instruction> nodes;
+    private final Map<Instruction, Integer> numbers;
+    private final int[] idom;
+    private final List<List<Integer>> children;
+    private final List<Set<Integer>> frontiers;
+
+    private DominatorTree(List<Instruction> nodes) {
+        this.nodes = nodes;
+        this.numbers = new IdentityHashMap<>();
+        for (int i = 1; i < nodes.size(); i++) numbers.put(nodes.get(i), i);
+        this.idom = new int[nodes.size()];
+        this.children = new ArrayList<>();
+        this.frontiers = new ArrayList<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            children.add(new ArrayList<>());
+            frontiers.add(new LinkedHashSet<>());
+        }
+    }
+
+    public static DominatorTree build(Method method) {
+        List<Instruction> nodes = new ArrayList<>();
+        nodes.add(null);
+        if (!method.getInstructions().isEmpty()) nodes.addAll(reversePostorder(method.getInstructions().getFirst()));
+
+        DominatorTree tree = new DominatorTree(nodes);
+        tree.computeDominators();
+        tree.computeFrontiers();
+        return tree;
+    }
+
+    private static List<Instruction> reversePostorder(Instruction first) {
+        List<Instruction> postorder = new ArrayList<>();
+        Set<Instruction> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        // Iterative depth-first search; each frame is an instruction and the successors left to visit
+        Deque<Map.Entry<Instruction, Iterator<Instruction>>> stack = new ArrayDeque<>();
+        visited.add(first);
+        stack.push(Map.entry(first, first.getSuccessorsAsInst().iterator()));
+        while (!stack.isEmpty()) {
+            var frame = stack.peek();
+            if (frame.getValue().hasNext()) {
+                Instruction succ = frame.getValue().next();
+                if (visited.add(succ)) stack.push(Map.entry(succ, succ.getSuccessorsAsInst().iterator()));
+            } else {
+                postorder.add(frame.getKey());
+                stack.pop();
+            }
+        }
+        return postorder.reversed();
+    }
+
+    private List<Integer> predecessors(int node) {
+        List<Integer> preds = new ArrayList<>();
+        if (node == 1) preds.add(0);
+        for (var pred : nodes.get(node).getPredecessors()) {
+            Integer number = pred instanceof Instruction predInst ? numbers.get(predInst) : null;
+            if (number != null) preds.add(number);
+        }
+        return preds;
+    }
+
+    private void computeDominators() {
+        Arrays.fill(idom, -1);
+        idom[0] = 0;
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int node = 1; node < nodes.size(); node++) {
+                int newIdom = -1;
+                for (int pred : predecessors(node)) {
+                    if (idom[pred] == -1) continue;
+                    newIdom = newIdom == -1 ? pred : intersect(pred, newIdom);
+                }
+                if (newIdom != idom[node]) {
+                    idom[node] = newIdom;
+                    changed = true;
+                }
+            }
+        }
+        for (int node = 1; node < nodes.size(); node++) children.get(idom[node]).add(node);
+    }
+
+    // The nearest common dominator, walking up from both nodes (numbers grow along the reverse postorder)
+    private int intersect(int a, int b) {
+        while (a != b) {
+            while (a > b) a = idom[a];
+            while (b > a) b = idom[b];
+        }
+        return a;
+    }
+
+    private void computeFrontiers() {
+        for (int node = 1; node < nodes.size(); node++) {
+            List<Integer> preds = predecessors(node);
+            if (preds.size() < 2) continue;
+            for (int pred : preds) {
+                for (int runner = pred; runner != idom[node]; runner = idom[runner]) frontiers.get(runner).add(node);
+            }
+        }
+    }
+
+    /**
+     * The reachable instructions, in reverse postorder.
+     */
+    public List<Instruction> getInstructions() {
+        return nodes.subList(1, nodes.size());
+    }
+
+    public boolean isReachable(Instruction inst) {
+        return numbers.containsKey(inst);
+    }
+
+    /**
+     * The immediate dominator of an instruction, or null for the first one (dominated only by the entry).
+     */
+    public Instruction getImmediateDominator(Instruction inst) {
+        return nodes.get(idom[numbers.get(inst)]);
+    }
+
+    /**
+     * The instructions immediately dominated by an instruction, or by the entry if 'inst' is null.
+     */
+    public List<Instruction> getChildren(Instruction inst) {
+        return children.get(inst == null ? 0 : numbers.get(inst)).stream().map(nodes::get).toList();
+    }
+
+    /**
+     * The instructions where the dominance of an instruction ends: they are not strictly
+     * dominated by it, but one of their predecessors is dominated by it.
+     */
+    public List<Instruction> getFrontier(Instruction inst) {
+        return frontiers.get(numbers.get(inst)).stream().map(nodes::get).toList();
+    }
+
+    /**
+     * Whether every path from the method entry to 'b' goes through 'a'.
+     */
+    public boolean dominates(Instruction a, Instruction b) {
+        int target = numbers.get(a);
+        for (int node = numbers.get(b); node != 0; node = idom[node]) {
+            if (node == target) return true;
+        }
+        return false;
+    }
+}
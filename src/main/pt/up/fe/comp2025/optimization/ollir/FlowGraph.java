@@ -0,0 +1,290 @@
+package pt.up.fe.comp2025.optimization.ollir;
+
+import org.specs.comp.ollir.*;
+import org.specs.comp.ollir.inst.Instruction;
+import org.specs.comp.ollir.inst.ReturnInstruction;
+
+import java.util.*;
+
+/**
+ * Control-flow information for the instructions of an OLLIR method, on top of {@link Method#buildCFG()}.
+ * <p>
+ * The library CFG only ever adds edges, so {@link #rebuild(Method)} clears the old ones before
+ * building it again; every pass that changes the instruction list rebuilds it. Dominators are
+ * computed per instruction, and natural loops are found from the back-edges (edges whose target
+ * dominates their source).
+ * <p>
+ * Labels live in the method's label map, so moving or removing an instruction must keep the
+ * labels on the instruction that now runs in its place; {@link #remove(Instruction)} and
+ * {@link #insertBefore(Instruction, List)} do that. Indices and dominators describe the method
+ * as it was when the graph was built, so a pass builds a new graph after changing the method.
+ */
+public class FlowGraph {
+
+    private final Method method;
+    private final List<Instruction> instructions;
+    private final Map<Instruction, Integer> indices;
+    private final List<BitSet> dominators;
+
+    private FlowGraph(Method method) {
+        this.method = method;
+        this.instructions = method.getInstructions();
+        this.indices = new IdentityHashMap<>();
+        this.dominators = new ArrayList<>();
+    }
+
+    /**
+     * Rebuilds the CFG of a method and computes its dominators.
+     */
+    public static FlowGraph build(Method method) {
+        rebuild(method);
+
+        FlowGraph graph = new FlowGraph(method);
+        for (int i = 0; i < graph.instructions.size(); i++) graph.indices.put(graph.instructions.get(i), i);
+        graph.computeDominators();
+        return graph;
+    }
+
+    /**
+     * Builds the CFG of a method from scratch, dropping the edges of any previous build.
+     */
+    public static void rebuild(Method method) {
+        for (Instruction inst : method.getInstructions()) {
+            inst.getSuccessors().clear();
+            inst.getPredecessors().clear();
+        }
+        method.buildCFG();
+
+        // BEGIN and END keep the edges of earlier builds
+        Node begin = method.getBeginNode();
+        Node end = method.getEndNode();
+        begin.getSuccessors().clear();
+        begin.addSucc(method.getInstructions().isEmpty() ? end : method.getInstructions().getFirst());
+        end.getPredecessors().clear();
+        if (method.getInstructions().isEmpty()) end.addPred(begin);
+        for (Instruction inst : method.getInstructions()) {
+            if (inst.getSuccessors().contains(end)) end.addPred(inst);
+        }
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public List<Instruction> getInstructions() {
+        return instructions;
+    }
+
+    public int indexOf(Instruction inst) {
+        return indices.get(inst);
+    }
+
+    public boolean isReachable(Instruction inst) {
+        return dominators.get(indexOf(inst)).get(indexOf(inst));
+    }
+
+    /**
+     * Whether every path from the method entry to 'b' goes through 'a'.
+     */
+    public boolean dominates(Instruction a, Instruction b) {
+        return dominators.get(indexOf(b)).get(indexOf(a));
+    }
+
+    /**
+     * Natural loops of the method, innermost first (a loop comes before any loop that contains it).
+     */
+    public List<Loop> naturalLoops() {
+        Map<Instruction, Set<Instruction>> bodies = new LinkedHashMap<>();
+        Map<Instruction, List<Instruction>> latches = new IdentityHashMap<>();
+
+        for (Instruction source : instructions) {
+            if (!isReachable(source)) continue;
+            for (Instruction header : source.getSuccessorsAsInst()) {
+                if (!dominates(header, source)) continue;
+
+                Set<Instruction> body = bodies.computeIfAbsent(header, h -> {
+                    Set<Instruction> set = Collections.newSetFromMap(new IdentityHashMap<>());
+                    set.add(h);
+                    return set;
+                });
+                latches.computeIfAbsent(header, h -> new ArrayList<>()).add(source);
+
+                // Everything that reaches the back-edge without going through the header
+                Deque<Instruction> worklist = new ArrayDeque<>(List.of(source));
+                while (!worklist.isEmpty()) {
+                    Instruction inst = worklist.pop();
+                    if (!body.add(inst)) continue;
+                    for (Node pred : inst.getPredecessors()) {
+                        if (pred instanceof Instruction predInst && isReachable(predInst)) worklist.push(predInst);
+                    }
+                }
+            }
+        }
+
+        List<Loop> loops = new ArrayList<>();
+        for (var entry : bodies.entrySet()) {
+            List<Instruction> ordered = entry.getValue().stream()
+                    .sorted(Comparator.comparingInt(this::indexOf))
+                    .toList();
+            loops.add(new Loop(entry.getKey(), ordered, latches.get(entry.getKey())));
+        }
+        loops.sort(Comparator.comparingInt(loop -> loop.getBody().size()));
+        return loops;
+    }
+
+    /**
+     * The labels attached to an instruction.
+     */
+    public List<String> labelsOf(Instruction inst) {
+        return method.getLabels().entrySet().stream()
+                .filter(entry -> entry.getValue() == inst)
+                .map(Map.Entry::getKey)
+                .sorted()
+                .toList();
+    }
+
+    /**
+     * The instructions that jump to a label.
+     */
+    public List<Instruction> jumpsTo(String label) {
+        return instructions.stream()
+                .filter(inst -> label.equals(InstUtils.jumpLabel(inst)))
+                .toList();
+    }
+
+    public void moveLabel(String label, Instruction target) {
+        method.getLabels().put(label, target);
+    }
+
+    /**
+     * Removes an instruction; its labels move to the instruction that follows it.
+     *
+     * @return false if the instruction has labels and is the last one, so it was kept
+     */
+    public boolean remove(Instruction inst) {
+        int index = instructions.indexOf(inst);
+        List<String> labels = labelsOf(inst);
+        if (!labels.isEmpty() && index == instructions.size() - 1) return false;
+
+        instructions.remove(index);
+        for (String label : labels) moveLabel(label, instructions.get(index));
+        return true;
+    }
+
+    /**
+     * Inserts instructions, in order, right before 'anchor'. Jumps to the anchor's labels still
+     * go to the anchor; only falling through runs the new instructions.
+     */
+    public void insertBefore(Instruction anchor, List<Instruction> inserted) {
+        instructions.addAll(instructions.indexOf(anchor), inserted);
+    }
+
+    /**
+     * Inserts an instruction right after 'anchor', which must not be a jump.
+     */
+    public void insertAfter(Instruction anchor, Instruction inserted) {
+        instructions.add(instructions.indexOf(anchor) + 1, inserted);
+    }
+
+    /**
+     * Puts 'replacement' in the place of 'inst', labels included.
+     */
+    public void replace(Instruction inst, Instruction replacement) {
+        List<String> labels = labelsOf(inst);
+        instructions.set(instructions.indexOf(inst), replacement);
+        for (String label : labels) moveLabel(label, replacement);
+    }
+
+    /**
+     * The labels of the loop header that are reached from outside the loop, which must move to a
+     * preheader; null if no preheader can be placed right before the header (an instruction of
+     * the loop falls through into it, or a label is the target of jumps from both sides).
+     */
+    public List<String> preheaderLabels(Loop loop) {
+        int headerIndex = indexOf(loop.getHeader());
+        if (headerIndex > 0) {
+            Instruction previous = instructions.get(headerIndex - 1);
+            if (loop.contains(previous) && previous.getInstType() != InstructionType.GOTO) return null;
+        }
+
+        List<String> entryLabels = new ArrayList<>();
+        for (String label : labelsOf(loop.getHeader())) {
+            List<Instruction> jumps = jumpsTo(label);
+            boolean fromInside = jumps.stream().anyMatch(loop::contains);
+            boolean fromOutside = jumps.stream().anyMatch(jump -> !loop.contains(jump));
+            if (fromInside && fromOutside) return null;
+            if (fromOutside) entryLabels.add(label);
+        }
+        return entryLabels;
+    }
+
+    /**
+     * Inserts a preheader before the loop header 'header': the entry labels (see
+     * {@link #preheaderLabels(Loop)}) move to its first instruction.
+     */
+    public void addPreheader(Instruction header, List<String> entryLabels, List<Instruction> code) {
+        insertBefore(header, code);
+        for (String label : entryLabels) moveLabel(label, code.getFirst());
+    }
+
+    /**
+     * Rebuilds the var table of a method after variables were added or removed, renumbering its registers.
+     */
+    public static void rebuildVarTable(Method method) {
+        method.getVarTable().clear();
+        method.buildVarTable();
+
+        // The library skips the operands of returns, so a variable that is only returned (after
+        // its assignments were removed as unreachable) gets its entry here
+        int next = method.getVarTable().values().stream().mapToInt(Descriptor::getVirtualReg).max().orElse(-1) + 1;
+        for (Instruction inst : method.getInstructions()) {
+            if (inst instanceof ReturnInstruction ret && ret.getOperand().orElse(null) instanceof Operand operand
+                    && !operand.isLiteral() && !method.getVarTable().containsKey(operand.getName())) {
+                method.getVarTable().put(operand.getName(), new Descriptor(VarScope.LOCAL, next++, operand.getType()));
+            }
+        }
+    }
+
+    private void computeDominators() {
+        int n = instructions.size();
+        if (n == 0) return;
+
+        BitSet reachable = new BitSet(n);
+        Deque<Integer> worklist = new ArrayDeque<>(List.of(0));
+        while (!worklist.isEmpty()) {
+            int i = worklist.pop();
+            if (reachable.get(i)) continue;
+            reachable.set(i);
+            for (Instruction succ : instructions.get(i).getSuccessorsAsInst()) worklist.push(indexOf(succ));
+        }
+
+        // Unreachable instructions get an empty set, so they dominate and are dominated by nothing
+        for (int i = 0; i < n; i++) {
+            BitSet dom = new BitSet(n);
+            if (i == 0) dom.set(0);
+            else if (reachable.get(i)) dom.set(0, n);
+            dominators.add(dom);
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 1; i < n; i++) {
+                if (!reachable.get(i)) continue;
+
+                BitSet dom = null;
+                for (Node pred : instructions.get(i).getPredecessors()) {
+                    if (!(pred instanceof Instruction predInst) || !reachable.get(indexOf(predInst))) continue;
+                    BitSet predDom = dominators.get(indexOf(predInst));
+                    if (dom == null) dom = (BitSet) predDom.clone();
+                    else dom.and(predDom);
+                }
+                dom.set(i);
+                if (!dom.equals(dominators.get(i))) {
+                    dominators.set(i, dom);
+                    changed = true;
+                }
+            }
+        }
+    }
+}
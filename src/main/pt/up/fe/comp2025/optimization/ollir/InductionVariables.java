@@ -0,0 +1,190 @@
+package pt.up.fe.comp2025.optimization.ollir;
+
+import org.specs.comp.ollir.*;
+import org.specs.comp.ollir.inst.*;
+
+import java.util.*;
+
+/**
+ * Induction variables of a natural loop.
+ * <p>
+ * A basic induction variable is assigned exactly once in the loop, by {@code i := i + c},
+ * {@code i := c + i} or {@code i := i - c} with a literal c (the updates the backend emits as
+ * {@code iinc}). A derived induction variable is a local assigned only once in the whole method,
+ * inside the loop, to a linear function of a basic one: {@code i op k} or {@code k op i} with
+ * op in +, - (only {@code i - k}) and *, where k is invariant in the loop, or the same on a
+ * derived variable computed just before, in the same straight-line code and with no update of
+ * the basic variable in between (the temporaries of {@code (i + 1) * 2}).
+ * <p>
+ * Each derived variable records its factor (its value changes by factor * c whenever the basic
+ * one changes by c), a literal or an invariant variable, and the chain of instructions that
+ * computes it from the basic variable.
+ */
+public class InductionVariables {
+
+    public record Basic(String name, int step, Instruction update) {
+    }
+
+    public record Derived(String name, Basic base, Element factor, List<Instruction> chain) {
+
+        /**
+         * The instruction that assigns the variable (the last of the chain).
+         */
+        public AssignInstruction definition() {
+            return (AssignInstruction) chain.getLast();
+        }
+    }
+
+    private final Loop loop;
+    private final FlowGraph graph;
+    private final Map<String, List<Instruction>> loopDefinitions;
+    private final Map<String, Integer> methodDefinitions;
+    private final Map<String, Basic> basics;
+    private final Map<String, Derived> derived;
+
+    private InductionVariables(Loop loop, FlowGraph graph) {
+        this.loop = loop;
+        this.graph = graph;
+        this.loopDefinitions = new HashMap<>();
+        this.methodDefinitions = new HashMap<>();
+        this.basics = new LinkedHashMap<>();
+        this.derived = new LinkedHashMap<>();
+    }
+
+    public static InductionVariables analyze(Loop loop, FlowGraph graph) {
+        InductionVariables ivs = new InductionVariables(loop, graph);
+
+        for (Instruction inst : graph.getInstructions()) {
+            InstUtils.definedVariable(inst).ifPresent(name -> {
+                ivs.methodDefinitions.merge(name, 1, Integer::sum);
+                if (loop.contains(inst)) ivs.loopDefinitions.computeIfAbsent(name, k -> new ArrayList<>()).add(inst);
+            });
+        }
+
+        for (var entry : ivs.loopDefinitions.entrySet()) {
+            if (entry.getValue().size() != 1) continue;
+            Integer step = basicStep(entry.getKey(), entry.getValue().getFirst());
+            if (step != null) ivs.basics.put(entry.getKey(), new Basic(entry.getKey(), step, entry.getValue().getFirst()));
+        }
+
+        // In instruction order, so the variables a chain starts from are found first
+        for (Instruction inst : loop.getBody()) ivs.addDerived(inst);
+        return ivs;
+    }
+
+    public Collection<Basic> getBasics() {
+        return basics.values();
+    }
+
+    public Collection<Derived> getDerived() {
+        return derived.values();
+    }
+
+    /**
+     * Whether an element has the same value everywhere in the loop: a literal or a variable the loop does not assign.
+     */
+    public boolean isInvariant(Element element) {
+        if (element.isLiteral()) return true;
+        return element instanceof Operand operand && !(operand instanceof ArrayOperand)
+                && !loopDefinitions.containsKey(operand.getName());
+    }
+
+    // The step of 'i := i + c', 'i := c + i' or 'i := i - c', or null for other updates
+    private static Integer basicStep(String name, Instruction update) {
+        if (!(update instanceof AssignInstruction assign) || !(assign.getRhs() instanceof BinaryOpInstruction binary)) {
+            return null;
+        }
+        Element left = binary.getLeftOperand();
+        Element right = binary.getRightOperand();
+        return switch (binary.getOperation().getOpType()) {
+            case ADD -> {
+                if (InstUtils.isVariable(left, name)) yield literalValue(right);
+                if (InstUtils.isVariable(right, name)) yield literalValue(left);
+                yield null;
+            }
+            case SUB -> {
+                Integer c = InstUtils.isVariable(left, name) ? literalValue(right) : null;
+                yield c == null ? null : -c;
+            }
+            default -> null;
+        };
+    }
+
+    private void addDerived(Instruction inst) {
+        if (!(inst instanceof AssignInstruction assign) || !(assign.getRhs() instanceof BinaryOpInstruction binary)) return;
+
+        String dest = InstUtils.definedVariable(assign).orElse(null);
+        if (dest == null || methodDefinitions.get(dest) != 1 || basics.containsKey(dest)
+                || !InstUtils.isLocal(dest, graph.getMethod())) return;
+
+        Element left = binary.getLeftOperand();
+        Element right = binary.getRightOperand();
+        Derived result = switch (binary.getOperation().getOpType()) {
+            case ADD -> {
+                Derived fromLeft = isInvariant(right) ? linearForm(left, inst) : null;
+                yield fromLeft != null ? fromLeft : isInvariant(left) ? linearForm(right, inst) : null;
+            }
+            case SUB -> isInvariant(right) ? linearForm(left, inst) : null;
+            case MUL -> {
+                Derived fromLeft = isInvariant(right) ? scaled(linearForm(left, inst), right) : null;
+                yield fromLeft != null ? fromLeft : isInvariant(left) ? scaled(linearForm(right, inst), left) : null;
+            }
+            default -> null;
+        };
+        if (result == null) return;
+
+        List<Instruction> chain = new ArrayList<>(result.chain());
+        chain.add(inst);
+        derived.put(dest, new Derived(dest, result.base(), result.factor(), chain));
+    }
+
+    // The linear form of an operand used by 'use', as a Derived with a placeholder name
+    private Derived linearForm(Element operand, Instruction use) {
+        if (!(operand instanceof Operand variable) || operand instanceof ArrayOperand || operand.isLiteral()) return null;
+
+        Basic basic = basics.get(variable.getName());
+        if (basic != null) return new Derived(variable.getName(), basic, InstUtils.intLiteral(1), List.of());
+
+        Derived from = derived.get(variable.getName());
+        if (from == null || !isStraightLine(from.definition(), use, from.base())) return null;
+        return from;
+    }
+
+    // The form of 'form * k'; only one of the factors may be a variable
+    private static Derived scaled(Derived form, Element k) {
+        if (form == null) return null;
+
+        Integer a = literalValue(form.factor());
+        Integer b = literalValue(k);
+        Element factor;
+        if (a != null && a == 1) factor = k;
+        else if (a != null && b != null) factor = InstUtils.intLiteral(a * b);
+        else return null;
+        return new Derived(form.name(), form.base(), factor, form.chain());
+    }
+
+    // Whether 'use' runs right after 'definition', with no label, jump or update of the basic variable in between
+    private boolean isStraightLine(Instruction definition, Instruction use, Basic base) {
+        List<Instruction> instructions = graph.getInstructions();
+        int from = graph.indexOf(definition);
+        int to = graph.indexOf(use);
+        if (from >= to) return false;
+
+        for (int i = from; i < to; i++) {
+            Instruction inst = instructions.get(i);
+            if (InstUtils.jumpLabel(inst) != null || inst.getInstType() == InstructionType.RETURN) return false;
+            if (inst == base.update()) return false;
+            if (!graph.labelsOf(instructions.get(i + 1)).isEmpty()) return false;
+        }
+        return true;
+    }
+
+    private static Integer literalValue(Element element) {
+        if (!(element instanceof LiteralElement literal)) return null;
+        try {
+            return Integer.parseInt(literal.getLiteral());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
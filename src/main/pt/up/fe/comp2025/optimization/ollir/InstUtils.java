@@ -0,0 +1,242 @@
+package pt.up.fe.comp2025.optimization.ollir;
+
+import org.specs.comp.ollir.*;
+import org.specs.comp.ollir.inst.*;
+import org.specs.comp.ollir.type.BuiltinKind;
+import org.specs.comp.ollir.type.BuiltinType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Definitions and uses of variables in OLLIR instructions, and builders for the int
+ * instructions that passes add.
+ * <p>
+ * Names are returned as they appear in the operands, so class names used as the caller of a
+ * static call are included; callers filter them with the method's var table.
+ */
+public class InstUtils {
+
+    private static final Pattern TEMPORARY = Pattern.compile("(tmp|andTmp|iv)\\d+");
+
+    private InstUtils() {
+    }
+
+    /**
+     * The variable an instruction assigns, if it assigns a whole variable (not an array element).
+     */
+    public static Optional<String> definedVariable(Instruction inst) {
+        if (inst instanceof AssignInstruction assign && assign.getDest() instanceof Operand dest
+                && !(dest instanceof ArrayOperand)) {
+            return Optional.of(dest.getName());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * The variables an instruction reads, in operand order (with repetitions).
+     */
+    public static List<String> usedVariables(Instruction inst) {
+        List<String> used = new ArrayList<>();
+        collectUses(inst, used);
+        return used;
+    }
+
+    private static void collectUses(Instruction inst, List<String> used) {
+        switch (inst) {
+            case AssignInstruction assign -> {
+                // Storing into an array element reads the array and the index
+                if (assign.getDest() instanceof ArrayOperand array) addElement(array, used);
+                collectUses(assign.getRhs(), used);
+            }
+            case BinaryOpInstruction binary -> {
+                addElement(binary.getLeftOperand(), used);
+                addElement(binary.getRightOperand(), used);
+            }
+            case UnaryOpInstruction unary -> addElement(unary.getOperand(), used);
+            case SingleOpInstruction single -> addElement(single.getSingleOperand(), used);
+            case CallInstruction call -> {
+                addElement(call.getCaller(), used);
+                call.getArguments().forEach(arg -> addElement(arg, used));
+            }
+            case GetFieldInstruction getField -> addElement(getField.getObject(), used);
+            case PutFieldInstruction putField -> {
+                addElement(putField.getObject(), used);
+                addElement(putField.getValue(), used);
+            }
+            case ReturnInstruction ret -> ret.getOperand().ifPresent(operand -> addElement(operand, used));
+            case CondBranchInstruction branch -> collectUses(branch.getCondition(), used);
+            default -> {
+            }
+        }
+    }
+
+    private static void addElement(Element element, List<String> used) {
+        if (!(element instanceof Operand operand) || element.isLiteral()) return;
+
+        used.add(operand.getName());
+        if (operand instanceof ArrayOperand array) {
+            array.getIndexOperands().forEach(index -> addElement(index, used));
+        }
+    }
+
+    /**
+     * Replaces the variables an instruction reads by the elements 'replacement' gives for them
+     * (null keeps the variable). Only variables in a position OLLIR lets change are offered: not
+     * array names, callers of calls or the objects of field accesses.
+     *
+     * @return the number of operands replaced
+     */
+    public static int replaceUses(Instruction inst, Function<Operand, Element> replacement) {
+        return switch (inst) {
+            case AssignInstruction assign -> {
+                int count = assign.getDest() instanceof ArrayOperand array ? replaceIndices(array, replacement) : 0;
+                yield count + replaceUses(assign.getRhs(), replacement);
+            }
+            case BinaryOpInstruction binary -> {
+                int count = 0;
+                Element left = replaced(binary.getLeftOperand(), replacement);
+                if (left != null) {
+                    binary.setLeftOperand(left);
+                    count++;
+                }
+                Element right = replaced(binary.getRightOperand(), replacement);
+                if (right != null) {
+                    binary.setRightOperand(right);
+                    count++;
+                }
+                yield count + replaceIndices(binary.getLeftOperand(), replacement) + replaceIndices(binary.getRightOperand(), replacement);
+            }
+            case UnaryOpInstruction unary -> {
+                Element operand = replaced(unary.getOperand(), replacement);
+                if (operand != null) unary.setOperand(operand);
+                yield (operand != null ? 1 : 0) + replaceIndices(unary.getOperand(), replacement);
+            }
+            case SingleOpInstruction single -> {
+                Element operand = replaced(single.getSingleOperand(), replacement);
+                if (operand != null) single.setSingleOperand(operand);
+                yield (operand != null ? 1 : 0) + replaceIndices(single.getSingleOperand(), replacement);
+            }
+            case CallInstruction call -> {
+                int count = 0;
+                List<Element> arguments = call.getArguments();
+                for (int i = 0; i < arguments.size(); i++) {
+                    Element argument = replaced(arguments.get(i), replacement);
+                    if (argument != null) {
+                        arguments.set(i, argument);
+                        count++;
+                    }
+                    count += replaceIndices(arguments.get(i), replacement);
+                }
+                yield count;
+            }
+            case PutFieldInstruction putField -> {
+                Element value = replaced(putField.getValue(), replacement);
+                if (value == null) yield 0;
+
+                List<Element> operands = new ArrayList<>(putField.getOperands());
+                operands.set(operands.size() - 1, value);
+                putField.setOperands(operands);
+                yield 1;
+            }
+            case ReturnInstruction ret -> {
+                Element operand = ret.getOperand().map(element -> replaced(element, replacement)).orElse(null);
+                if (operand != null) ret.setOperand(operand);
+                yield operand != null ? 1 : 0;
+            }
+            case CondBranchInstruction branch -> replaceUses(branch.getCondition(), replacement);
+            default -> 0;
+        };
+    }
+
+    private static int replaceIndices(Element element, Function<Operand, Element> replacement) {
+        if (!(element instanceof ArrayOperand array)) return 0;
+
+        int count = 0;
+        List<Element> indices = array.getIndexOperands();
+        for (int i = 0; i < indices.size(); i++) {
+            Element index = replaced(indices.get(i), replacement);
+            if (index != null) {
+                indices.set(i, index);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static Element replaced(Element element, Function<Operand, Element> replacement) {
+        if (!(element instanceof Operand operand) || element.isLiteral() || element instanceof ArrayOperand) return null;
+        return replacement.apply(operand);
+    }
+
+    /**
+     * Whether an element is a variable with the given name (array elements do not count).
+     */
+    public static boolean isVariable(Element element, String name) {
+        return element instanceof Operand operand && !(operand instanceof ArrayOperand)
+                && !element.isLiteral() && operand.getName().equals(name);
+    }
+
+    /**
+     * The label a goto or a conditional branch jumps to, or null for other instructions.
+     */
+    public static String jumpLabel(Instruction inst) {
+        if (inst instanceof GotoInstruction jump) return jump.getLabel();
+        if (inst instanceof CondBranchInstruction branch) return branch.getLabel();
+        return null;
+    }
+
+    /**
+     * Whether the variable is a local of the method that is neither 'this' nor a parameter.
+     */
+    public static boolean isLocal(String name, Method method) {
+        Descriptor descriptor = method.getVarTable().get(name);
+        return descriptor != null && descriptor.getScope() == VarScope.LOCAL && !name.equals("this");
+    }
+
+    /**
+     * Whether the variable is a local introduced by the compiler: a temporary of the OLLIR
+     * generator or a variable added by an OLLIR pass.
+     */
+    public static boolean isTemporary(String name, Method method) {
+        return isLocal(name, method) && TEMPORARY.matcher(name).matches();
+    }
+
+    public static Operand intVariable(String name) {
+        return new Operand(name, new BuiltinType(BuiltinKind.INT32));
+    }
+
+    public static LiteralElement intLiteral(int value) {
+        return new LiteralElement(String.valueOf(value), new BuiltinType(BuiltinKind.INT32));
+    }
+
+    /**
+     * {@code dest := left op right}, on ints.
+     */
+    public static AssignInstruction intAssign(String dest, Element left, OperationType op, Element right) {
+        BuiltinType type = new BuiltinType(BuiltinKind.INT32);
+        return new AssignInstruction(intVariable(dest), type,
+                new BinaryOpInstruction(left, new Operation(op, type), right));
+    }
+
+    /**
+     * {@code dest := value}, on ints.
+     */
+    public static AssignInstruction intCopy(String dest, Element value) {
+        return new AssignInstruction(intVariable(dest), new BuiltinType(BuiltinKind.INT32), new SingleOpInstruction(value));
+    }
+
+    /**
+     * A name for a new variable of the method, starting with 'prefix'.
+     */
+    public static String freshName(String prefix, Method method, Set<String> taken) {
+        int i = 0;
+        while (method.getVarTable().containsKey(prefix + i) || taken.contains(prefix + i)) i++;
+        taken.add(prefix + i);
+        return prefix + i;
+    }
+}
@@ -0,0 +1,69 @@
+package pt.up.fe.comp2025.optimization.ollir;
+
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.inst.Instruction;
+
+import java.util.*;
+
+/**
+ * Variables live before and after each instruction of an OLLIR method, by name.
+ * <p>
+ * The method's CFG must be up to date ({@link FlowGraph#rebuild(Method)}).
+ */
+public class Liveness {
+
+    private final Map<Instruction, Set<String>> liveIn;
+    private final Map<Instruction, Set<String>> liveOut;
+
+    private Liveness(Map<Instruction, Set<String>> liveIn, Map<Instruction, Set<String>> liveOut) {
+        this.liveIn = liveIn;
+        this.liveOut = liveOut;
+    }
+
+    public static Liveness analyze(Method method) {
+        List<Instruction> instructions = method.getInstructions();
+        Map<Instruction, Set<String>> liveIn = new IdentityHashMap<>();
+        Map<Instruction, Set<String>> liveOut = new IdentityHashMap<>();
+        for (Instruction inst : instructions) {
+            liveIn.put(inst, new HashSet<>());
+            liveOut.put(inst, new HashSet<>());
+        }
+
+        // Backwards over the instructions, so most values settle in one pass
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Instruction inst : instructions.reversed()) {
+                Set<String> out = liveOut.get(inst);
+                for (Instruction succ : inst.getSuccessorsAsInst()) out.addAll(liveIn.get(succ));
+
+                Set<String> in = new HashSet<>(out);
+                InstUtils.definedVariable(inst).ifPresent(in::remove);
+                in.addAll(InstUtils.usedVariables(inst));
+                if (!in.equals(liveIn.get(inst))) {
+                    liveIn.put(inst, in);
+                    changed = true;
+                }
+            }
+        }
+        return new Liveness(liveIn, liveOut);
+    }
+
+    /**
+     * Whether the variable may be read from the moment the instruction starts.
+     */
+    public boolean isLiveBefore(Instruction inst, String name) {
+        return liveIn.get(inst).contains(name);
+    }
+
+    /**
+     * Whether the variable may be read after the instruction runs.
+     */
+    public boolean isLiveAfter(Instruction inst, String name) {
+        return liveOut.get(inst).contains(name);
+    }
+
+    public Set<String> getLiveAfter(Instruction inst) {
+        return liveOut.get(inst);
+    }
+}
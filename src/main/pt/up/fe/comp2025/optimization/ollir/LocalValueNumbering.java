@@ -0,0 +1,179 @@
+package pt.up.fe.comp2025.optimization.ollir;
+
+import org.specs.comp.ollir.*;
+import org.specs.comp.ollir.inst.*;
+
+import java.util.*;
+
+/**
+ * Removes computations repeated within a basic block of an OLLIR method.
+ * <p>
+ * Each variable holds a value number, and each computation is keyed by its operation and the
+ * value numbers of its operands (in a fixed order for commutative operations), so {@code a[i] + a[i]}
+ * or a repeated {@code x * y} are recognised even through copies. A computation whose key was
+ * already seen, with the variable that holds it not assigned since, becomes a copy of that
+ * variable; copy propagation removes it later.
+ * <p>
+ * Besides arithmetic, comparisons and boolean operations, array lengths, array loads and field
+ * reads are numbered. Array loads are forgotten when an array element is stored or a method is
+ * called, and field reads when a field is written or a method is called. Blocks start at labels
+ * and after jumps and returns, and nothing is kept from one block to the next.
+ */
+public class LocalValueNumbering {
+
+    private record Value(int number, Operand holder) {
+    }
+
+    private final ClassUnit ollirClass;
+
+    // State of the block being numbered
+    private final Map<String, Integer> numbers = new HashMap<>();
+    private final Map<String, Value> values = new HashMap<>();
+    private int nextNumber;
+    private int arrayEpoch;
+    private int fieldEpoch;
+
+    public LocalValueNumbering(ClassUnit ollirClass) {
+        this.ollirClass = ollirClass;
+    }
+
+    /**
+     * Numbers the blocks of every method of the class.
+     *
+     * @return the number of computations replaced by copies
+     */
+    public int apply() {
+        int total = 0;
+        for (Method method : ollirClass.getMethods()) {
+            int replaced = apply(method);
+            if (replaced > 0) FlowGraph.rebuild(method);
+            total += replaced;
+        }
+        return total;
+    }
+
+    private int apply(Method method) {
+        List<Instruction> instructions = method.getInstructions();
+        Set<Instruction> labelled = Collections.newSetFromMap(new IdentityHashMap<>());
+        labelled.addAll(method.getLabels().values());
+
+        int replaced = 0;
+        startBlock();
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction inst = instructions.get(i);
+            if (labelled.contains(inst)) startBlock();
+
+            // A labelled instruction starts an empty block, so replaced instructions never carry labels
+            Instruction replacement = number(inst);
+            if (replacement != null) {
+                instructions.set(i, replacement);
+                replaced++;
+            }
+
+            if (InstUtils.jumpLabel(inst) != null || inst.getInstType() == InstructionType.RETURN) startBlock();
+        }
+        return replaced;
+    }
+
+    private void startBlock() {
+        numbers.clear();
+        values.clear();
+        arrayEpoch = 0;
+        fieldEpoch = 0;
+    }
+
+    // Updates the numbering with an instruction, returning the copy that replaces it if it is redundant
+    private Instruction number(Instruction inst) {
+        if (invalidatesMemory(inst)) {
+            arrayEpoch++;
+            fieldEpoch++;
+        }
+        if (inst instanceof PutFieldInstruction) fieldEpoch++;
+        if (!(inst instanceof AssignInstruction assign)) return null;
+
+        Element destElement = assign.getDest();
+        if (destElement instanceof ArrayOperand) {
+            arrayEpoch++;
+            return null;
+        }
+        Operand dest = (Operand) destElement;
+        Instruction rhs = assign.getRhs();
+
+        // Copies share the number of the copied variable
+        if (rhs instanceof SingleOpInstruction single && !(single.getSingleOperand() instanceof ArrayOperand)) {
+            numbers.put(dest.getName(), numberOf(single.getSingleOperand()));
+            return null;
+        }
+
+        String key = key(rhs);
+        Value value = key == null ? null : values.get(key);
+        if (value != null && value.number() == numbers.get(value.holder().getName())) {
+            numbers.put(dest.getName(), value.number());
+            Operand holder = new Operand(value.holder().getName(), value.holder().getType());
+            return new AssignInstruction(dest, assign.getTypeOfAssign(), new SingleOpInstruction(holder));
+        }
+
+        int number = nextNumber++;
+        numbers.put(dest.getName(), number);
+        if (key != null) values.put(key, new Value(number, dest));
+        return null;
+    }
+
+    // The key of a computation, or null if it is not numbered
+    private String key(Instruction rhs) {
+        return switch (rhs) {
+            case BinaryOpInstruction binary -> {
+                Element left = binary.getLeftOperand();
+                Element right = binary.getRightOperand();
+                if (left instanceof ArrayOperand || right instanceof ArrayOperand) yield null;
+
+                OperationType op = binary.getOperation().getOpType();
+                int l = numberOf(left);
+                int r = numberOf(right);
+                if (isCommutative(op) && l > r) {
+                    int swap = l;
+                    l = r;
+                    r = swap;
+                }
+                yield op + " " + l + " " + r;
+            }
+            case UnaryOpInstruction unary -> unary.getOperand() instanceof ArrayOperand ? null
+                    : unary.getOperation().getOpType() + " " + numberOf(unary.getOperand());
+            case ArrayLengthInstruction length -> length.getCaller() instanceof ArrayOperand ? null
+                    : "length " + numberOf(length.getCaller());
+            case SingleOpInstruction single -> {
+                ArrayOperand array = (ArrayOperand) single.getSingleOperand();
+                if (array.getIndexOperands().stream().anyMatch(index -> index instanceof ArrayOperand)) yield null;
+
+                Operand arrayVariable = new Operand(array.getName(), array.getType());
+                StringBuilder key = new StringBuilder("load " + arrayEpoch + " " + numberOf(arrayVariable));
+                array.getIndexOperands().forEach(index -> key.append(" ").append(numberOf(index)));
+                yield key.toString();
+            }
+            case GetFieldInstruction getField ->
+                    "getfield " + fieldEpoch + " " + numberOf(getField.getObject()) + " " + getField.getField().getName();
+            default -> null;
+        };
+    }
+
+    private int numberOf(Element element) {
+        if (element instanceof LiteralElement literal) {
+            return numbers.computeIfAbsent("literal " + literal.getLiteral() + " " + literal.getType(), k -> nextNumber++);
+        }
+        return numbers.computeIfAbsent(((Operand) element).getName(), k -> nextNumber++);
+    }
+
+    private static boolean isCommutative(OperationType op) {
+        return switch (op) {
+            case ADD, MUL, EQ, NEQ, AND, OR, XOR, ANDB, ORB -> true;
+            default -> false;
+        };
+    }
+
+    // Method calls can store into any array and write any field
+    private static boolean invalidatesMemory(Instruction inst) {
+        Instruction call = inst instanceof AssignInstruction assign ? assign.getRhs() : inst;
+        return call instanceof InvokeVirtualInstruction || call instanceof InvokeSpecialInstruction
+                || call instanceof InvokeStaticInstruction;
+    }
+}
@@ -0,0 +1,54 @@
+package pt.up.fe.comp2025.optimization.ollir;
+
+import org.specs.comp.ollir.inst.Instruction;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A natural loop of an OLLIR method: the header, which dominates every instruction of the loop,
+ * the body (header included, in instruction order) and the latches, whose back-edges jump to the header.
+ */
+public class Loop {
+
+    private final Instruction header;
+    private final List<Instruction> body;
+    private final List<Instruction> latches;
+    private final Set<Instruction> members;
+
+    public Loop(Instruction header, List<Instruction> body, List<Instruction> latches) {
+        this.header = header;
+        this.body = body;
+        this.latches = latches;
+        this.members = Collections.newSetFromMap(new IdentityHashMap<>());
+        this.members.addAll(body);
+    }
+
+    public Instruction getHeader() {
+        return header;
+    }
+
+    public List<Instruction> getBody() {
+        return body;
+    }
+
+    public List<Instruction> getLatches() {
+        return latches;
+    }
+
+    public boolean contains(Instruction inst) {
+        return members.contains(inst);
+    }
+
+    /**
+     * Instructions of the loop with a successor outside it (including the end of the method).
+     */
+    public List<Instruction> getExits() {
+        return body.stream()
+                .filter(inst -> inst.getSuccessors().stream()
+                        .anyMatch(succ -> !(succ instanceof Instruction succInst) || !contains(succInst)))
+                .toList();
+    }
+}
@@ -0,0 +1,202 @@
+package pt.up.fe.comp2025.optimization.ollir;
+
+import org.specs.comp.ollir.*;
+import org.specs.comp.ollir.inst.*;
+import org.specs.comp.ollir.type.BuiltinType;
+
+import java.util.*;
+
+/**
+ * Moves loop-invariant computations of OLLIR methods out of their natural loops.
+ * <p>
+ * An assignment is invariant if its variable is a local assigned nowhere else in the method and
+ * its value is an arithmetic, boolean or comparison operation, a copy, the length of an array
+ * variable or a field of {@code this}, whose operands are literals, variables the loop does not
+ * assign, or variables of invariant assignments that come before it. Divisions only qualify
+ * with a non-zero literal divisor, and field reads only if the loop writes neither the field
+ * nor calls code that could. Reading the length of a null array throws, so lengths are only
+ * hoisted if they run on every way out of the loop (as in the condition of a while loop), or if
+ * the same length is read in the straight-line code that leads into the loop (as in the entry
+ * test of a loop tested at the bottom).
+ * <p>
+ * Invariant assignments move, in order, to a preheader placed right before the header: jumps
+ * from outside the loop are redirected to it, and back-edges still go to the header. Inner loops
+ * are handled first, so a computation can move out of several loops in turn.
+ */
+public class LoopInvariantCodeMotion {
+
+    private final ClassUnit ollirClass;
+
+    public LoopInvariantCodeMotion(ClassUnit ollirClass) {
+        this.ollirClass = ollirClass;
+    }
+
+    /**
+     * Hoists the invariant computations of every method of the class.
+     *
+     * @return the number of instructions hoisted
+     */
+    public int apply() {
+        int total = 0;
+        for (Method method : ollirClass.getMethods()) {
+            if (method.isConstructMethod()) continue;
+
+            // Each hoist changes the method, so loops are found again until nothing moves
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                FlowGraph graph = FlowGraph.build(method);
+                for (Loop loop : graph.naturalLoops()) {
+                    int hoisted = hoist(loop, graph);
+                    if (hoisted > 0) {
+                        total += hoisted;
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+            FlowGraph.rebuild(method);
+        }
+        return total;
+    }
+
+    private int hoist(Loop loop, FlowGraph graph) {
+        List<Instruction> instructions = graph.getInstructions();
+        Instruction header = loop.getHeader();
+
+        List<String> entryLabels = graph.preheaderLabels(loop);
+        if (entryLabels == null) return 0;
+
+        List<Instruction> invariant = findInvariant(loop, graph);
+        if (invariant.isEmpty()) return 0;
+
+        // The new header is the first instruction of the loop that stays in it
+        int headerIndex = graph.indexOf(header);
+        Instruction newHeader = null;
+        for (int i = headerIndex; i < instructions.size(); i++) {
+            if (!invariant.contains(instructions.get(i))) {
+                newHeader = instructions.get(i);
+                break;
+            }
+        }
+        if (newHeader == null || invariant.contains(instructions.getLast())) return 0;
+
+        // Labels of removed instructions move on to the next one, ending up on the new header
+        invariant.forEach(graph::remove);
+        graph.addPreheader(newHeader, entryLabels, invariant);
+        return invariant.size();
+    }
+
+    private List<Instruction> findInvariant(Loop loop, FlowGraph graph) {
+        Method method = graph.getMethod();
+
+        // Variables assigned by the loop and by the whole method
+        Map<String, Integer> definitions = new HashMap<>();
+        for (Instruction inst : graph.getInstructions()) {
+            InstUtils.definedVariable(inst).ifPresent(name -> definitions.merge(name, 1, Integer::sum));
+        }
+        Set<String> definedInLoop = new HashSet<>();
+        Set<String> fieldsWritten = new HashSet<>();
+        boolean callsMayWriteFields = false;
+        for (Instruction inst : loop.getBody()) {
+            InstUtils.definedVariable(inst).ifPresent(definedInLoop::add);
+            if (inst instanceof PutFieldInstruction putField) fieldsWritten.add(putField.getField().getName());
+            CallInstruction call = asCall(inst);
+            if (call != null && mayWriteFields(call)) callsMayWriteFields = true;
+        }
+
+        List<Instruction> exits = loop.getExits();
+        // Invariant variables and the position of their assignment
+        Map<String, Integer> invariantVariables = new HashMap<>();
+        List<Instruction> invariant = new ArrayList<>();
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Instruction inst : loop.getBody()) {
+                if (invariant.contains(inst) || !(inst instanceof AssignInstruction assign)) continue;
+
+                String dest = InstUtils.definedVariable(assign).orElse(null);
+                if (dest == null || definitions.get(dest) != 1 || !InstUtils.isLocal(dest, method)) continue;
+
+                Instruction rhs = assign.getRhs();
+                boolean operandsInvariant = InstUtils.usedVariables(rhs).stream()
+                        .allMatch(name -> !definedInLoop.contains(name) || ollirClass.isImportedClass(name)
+                                || invariantVariables.getOrDefault(name, Integer.MAX_VALUE) < graph.indexOf(inst));
+                if (!operandsInvariant || !isMovable(rhs)) continue;
+
+                if (rhs instanceof ArrayLengthInstruction length
+                        && !exits.stream().allMatch(exit -> graph.dominates(assign, exit))
+                        && !isLengthReadBefore(loop, ((Operand) length.getCaller()).getName())) continue;
+                if (rhs instanceof GetFieldInstruction getField
+                        && (callsMayWriteFields || fieldsWritten.contains(getField.getField().getName()))) continue;
+
+                invariant.add(inst);
+                invariantVariables.put(dest, graph.indexOf(inst));
+                changed = true;
+            }
+        }
+
+        // Hoisted code runs in instruction order, which puts each definition before its uses
+        invariant.sort(Comparator.comparingInt(graph::indexOf));
+        return invariant;
+    }
+
+    // Whether the length of the array is read on the single way into the loop, with no assignment
+    // to the array between that read and the header
+    private static boolean isLengthReadBefore(Loop loop, String array) {
+        List<Instruction> entries = loop.getHeader().getPredecessors().stream()
+                .filter(pred -> pred instanceof Instruction predInst && !loop.contains(predInst))
+                .map(pred -> (Instruction) pred)
+                .toList();
+        if (entries.size() != 1) return false;
+
+        Instruction inst = entries.getFirst();
+        while (true) {
+            if (inst instanceof AssignInstruction assign && assign.getRhs() instanceof ArrayLengthInstruction length
+                    && length.getCaller() instanceof Operand caller && caller.getName().equals(array)) return true;
+            if (InstUtils.definedVariable(inst).filter(array::equals).isPresent()) return false;
+            if (inst.getPredecessors().size() != 1 || !(inst.getPredecessors().getFirst() instanceof Instruction pred)) {
+                return false;
+            }
+            inst = pred;
+        }
+    }
+
+    private static boolean isMovable(Instruction rhs) {
+        return switch (rhs) {
+            case BinaryOpInstruction binary -> switch (binary.getOperation().getOpType()) {
+                case DIV, REM -> binary.getRightOperand() instanceof LiteralElement literal
+                        && !literal.getLiteral().equals("0");
+                default -> true;
+            };
+            case UnaryOpInstruction unary -> true;
+            case SingleOpInstruction single -> !(single.getSingleOperand() instanceof ArrayOperand);
+            case ArrayLengthInstruction length -> length.getCaller() instanceof Operand
+                    && !(length.getCaller() instanceof ArrayOperand);
+            case GetFieldInstruction getField -> getField.getObject().getName().equals("this");
+            default -> false;
+        };
+    }
+
+    // Calls into this class (or its superclass) could write its fields
+    private boolean mayWriteFields(CallInstruction call) {
+        return switch (call) {
+            case InvokeVirtualInstruction virtual -> true;
+            case InvokeSpecialInstruction special ->
+                    ollirClass.getSuperClass() != null && !ollirClass.getSuperClass().isEmpty();
+            case InvokeStaticInstruction invokeStatic -> {
+                String className = ((Operand) invokeStatic.getCaller()).getName();
+                yield !ollirClass.isImportedClass(className) || invokeStatic.getArguments().stream()
+                        .anyMatch(arg -> !(arg.getType() instanceof BuiltinType));
+            }
+            default -> false;
+        };
+    }
+
+    private static CallInstruction asCall(Instruction inst) {
+        if (inst instanceof CallInstruction call) return call;
+        if (inst instanceof AssignInstruction assign && assign.getRhs() instanceof CallInstruction call) return call;
+        return null;
+    }
+}
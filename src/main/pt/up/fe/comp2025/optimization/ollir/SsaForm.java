@@ -0,0 +1,476 @@
+package pt.up.fe.comp2025.optimization.ollir;
+
+import org.specs.comp.ollir.*;
+import org.specs.comp.ollir.inst.*;
+import org.specs.comp.ollir.type.BuiltinKind;
+import org.specs.comp.ollir.type.BuiltinType;
+import org.specs.comp.ollir.type.Type;
+
+import java.util.*;
+
+/**
+ * Static single assignment form of an OLLIR method.
+ * <p>
+ * {@link #build(Method)} renames the int and boolean variables of the method so that each name
+ * is assigned by exactly one instruction: the value a variable has at the method entry keeps its
+ * name, and each assignment creates a version {@code x#n}. Where versions meet, a {@link Phi}
+ * chooses between them; OLLIR has no such instruction, so phis are kept here, attached to the
+ * instruction they run before. They are placed on the iterated dominance frontiers of the
+ * assignments, only where the variable is live (pruned SSA). Arrays and objects keep their
+ * names, since OLLIR cannot rename array names, callers of calls or objects of field accesses.
+ * <p>
+ * While a method is in SSA form, a pass can treat each name as a single value: every read of
+ * {@code x#n} sees the assignment of {@code x#n}, which dominates it. Passes may change the
+ * operands of instructions and the arguments of phis, and remove instructions that are not
+ * jumped to, but must not add assignments to the renamed variables.
+ * <p>
+ * {@link #destroy()} turns the phis into copies on the edges that reach them (a parallel copy
+ * per edge, ordered so that no copy overwrites a value another one reads, with a temporary for
+ * cycles; a conditional jump to a phi gets a block of its own at the end of the method). The
+ * versions of each variable are then coalesced back into one where their values are never live
+ * at the same time, which is always the case if no pass moved code, and the copies left between
+ * coalesced names disappear.
+ */
+public class SsaForm {
+
+    private static final String SEPARATOR = "#";
+
+    /**
+     * A choice between the versions of a variable that reach an instruction from its predecessors.
+     */
+    public static class Phi {
+
+        private final String variable;
+        private final Type type;
+        private String name;
+        private Instruction target;
+        private final Map<Instruction, Element> arguments;
+
+        private Phi(String variable, Type type, Instruction target) {
+            this.variable = variable;
+            this.type = type;
+            this.name = variable;
+            this.target = target;
+            this.arguments = new LinkedHashMap<>();
+        }
+
+        /**
+         * The variable before renaming.
+         */
+        public String getVariable() {
+            return variable;
+        }
+
+        /**
+         * The name of the version the phi defines.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * The instruction the phi runs before.
+         */
+        public Instruction getTarget() {
+            return target;
+        }
+
+        /**
+         * The value for each predecessor of the target; the null key is the method entry.
+         */
+        public Map<Instruction, Element> getArguments() {
+            return arguments;
+        }
+
+        @Override
+        public String toString() {
+            return name + " := phi" + arguments.values();
+        }
+    }
+
+    private final Method method;
+    private final Map<String, Type> variables;
+    private final Map<Instruction, List<Phi>> phis;
+
+    private SsaForm(Method method) {
+        this.method = method;
+        this.variables = new LinkedHashMap<>();
+        this.phis = new IdentityHashMap<>();
+    }
+
+    /**
+     * Puts a method in SSA form.
+     */
+    public static SsaForm build(Method method) {
+        SsaForm ssa = new SsaForm(method);
+        for (var entry : method.getVarTable().entrySet()) {
+            Descriptor descriptor = entry.getValue();
+            boolean scalar = BuiltinType.is(descriptor.getVarType(), BuiltinKind.INT32)
+                    || BuiltinType.is(descriptor.getVarType(), BuiltinKind.BOOLEAN);
+            boolean variable = descriptor.getScope() == VarScope.LOCAL || descriptor.getScope() == VarScope.PARAMETER;
+            if (scalar && variable && !entry.getKey().equals("this")) ssa.variables.put(entry.getKey(), descriptor.getVarType());
+        }
+
+        FlowGraph.rebuild(method);
+        DominatorTree tree = DominatorTree.build(method);
+        ssa.placePhis(tree, Liveness.analyze(method));
+        ssa.rename(tree);
+
+        FlowGraph.rebuildVarTable(method);
+        FlowGraph.rebuild(method);
+        return ssa;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * The phis that run before an instruction.
+     */
+    public List<Phi> getPhis(Instruction inst) {
+        return phis.getOrDefault(inst, List.of());
+    }
+
+    public List<Phi> getAllPhis() {
+        return phis.values().stream().flatMap(List::stream).toList();
+    }
+
+    /**
+     * The variable a version belongs to.
+     */
+    public static String variableOf(String name) {
+        int separator = name.indexOf(SEPARATOR);
+        return separator < 0 ? name : name.substring(0, separator);
+    }
+
+    private void placePhis(DominatorTree tree, Liveness liveness) {
+        Map<String, List<Instruction>> assignments = new HashMap<>();
+        for (Instruction inst : tree.getInstructions()) {
+            InstUtils.definedVariable(inst)
+                    .filter(variables::containsKey)
+                    .ifPresent(name -> assignments.computeIfAbsent(name, k -> new ArrayList<>()).add(inst));
+        }
+
+        for (var entry : assignments.entrySet()) {
+            String variable = entry.getKey();
+            Set<Instruction> placed = Collections.newSetFromMap(new IdentityHashMap<>());
+            Set<Instruction> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+            Deque<Instruction> worklist = new ArrayDeque<>(entry.getValue());
+            visited.addAll(entry.getValue());
+
+            // A phi is an assignment too, so its own frontier needs phis
+            while (!worklist.isEmpty()) {
+                for (Instruction target : tree.getFrontier(worklist.pop())) {
+                    if (placed.contains(target) || !liveness.isLiveBefore(target, variable)) continue;
+                    placed.add(target);
+                    phis.computeIfAbsent(target, k -> new ArrayList<>()).add(new Phi(variable, variables.get(variable), target));
+                    if (visited.add(target)) worklist.push(target);
+                }
+            }
+        }
+    }
+
+    private void rename(DominatorTree tree) {
+        Map<String, Deque<String>> current = new HashMap<>();
+        Map<String, Integer> versions = new HashMap<>();
+        Map<Instruction, String> renamedAssignments = new IdentityHashMap<>();
+
+        // The entry passes the values the variables have when the method starts
+        if (!tree.getInstructions().isEmpty()) {
+            Instruction first = tree.getInstructions().getFirst();
+            for (Phi phi : getPhis(first)) phi.arguments.put(null, new Operand(phi.variable, phi.type));
+        }
+
+        // Depth-first over the dominator tree; a null frame leaves the instruction on top of 'entered'
+        List<Instruction> stack = new ArrayList<>(tree.getChildren(null).reversed());
+        Deque<List<String>> entered = new ArrayDeque<>();
+        while (!stack.isEmpty()) {
+            Instruction inst = stack.removeLast();
+            if (inst == null) {
+                entered.pop().forEach(variable -> current.get(variable).pop());
+                continue;
+            }
+
+            List<String> defined = new ArrayList<>();
+            for (Phi phi : getPhis(inst)) {
+                phi.name = newVersion(phi.variable, versions, current);
+                defined.add(phi.variable);
+            }
+
+            InstUtils.replaceUses(inst, operand -> variables.containsKey(operand.getName())
+                    ? new Operand(currentName(operand.getName(), current), operand.getType()) : null);
+
+            String assigned = InstUtils.definedVariable(inst).filter(variables::containsKey).orElse(null);
+            if (assigned != null) {
+                renamedAssignments.put(inst, newVersion(assigned, versions, current));
+                defined.add(assigned);
+            }
+
+            for (Instruction succ : new LinkedHashSet<>(inst.getSuccessorsAsInst())) {
+                for (Phi phi : getPhis(succ)) {
+                    phi.arguments.put(inst, new Operand(currentName(phi.variable, current), phi.type));
+                }
+            }
+
+            entered.push(defined);
+            stack.add(null);
+            stack.addAll(tree.getChildren(inst).reversed());
+        }
+
+        Map<Instruction, Instruction> replacements = new IdentityHashMap<>();
+        renamedAssignments.forEach((inst, name) -> replacements.put(inst, renamedAssignment((AssignInstruction) inst, name)));
+        replaceAll(replacements);
+    }
+
+    private static String newVersion(String variable, Map<String, Integer> versions, Map<String, Deque<String>> current) {
+        String name = variable + SEPARATOR + versions.merge(variable, 1, Integer::sum);
+        current.computeIfAbsent(variable, k -> new ArrayDeque<>()).push(name);
+        return name;
+    }
+
+    // Before any assignment, a variable has its value from the method entry
+    private static String currentName(String variable, Map<String, Deque<String>> current) {
+        Deque<String> names = current.get(variable);
+        return names == null || names.isEmpty() ? variable : names.peek();
+    }
+
+    /**
+     * Takes the method out of SSA form.
+     */
+    public void destroy() {
+        FlowGraph.rebuild(method);
+        insertPhiCopies();
+        FlowGraph.rebuildVarTable(method);
+        FlowGraph.rebuild(method);
+
+        coalesce();
+        FlowGraph.rebuildVarTable(method);
+        FlowGraph.rebuild(method);
+        phis.clear();
+    }
+
+    private void insertPhiCopies() {
+        List<Instruction> instructions = method.getInstructions();
+        Set<String> temporaries = new HashSet<>();
+        // A jump that is itself a phi target gets its copies in front, which then start its block
+        Map<Instruction, Instruction> blockStarts = new IdentityHashMap<>();
+
+        for (var entry : phis.entrySet()) {
+            Instruction target = blockStarts.getOrDefault(entry.getKey(), entry.getKey());
+            if (!instructions.contains(target)) continue;
+
+            // The parallel copy of each edge, as name -> value
+            Map<Instruction, Map<String, Element>> copies = new LinkedHashMap<>();
+            for (Phi phi : entry.getValue()) {
+                phi.arguments.forEach((pred, value) -> copies.computeIfAbsent(pred, k -> new LinkedHashMap<>()).put(phi.name, value));
+            }
+
+            for (var edge : copies.entrySet()) {
+                Instruction pred = edge.getKey();
+                if (pred == null) {
+                    // Labels stay on the target, so jumps back to it skip the entry copies
+                    instructions.addAll(0, sequentialize(edge.getValue(), temporaries));
+                    continue;
+                }
+                int index = instructions.indexOf(pred);
+                if (index < 0) continue;
+
+                String label = InstUtils.jumpLabel(pred);
+                boolean jumps = label != null && method.getLabels().get(label) == target;
+                boolean fallsThrough = pred.getInstType() != InstructionType.GOTO && pred.getInstType() != InstructionType.RETURN
+                        && index + 1 < instructions.size() && instructions.get(index + 1) == target;
+
+                if (jumps && pred instanceof GotoInstruction) {
+                    // Whatever reaches the jump runs the copies, so its labels move to them
+                    List<Instruction> block = sequentialize(edge.getValue(), temporaries);
+                    if (block.isEmpty()) continue;
+                    instructions.addAll(index, block);
+                    method.getLabels().replaceAll((labelName, labelled) -> labelled == pred ? block.getFirst() : labelled);
+                    blockStarts.replaceAll((jump, start) -> start == pred ? block.getFirst() : start);
+                    blockStarts.putIfAbsent(pred, block.getFirst());
+                } else if (jumps) {
+                    // A conditional jump also goes elsewhere, so its copies get a block of their own
+                    List<Instruction> block = sequentialize(edge.getValue(), temporaries);
+                    if (block.isEmpty()) continue;
+                    block.add(new GotoInstruction(label));
+                    String blockLabel = freshLabel(label);
+                    instructions.addAll(block);
+                    method.getLabels().put(blockLabel, block.getFirst());
+                    ((CondBranchInstruction) pred).setLabel(blockLabel);
+                }
+                if (fallsThrough) {
+                    instructions.addAll(instructions.indexOf(pred) + 1, sequentialize(edge.getValue(), temporaries));
+                }
+            }
+        }
+    }
+
+    // Orders the copies of an edge so that no copy overwrites a variable a later one reads
+    private List<Instruction> sequentialize(Map<String, Element> parallel, Set<String> temporaries) {
+        Map<String, Element> pending = new LinkedHashMap<>(parallel);
+        pending.entrySet().removeIf(copy -> InstUtils.isVariable(copy.getValue(), copy.getKey()));
+
+        List<Instruction> sequence = new ArrayList<>();
+        while (!pending.isEmpty()) {
+            String ready = pending.keySet().stream()
+                    .filter(name -> pending.values().stream().noneMatch(value -> InstUtils.isVariable(value, name)))
+                    .findFirst()
+                    .orElse(null);
+            if (ready != null) {
+                sequence.add(copy(ready, pending.remove(ready)));
+                continue;
+            }
+
+            // Every destination is still read by another copy: a cycle, broken by saving one of them
+            String saved = pending.keySet().iterator().next();
+            Type type = variables.get(variableOf(saved));
+            String temporary = InstUtils.freshName("tmp", method, temporaries);
+            sequence.add(copy(temporary, new Operand(saved, type)));
+            pending.replaceAll((name, value) -> InstUtils.isVariable(value, saved) ? new Operand(temporary, type) : value);
+        }
+        return sequence;
+    }
+
+    private AssignInstruction copy(String dest, Element value) {
+        Type type = variables.get(variableOf(dest));
+        if (type == null) type = value.getType();
+        return new AssignInstruction(new Operand(dest, type), type, new SingleOpInstruction(value));
+    }
+
+    private String freshLabel(String base) {
+        int i = 0;
+        while (method.getLabels().containsKey(base + "_phi" + i)) i++;
+        return base + "_phi" + i;
+    }
+
+    private void coalesce() {
+        Liveness liveness = Liveness.analyze(method);
+
+        // Versions of the same variable whose values are alive together cannot share a name
+        Map<String, Set<String>> interference = new HashMap<>();
+        Map<String, Set<String>> versions = new LinkedHashMap<>();
+        List<AssignInstruction> copies = new ArrayList<>();
+        for (Instruction inst : method.getInstructions()) {
+            InstUtils.usedVariables(inst).forEach(name -> addVersion(name, versions));
+            String dest = InstUtils.definedVariable(inst).orElse(null);
+            if (dest == null || !variables.containsKey(variableOf(dest))) continue;
+            addVersion(dest, versions);
+
+            Element copied = ((AssignInstruction) inst).getRhs() instanceof SingleOpInstruction single
+                    ? single.getSingleOperand() : null;
+            if (copied instanceof Operand operand && !copied.isLiteral() && variableOf(operand.getName()).equals(variableOf(dest))) {
+                copies.add((AssignInstruction) inst);
+            }
+            for (String live : liveness.getLiveAfter(inst)) {
+                if (live.equals(dest) || InstUtils.isVariable(copied, live) || !variableOf(live).equals(variableOf(dest))) continue;
+                interference.computeIfAbsent(dest, k -> new HashSet<>()).add(live);
+                interference.computeIfAbsent(live, k -> new HashSet<>()).add(dest);
+            }
+        }
+
+        // Names joined by copies first, then any other versions that fit
+        Map<String, Set<String>> classes = new HashMap<>();
+        versions.values().forEach(names -> names.forEach(name -> classes.put(name, new LinkedHashSet<>(List.of(name)))));
+        for (AssignInstruction copy : copies) {
+            String dest = InstUtils.definedVariable(copy).orElseThrow();
+            String source = ((Operand) ((SingleOpInstruction) copy.getRhs()).getSingleOperand()).getName();
+            merge(classes.get(dest), classes.get(source), classes, interference);
+        }
+        for (Set<String> names : versions.values()) {
+            for (String name : names) {
+                for (String other : names) merge(classes.get(name), classes.get(other), classes, interference);
+            }
+        }
+
+        // The class with the entry value (or the first one) takes the variable's name back
+        Map<String, String> renames = new HashMap<>();
+        for (var entry : versions.entrySet()) {
+            String variable = entry.getKey();
+            List<Set<String>> distinct = new ArrayList<>();
+            for (String name : entry.getValue()) {
+                Set<String> members = classes.get(name);
+                if (distinct.stream().noneMatch(known -> known == members)) distinct.add(members);
+            }
+
+            Set<String> named = classes.getOrDefault(variable, distinct.getFirst());
+            for (Set<String> members : distinct) {
+                String name = members == named ? variable : members.iterator().next();
+                members.forEach(member -> renames.put(member, name));
+            }
+        }
+        applyRenames(renames);
+    }
+
+    private void addVersion(String name, Map<String, Set<String>> versions) {
+        if (variables.containsKey(variableOf(name))) {
+            versions.computeIfAbsent(variableOf(name), k -> new LinkedHashSet<>()).add(name);
+        }
+    }
+
+    private static void merge(Set<String> a, Set<String> b, Map<String, Set<String>> classes, Map<String, Set<String>> interference) {
+        if (a == b) return;
+        for (String name : a) {
+            Set<String> conflicts = interference.getOrDefault(name, Set.of());
+            if (b.stream().anyMatch(conflicts::contains)) return;
+        }
+        a.addAll(b);
+        b.forEach(name -> classes.put(name, a));
+    }
+
+    private void applyRenames(Map<String, String> renames) {
+        Map<Instruction, Instruction> replacements = new IdentityHashMap<>();
+        for (Instruction inst : method.getInstructions()) {
+            InstUtils.replaceUses(inst, operand -> {
+                String name = renames.get(operand.getName());
+                return name == null || name.equals(operand.getName()) ? null : new Operand(name, operand.getType());
+            });
+            String dest = InstUtils.definedVariable(inst).orElse(null);
+            if (dest != null && renames.containsKey(dest) && !renames.get(dest).equals(dest)) {
+                replacements.put(inst, renamedAssignment((AssignInstruction) inst, renames.get(dest)));
+            }
+        }
+        replaceAll(replacements);
+
+        // Copies between names that were coalesced are now copies of a variable to itself
+        List<Instruction> instructions = method.getInstructions();
+        for (int i = instructions.size() - 2; i >= 0; i--) {
+            Instruction inst = instructions.get(i);
+            if (!(inst instanceof AssignInstruction assign) || !(assign.getRhs() instanceof SingleOpInstruction single)) continue;
+            String dest = InstUtils.definedVariable(inst).orElse(null);
+            if (dest == null || !InstUtils.isVariable(single.getSingleOperand(), dest)) continue;
+
+            instructions.remove(i);
+            Instruction next = instructions.get(i);
+            method.getLabels().replaceAll((label, labelled) -> labelled == inst ? next : labelled);
+        }
+    }
+
+    private static AssignInstruction renamedAssignment(AssignInstruction assign, String name) {
+        return new AssignInstruction(new Operand(name, assign.getDest().getType()), assign.getTypeOfAssign(), assign.getRhs());
+    }
+
+    // Puts each replacement in the place of its instruction, with its labels and its phis
+    private void replaceAll(Map<Instruction, Instruction> replacements) {
+        if (replacements.isEmpty()) return;
+
+        method.getInstructions().replaceAll(inst -> replacements.getOrDefault(inst, inst));
+        method.getLabels().replaceAll((label, inst) -> replacements.getOrDefault(inst, inst));
+
+        Map<Instruction, List<Phi>> moved = new IdentityHashMap<>();
+        phis.forEach((target, list) -> {
+            Instruction newTarget = replacements.getOrDefault(target, target);
+            list.forEach(phi -> phi.target = newTarget);
+            moved.put(newTarget, list);
+        });
+        phis.clear();
+        phis.putAll(moved);
+
+        for (Phi phi : getAllPhis()) {
+            Map<Instruction, Element> arguments = new LinkedHashMap<>();
+            phi.arguments.forEach((pred, value) -> arguments.put(pred == null ? null : replacements.getOrDefault(pred, pred), value));
+            phi.arguments.clear();
+            phi.arguments.putAll(arguments);
+        }
+    }
+}
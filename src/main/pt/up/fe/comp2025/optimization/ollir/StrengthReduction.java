@@ -0,0 +1,131 @@
+package pt.up.fe.comp2025.optimization.ollir;
+
+import org.specs.comp.ollir.*;
+import org.specs.comp.ollir.inst.*;
+import pt.up.fe.comp2025.optimization.ollir.InductionVariables.Basic;
+import pt.up.fe.comp2025.optimization.ollir.InductionVariables.Derived;
+
+import java.util.*;
+
+/**
+ * Replaces the multiplications of {@link InductionVariables derived induction variables} by additions.
+ * <p>
+ * For a derived variable {@code t = f(i)} whose last step is a multiplication, a new variable
+ * {@code r} starts in the loop preheader as {@code f(i)} (the chain is copied there) and grows
+ * by factor * c right after each update {@code i := i + c}, so that it always equals
+ * {@code f(i)}; the multiplication becomes the copy {@code t := r}. Variable factors get their
+ * step computed once in the preheader.
+ * <p>
+ * A basic variable left with no use but its own update is then removed, since the loop only
+ * needs the induction variables its exit test and body read.
+ */
+public class StrengthReduction {
+
+    private final ClassUnit ollirClass;
+
+    public StrengthReduction(ClassUnit ollirClass) {
+        this.ollirClass = ollirClass;
+    }
+
+    /**
+     * Reduces the induction variables of every method of the class.
+     *
+     * @return the number of multiplications removed from loops
+     */
+    public int apply() {
+        int total = 0;
+        for (Method method : ollirClass.getMethods()) {
+            if (method.isConstructMethod()) continue;
+
+            int reduced = 0;
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                FlowGraph graph = FlowGraph.build(method);
+                for (Loop loop : graph.naturalLoops()) {
+                    int count = reduce(loop, graph);
+                    if (count > 0) {
+                        reduced += count;
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+
+            if (reduced > 0) FlowGraph.rebuildVarTable(method);
+            FlowGraph.rebuild(method);
+            total += reduced;
+        }
+        return total;
+    }
+
+    private int reduce(Loop loop, FlowGraph graph) {
+        Method method = graph.getMethod();
+        List<String> entryLabels = graph.preheaderLabels(loop);
+        if (entryLabels == null) return 0;
+
+        InductionVariables ivs = InductionVariables.analyze(loop, graph);
+        List<Derived> candidates = ivs.getDerived().stream()
+                .filter(iv -> iv.definition().getRhs() instanceof BinaryOpInstruction binary
+                        && binary.getOperation().getOpType() == OperationType.MUL)
+                .toList();
+        if (candidates.isEmpty()) return 0;
+
+        Set<String> taken = new HashSet<>();
+        List<Instruction> preheader = new ArrayList<>();
+        Instruction header = loop.getHeader();
+        for (Derived iv : candidates) {
+            String reduced = InstUtils.freshName("iv", method, taken);
+
+            // The chain, on fresh variables, computes the initial value
+            Map<String, String> renames = new HashMap<>();
+            for (Instruction inst : iv.chain()) {
+                AssignInstruction assign = (AssignInstruction) inst;
+                BinaryOpInstruction binary = (BinaryOpInstruction) assign.getRhs();
+                String dest = inst == iv.definition() ? reduced : InstUtils.freshName("iv", method, taken);
+                renames.put(InstUtils.definedVariable(assign).orElseThrow(), dest);
+                preheader.add(InstUtils.intAssign(dest, renamed(binary.getLeftOperand(), renames),
+                        binary.getOperation().getOpType(), renamed(binary.getRightOperand(), renames)));
+            }
+
+            Element step = step(iv, method, taken, preheader);
+            graph.insertAfter(iv.base().update(),
+                    InstUtils.intAssign(reduced, InstUtils.intVariable(reduced), OperationType.ADD, step));
+            Instruction copy = InstUtils.intCopy(iv.name(), InstUtils.intVariable(reduced));
+            graph.replace(iv.definition(), copy);
+            // In a loop tested at the bottom, the header can be the multiplication itself
+            if (iv.definition() == header) header = copy;
+        }
+        graph.addPreheader(header, entryLabels, preheader);
+
+        for (Basic basic : ivs.getBasics()) {
+            boolean used = graph.getInstructions().stream()
+                    .filter(inst -> inst != basic.update())
+                    .anyMatch(inst -> InstUtils.usedVariables(inst).contains(basic.name()));
+            if (!used) graph.remove(basic.update());
+        }
+        return candidates.size();
+    }
+
+    // How much the reduced variable changes per update of the basic one
+    private static Element step(Derived iv, Method method, Set<String> taken, List<Instruction> preheader) {
+        int c = iv.base().step();
+        if (iv.factor() instanceof LiteralElement literal) {
+            return InstUtils.intLiteral(Integer.parseInt(literal.getLiteral()) * c);
+        }
+
+        Operand factor = InstUtils.intVariable(((Operand) iv.factor()).getName());
+        if (c == 1) return factor;
+
+        String step = InstUtils.freshName("iv", method, taken);
+        preheader.add(InstUtils.intAssign(step, factor, OperationType.MUL, InstUtils.intLiteral(c)));
+        return InstUtils.intVariable(step);
+    }
+
+    private static Element renamed(Element element, Map<String, String> renames) {
+        if (element instanceof Operand operand && !element.isLiteral() && renames.containsKey(operand.getName())) {
+            return InstUtils.intVariable(renames.get(operand.getName()));
+        }
+        return element;
+    }
+}
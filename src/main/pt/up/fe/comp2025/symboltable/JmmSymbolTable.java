@@ -83,6 +83,24 @@ public class JmmSymbolTable extends AJmmSymbolTable {
         return locals.get(methodSignature);
     }
 
+    /**
+     * Registers a method created by the optimizer (e.g. a specialized clone).
+     */
+    public void addMethod(String methodName, boolean isStatic, Type returnType,
+                          List<Symbol> methodParams, List<Symbol> methodLocals) {
+        methods.put(methodName, isStatic);
+        returnTypes.put(methodName, returnType);
+        params.put(methodName, new ArrayList<>(methodParams));
+        locals.put(methodName, new ArrayList<>(methodLocals));
+    }
+
+    /**
+     * Registers a field created by the optimizer.
+     */
+    public void addField(Symbol field) {
+        fields.add(field);
+    }
+
     @Override
     public String toString() {
         return print();
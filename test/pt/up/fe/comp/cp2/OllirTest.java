@@ -280,6 +280,27 @@ public class OllirTest {
     }
 
 
+    @Test
+    public void controlFlowWhileShortCircuit() {
+
+        var result = getOllirResult("control_flow/ShortCircuitWhile.jmm");
+
+        // '&&' and '!' in the condition become one branch per comparison, without boolean temporaries
+        var method = CpUtils.getMethod(result, "find");
+        var branches = CpUtils.assertInstExists(CondBranchInstruction.class, method, result);
+        CpUtils.assertEquals("Number of branches", 2, branches.size(), result);
+        CpUtils.assertTrue("Expected no 'andTmp' in the loop condition",
+                method.getVarTable().keySet().stream().noneMatch(name -> name.startsWith("andTmp")), result);
+        CpUtils.assertTrue("Expected no negation to be computed in the loop condition",
+                CpUtils.getInstructions(AssignInstruction.class, method).stream()
+                        .noneMatch(assign -> assign.getRhs() instanceof UnaryOpInstruction), result);
+
+        // A boolean that is stored is still computed
+        var main = CpUtils.getMethod(result, "main");
+        CpUtils.assertTrue("Expected an 'andTmp' for the stored boolean",
+                main.getVarTable().keySet().stream().anyMatch(name -> name.startsWith("andTmp")), result);
+    }
+
     /*checks if an array is correctly initialized*/
     @Test
     public void arraysInitArray() {
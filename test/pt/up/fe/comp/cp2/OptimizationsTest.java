@@ -14,14 +14,40 @@
 package pt.up.fe.comp.cp2;
 
 import org.junit.Test;
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.inst.ArrayLengthInstruction;
+import org.specs.comp.ollir.inst.AssignInstruction;
+import org.specs.comp.ollir.inst.BinaryOpInstruction;
+import org.specs.comp.ollir.inst.CallInstruction;
+import org.specs.comp.ollir.inst.CondBranchInstruction;
+import org.specs.comp.ollir.inst.GetFieldInstruction;
+import org.specs.comp.ollir.inst.GotoInstruction;
+import org.specs.comp.ollir.inst.PutFieldInstruction;
+import org.specs.comp.ollir.inst.ReturnInstruction;
+import org.specs.comp.ollir.inst.SingleOpInstruction;
 import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Stage;
 import pt.up.fe.comp2025.ConfigOptions;
+import pt.up.fe.comp2025.optimization.ollir.InstUtils;
+import pt.up.fe.comp2025.optimization.ollir.SsaForm;
 import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsStrings;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 public class OptimizationsTest {
     private static final String BASE_PATH = "pt/up/fe/comp/cp2/optimizations/";
@@ -31,7 +57,11 @@ public class OptimizationsTest {
     }
 
     static OllirResult getOllirResultOpt(String filename) {
-        Map<String, String> config = new HashMap<>();
+        return getOllirResultOpt(filename, Collections.emptyMap());
+    }
+
+    static OllirResult getOllirResultOpt(String filename, Map<String, String> options) {
+        Map<String, String> config = new HashMap<>(options);
         config.put(ConfigOptions.getOptimize(), "true");
 
         return CpUtils.getOllirResult(SpecsIo.getResource(BASE_PATH + filename), config, true);
@@ -132,6 +162,524 @@ public class OptimizationsTest {
         CpUtils.assertLiteralCount("3", method, optimized, 3);
     }
 
+    @Test
+    public void constPropThroughConstBranch() {
+
+        String filename = "const_prop_fold/PropThroughConstBranch.jmm";
+
+        OllirResult original = getOllirResult(filename);
+        OllirResult optimized = getOllirResultOpt(filename);
+
+        CpUtils.assertNotEquals("Expected code to change with -o flag\n\nOriginal code:\n" + original.getOllirCode(),
+                original.getOllirCode(), optimized.getOllirCode(),
+                optimized);
+
+        // The assignment inside 'if (f)' is never executed, so 'a' is still constant after the loop
+        var method = CpUtils.getMethod(optimized, "foo");
+        CpUtils.assertLiteralReturn("4", method, optimized);
+    }
+
+    @Test
+    public void deadCodeConstBranches() {
+
+        String filename = "dead_code/DeadBranches.jmm";
+
+        OllirResult optimized = getOllirResultOpt(filename);
+        var method = CpUtils.getMethod(optimized, "foo");
+
+        // 'if (false)' and 'while (false)' leave no branches behind
+        CpUtils.assertEquals("Expected no conditional branches in 'foo'", 0,
+                CpUtils.getInstructions(CondBranchInstruction.class, method).size(), optimized);
+        CpUtils.assertFindLiteral("3", method, optimized);
+
+        // 'b' was only read inside the dead code
+        CpUtils.assertTrue("Expected local 'b' to be removed",
+                !method.getVarTable().containsKey("b"), optimized);
+    }
+
+    @Test
+    public void rangeFoldKnownComparisons() {
+
+        String filename = "ranges/RangeFold.jmm";
+
+        OllirResult optimized = getOllirResultOpt(filename);
+        var method = CpUtils.getMethod(optimized, "foo");
+
+        // 'i < 0' inside the loop and 'r < 4' are decided by the ranges; only the loop test remains
+        CpUtils.assertEquals("Expected only the loop condition to remain in 'foo'", 1,
+                CpUtils.getInstructions(CondBranchInstruction.class, method).size(), optimized);
+    }
+
+    @Test
+    public void rangeRandomWithCrossingBounds() {
+
+        String filename = "ranges/RandomBounds.jmm";
+
+        OllirResult optimized = getOllirResultOpt(filename);
+        var method = CpUtils.getMethod(optimized, "foo");
+
+        // 'lo' may be 10, above the upper bound 3, so nothing is known about 'r' and 'r < 4' stays
+        CpUtils.assertEquals("Expected both conditions to remain in 'foo'", 2,
+                CpUtils.getInstructions(CondBranchInstruction.class, method).size(), optimized);
+    }
+
+    @Test
+    public void interproceduralConstArgs() {
+
+        String filename = "interprocedural/ConstArgs.jmm";
+
+        // Without inlining, which would remove the calls altogether, and as a whole program, so
+        // that no other class calls the public methods
+        OllirResult optimized = getOllirResultOpt(filename,
+                Map.of(ConfigOptions.getInlineBudget(), "0", ConfigOptions.getLibrary(), "false"));
+
+        // Every call passes 3 as 'factor'
+        CpUtils.assertFindLiteral("3", CpUtils.getMethod(optimized, "scale"), optimized);
+
+        // 'limit()' has no side effects and always returns 10, so the call disappears from the loop
+        var sum = CpUtils.getMethod(optimized, "sum");
+        CpUtils.assertFindLiteral("10", sum, optimized);
+        CpUtils.assertEquals("Expected only the call to 'scale' in 'sum'", 1,
+                CpUtils.getInstructions(CallInstruction.class, sum).size(), optimized);
+    }
+
+    @Test
+    public void interproceduralLibraryParameters() {
+
+        String filename = "interprocedural/Inline.jmm";
+
+        // In a library other classes may call the public 'run' with any 'n', so it is not seeded with 4
+        OllirResult optimized = getOllirResultOpt(filename);
+        CpUtils.assertTrue("Expected the loop to compare with 'n'",
+                CpUtils.getInstructions(BinaryOpInstruction.class, CpUtils.getMethod(optimized, "run")).stream()
+                        .anyMatch(op -> op.getOperation().getOpType() == OperationType.LTH
+                                && op.getRightOperand() instanceof Operand operand && operand.getName().equals("n")),
+                optimized);
+    }
+
+    @Test
+    public void interproceduralNullReceiver() {
+
+        String filename = "interprocedural/NullField.jmm";
+
+        OllirResult optimized = getOllirResultOpt(filename,
+                Map.of(ConfigOptions.getInlineBudget(), "0", ConfigOptions.getLibrary(), "false"));
+
+        // 'seven()' is pure and returns 7, but 'other' is null, so the call must stay and throw
+        CpUtils.assertTrue("Expected the call on 'other' to remain",
+                optimized.getOllirClass().getMethods().stream()
+                        .flatMap(method -> CpUtils.getInstructions(CallInstruction.class, method).stream())
+                        .anyMatch(call -> call.toString().contains("seven")), optimized);
+
+        var output = TestUtils.backend(optimized).runWithFullOutput();
+        CpUtils.assertTrue("Expected a NullPointerException, got: " + output.getOutput(),
+                output.getReturnValue() != 0 && output.getOutput().contains("NullPointerException"), optimized);
+    }
+
+    @Test
+    public void interproceduralEffectfulReceiver() {
+
+        String filename = "interprocedural/EffectfulReceiver.jmm";
+
+        OllirResult optimized = getOllirResultOpt(filename,
+                Map.of(ConfigOptions.getInlineBudget(), "0", ConfigOptions.getLibrary(), "false"));
+
+        // 'seven()' is pure and returns 7, but its receiver 'r.make()' prints, so both calls stay
+        var main = CpUtils.getMethod(optimized, "main");
+        CpUtils.assertFindLiteral("7", main, optimized);
+        CpUtils.assertEquals("Expected both calls to 'make' to be kept", 2,
+                CpUtils.getInstructions(CallInstruction.class, main).stream()
+                        .filter(call -> call.toString().contains("make")).count(), optimized);
+        CpUtils.runJasmin(TestUtils.backend(optimized), "1\n7\n1");
+    }
+
+    @Test
+    public void interproceduralSpecialization() {
+
+        String filename = "interprocedural/Specialize.jmm";
+
+        OllirResult optimized = getOllirResultOpt(filename, Map.of(ConfigOptions.getInlineBudget(), "0"));
+
+        // The loop calls 'scale' with factor 3, other calls do not, so a clone takes the constant
+        CpUtils.assertFindLiteral("3", CpUtils.getMethod(optimized, "scale_s0"), optimized);
+        CpUtils.assertTrue("Expected the loop to call the specialized 'scale'",
+                CpUtils.getInstructions(CallInstruction.class, CpUtils.getMethod(optimized, "main")).stream()
+                        .anyMatch(call -> call.toString().contains("scale_s0")), optimized);
+    }
+
+    @Test
+    public void inlineSmallMethods() {
+
+        String filename = "interprocedural/Inline.jmm";
+
+        // As a whole program no subclass can override the methods called on 'this'
+        OllirResult optimized = getOllirResultOpt(filename, Map.of(ConfigOptions.getLibrary(), "false"));
+
+        // The getter, setter and helper are inlined into 'run', leaving no calls
+        CpUtils.assertEquals("Expected no calls in 'run'", 0,
+                CpUtils.getInstructions(CallInstruction.class, CpUtils.getMethod(optimized, "run")).size(), optimized);
+
+        // 'square(7)' is inlined and folded; 'run' uses fields, so it stays a call on 'a'
+        var main = CpUtils.getMethod(optimized, "main");
+        CpUtils.assertFindLiteral("49", main, optimized);
+        CpUtils.assertTrue("Expected the call to 'run' to remain in 'main'",
+                CpUtils.getInstructions(CallInstruction.class, main).stream()
+                        .anyMatch(call -> call.toString().contains("run")), optimized);
+    }
+
+    @Test
+    public void inlineKeepsNullReceiver() {
+
+        String filename = "interprocedural/NullReceiver.jmm";
+
+        OllirResult optimized = getOllirResultOpt(filename, Map.of(ConfigOptions.getLibrary(), "false"));
+
+        // The field 'other' is never set, so 'other.square(x)' must still throw instead of printing 49
+        CpUtils.assertTrue("Expected the call on 'other' to remain",
+                optimized.getOllirClass().getMethods().stream()
+                        .flatMap(method -> CpUtils.getInstructions(CallInstruction.class, method).stream())
+                        .anyMatch(call -> call.toString().contains("square")), optimized);
+
+        var output = TestUtils.backend(optimized).runWithFullOutput();
+        CpUtils.assertTrue("Expected a NullPointerException, got: " + output.getOutput(),
+                output.getReturnValue() != 0 && output.getOutput().contains("NullPointerException"), optimized);
+    }
+
+    @Test
+    public void astPassesOnlyWithOptimize() {
+
+        String filename = "interprocedural/Inline.jmm";
+
+        // The command line passes 'optimize=false' without -o: nothing is inlined and 'run' keeps reading 'n'
+        OllirResult unoptimized = CpUtils.getOllirResult(SpecsIo.getResource(BASE_PATH + filename),
+                Map.of(ConfigOptions.getOptimize(), "false"), true);
+        var run = CpUtils.getMethod(unoptimized, "run");
+        CpUtils.assertEquals("Expected the four calls in 'run' to stay", 4,
+                CpUtils.getInstructions(CallInstruction.class, run).size(), unoptimized);
+        CpUtils.assertTrue("Expected the loop to compare with 'n'",
+                CpUtils.getInstructions(BinaryOpInstruction.class, run).stream()
+                        .anyMatch(op -> op.getOperation().getOpType() == OperationType.LTH
+                                && op.getRightOperand() instanceof Operand operand && operand.getName().equals("n")),
+                unoptimized);
+        CpUtils.assertTrue("Expected no optimization reports", unoptimized.getReports().stream()
+                .noneMatch(report -> report.getStage() == Stage.OPTIMIZATION), unoptimized);
+    }
+
+    @Test
+    public void pureCallElimination() {
+
+        String filename = "interprocedural/PureCalls.jmm";
+
+        OllirResult optimized = getOllirResultOpt(filename,
+                Map.of(ConfigOptions.getInlineBudget(), "0", ConfigOptions.getCloneBudget(), "0"));
+        var calls = CpUtils.getInstructions(CallInstruction.class, CpUtils.getMethod(optimized, "run"));
+
+        // Unused calls are dropped and 'square(a)' is computed once
+        CpUtils.assertEquals("Expected one call to 'square'", 1,
+                calls.stream().filter(call -> call.toString().contains("square")).count(), optimized);
+
+        // 'bump' writes the field 'getCount' reads, so both reads stay
+        CpUtils.assertEquals("Expected two calls to 'getCount'", 2,
+                calls.stream().filter(call -> call.toString().contains("getCount")).count(), optimized);
+    }
+
+    @Test
+    public void scalarReplaceLocalArrays() {
+
+        String filename = "scalar_replacement/LocalArrays.jmm";
+
+        OllirResult optimized = getOllirResultOpt(filename, Map.of(ConfigOptions.getInlineBudget(), "0"));
+
+        // 'pair' and 'counts' become locals; 'passed' escapes into the call
+        int allocations = optimized.getOllirCode().split("new\\(array", -1).length - 1;
+        CpUtils.assertEquals("Expected only the escaping array to be allocated", 1, allocations, optimized);
+        CpUtils.assertTrue("Expected no array accesses for the replaced arrays",
+                !optimized.getOllirCode().contains("counts.array") && !optimized.getOllirCode().contains("pair.array"), optimized);
+    }
+
+    @Test
+    public void scalarReplaceLocalObjects() {
+
+        String filename = "scalar_replacement/LocalObjects.jmm";
+
+        OllirResult optimized = getOllirResultOpt(filename, Map.of(ConfigOptions.getInlineBudget(), "0"));
+
+        // 'acc' becomes the locals 'acc_total' and 'acc_used'; 'shared' escapes into the call to 'read'
+        int allocations = optimized.getOllirCode().split("new\\(Counter", -1).length - 1;
+        CpUtils.assertEquals("Expected only the escaping object to be allocated", 1, allocations, optimized);
+        CpUtils.assertTrue("Expected the fields of 'acc' to be locals",
+                optimized.getOllirCode().contains("acc_total.i32"), optimized);
+    }
+
+    @Test
+    public void fieldPromotionInLoop() {
+
+        String filename = "field_promotion/FieldLoop.jmm";
+
+        OllirResult optimized = getOllirResultOpt(filename);
+        var method = CpUtils.getMethod(optimized, "accumulate");
+
+        // 'values' and 'total' are loaded once before the loop, plus the final read of 'total'
+        CpUtils.assertEquals("Expected three field loads in 'accumulate'", 3,
+                CpUtils.getInstructions(GetFieldInstruction.class, method).size(), optimized);
+        // 'total' is stored back once after the loop, next to the store of the new array
+        CpUtils.assertEquals("Expected two field stores in 'accumulate'", 2,
+                CpUtils.getInstructions(PutFieldInstruction.class, method).size(), optimized);
+    }
+
+    @Test
+    public void removeUnusedMembers() {
+
+        String filename = "tree_shaking/Unused.jmm";
+
+        // Without inlining, so that 'twice' is still called from 'main'
+        OllirResult library = getOllirResultOpt(filename, Map.of(ConfigOptions.getInlineBudget(), "0"));
+        CpUtils.getMethod(library, "twice");
+        CpUtils.getMethod(library, "api");
+        CpUtils.assertTrue("Expected the fields used by 'api' to be kept",
+                library.getOllirCode().contains(".field public unused"), library);
+
+        // As a whole program, only what 'main' reaches is kept
+        OllirResult program = getOllirResultOpt(filename,
+                Map.of(ConfigOptions.getInlineBudget(), "0", ConfigOptions.getLibrary(), "false"));
+        CpUtils.getMethod(program, "twice");
+        CpUtils.assertTrue("Expected 'api' and 'helper' to be removed",
+                !program.getOllirCode().contains("api") && !program.getOllirCode().contains("helper"), program);
+        CpUtils.assertTrue("Expected only the field 'used' to be kept",
+                program.getOllirCode().contains(".field public used")
+                        && !program.getOllirCode().contains(".field public unused"), program);
+
+        // Without -o, which the command line passes as 'optimize=false', every member is kept
+        OllirResult unoptimized = CpUtils.getOllirResult(SpecsIo.getResource(BASE_PATH + filename),
+                Map.of(ConfigOptions.getOptimize(), "false", ConfigOptions.getLibrary(), "false"), true);
+        CpUtils.getMethod(unoptimized, "api");
+        CpUtils.getMethod(unoptimized, "helper");
+        CpUtils.assertTrue("Expected no members to be removed without -o", unoptimized.getReports().stream()
+                .noneMatch(report -> report.getMessage().startsWith("Unused members removed")), unoptimized);
+    }
+
+    @Test
+    public void loopInvariantCodeMotion() {
+
+        String filename = "loops/Invariant.jmm";
+
+        OllirResult optimized = getOllirResultOpt(filename);
+        var method = CpUtils.getMethod(optimized, "find");
+        var instructions = method.getInstructions();
+        int header = instructions.indexOf(method.getLabels().get("while0"));
+
+        // The length of 'values' and 'width * 2' move before the loop; 'probes' is written in it and stays
+        for (int i = 0; i < instructions.size(); i++) {
+            if (!(instructions.get(i) instanceof AssignInstruction assign)) continue;
+            if (assign.getRhs() instanceof ArrayLengthInstruction) {
+                CpUtils.assertTrue("Expected the array length to be read before the loop", i < header, optimized);
+            }
+            if (assign.getRhs() instanceof GetFieldInstruction getField) {
+                boolean isWidth = getField.getField().getName().equals("width");
+                CpUtils.assertEquals("Expected only 'width' to be read before the loop", isWidth, i < header, optimized);
+            }
+        }
+    }
+
+    @Test
+    public void strengthReduction() {
+
+        String filename = "loops/Strength.jmm";
+
+        OllirResult optimized = getOllirResultOpt(filename);
+        var method = CpUtils.getMethod(optimized, "trace");
+        var instructions = method.getInstructions();
+        int header = instructions.indexOf(method.getLabels().get("while0"));
+        int exit = instructions.indexOf(method.getLabels().get("endwhile0"));
+
+        // 'i * size' is kept in a variable that grows by 'size' on each iteration
+        for (int i = header; i < exit; i++) {
+            if (!(instructions.get(i) instanceof AssignInstruction assign)) continue;
+            if (assign.getRhs() instanceof BinaryOpInstruction binary) {
+                CpUtils.assertNotEquals("Expected no multiplication in the loop", OperationType.MUL,
+                        binary.getOperation().getOpType(), optimized);
+            }
+        }
+    }
+
+    @Test
+    public void valueNumberingRemovesRepeatedComputations() {
+
+        String filename = "value_numbering/Redundant.jmm";
+
+        OllirResult optimized = getOllirResultOpt(filename);
+        var method = CpUtils.getMethod(optimized, "combine");
+
+        // 'a[i]', 'x * y' (also written 'y * x') and 'a.length' are each computed once
+        int loads = 0, multiplications = 0, lengths = 0;
+        for (var inst : method.getInstructions()) {
+            if (!(inst instanceof AssignInstruction assign)) continue;
+            if (assign.getRhs() instanceof SingleOpInstruction single && single.getSingleOperand() instanceof ArrayOperand) {
+                loads++;
+            }
+            if (assign.getRhs() instanceof BinaryOpInstruction binary && binary.getOperation().getOpType() == OperationType.MUL) {
+                multiplications++;
+            }
+            if (assign.getRhs() instanceof ArrayLengthInstruction) lengths++;
+        }
+        CpUtils.assertEquals("Expected one load of 'a[i]'", 1, loads, optimized);
+        CpUtils.assertEquals("Expected one multiplication", 1, multiplications, optimized);
+        CpUtils.assertEquals("Expected one read of the array length", 1, lengths, optimized);
+    }
+
+    @Test
+    public void copiesOfTemporariesRemoved() {
+
+        String filename = "copy_propagation/Copies.jmm";
+
+        OllirResult optimized = getOllirResultOpt(filename);
+        var method = CpUtils.getMethod(optimized, "twice");
+
+        // The copies left by value numbering are read through and then dropped, with their variables
+        for (var inst : method.getInstructions()) {
+            if (!(inst instanceof AssignInstruction assign)) continue;
+            boolean isCopy = assign.getRhs() instanceof SingleOpInstruction single
+                    && !single.getSingleOperand().isLiteral() && !(single.getSingleOperand() instanceof ArrayOperand);
+            CpUtils.assertTrue("Expected no copies between variables, found " + inst, !isCopy, optimized);
+        }
+        long temporaries = method.getVarTable().keySet().stream().filter(name -> name.startsWith("tmp")).count();
+        CpUtils.assertEquals("Expected three temporaries (a[i], b[i] and their product)", 3, (int) temporaries, optimized);
+    }
+
+    @Test
+    public void ssaRoundTrip() {
+
+        String filename = "ssa/Loop.jmm";
+
+        OllirResult result = getOllirResult(filename);
+        var method = CpUtils.getMethod(result, "collatz");
+        Set<String> names = new HashSet<>(method.getVarTable().keySet());
+
+        // Each name is assigned once, and the loop header and the join of the if choose between versions
+        var ssa = SsaForm.build(method);
+        Set<String> assigned = new HashSet<>();
+        for (var inst : method.getInstructions()) {
+            if (!(inst instanceof AssignInstruction assign)) continue;
+            String dest = ((Operand) assign.getDest()).getName();
+            CpUtils.assertTrue("Expected a single assignment to " + dest, assigned.add(dest), result);
+        }
+        var header = ssa.getPhis(method.getLabels().get("while0")).stream().map(SsaForm.Phi::getVariable).collect(Collectors.toSet());
+        CpUtils.assertEquals("Expected phis for 'n' and 'steps' at the loop header", Set.of("n", "steps"), header, result);
+        var join = ssa.getPhis(method.getLabels().get("endif0")).stream().map(SsaForm.Phi::getVariable).collect(Collectors.toSet());
+        CpUtils.assertEquals("Expected a phi for 'n' after the if", Set.of("n"), join, result);
+
+        // Without any code moved, every version gets its variable's name back
+        ssa.destroy();
+        CpUtils.assertEquals("Expected the original variables", names, method.getVarTable().keySet(), result);
+    }
+
+    @Test
+    public void ssaCopyPropagationRoundTrip() {
+
+        String filename = "ssa/Swap.jmm";
+
+        // Without -o the methods stay calls
+        OllirResult result = getOllirResult(filename);
+
+        // Reading the copied value instead of each copy makes the phis of 'swap' swap 'a' and 'b', the
+        // empty arm of 'pick' jump to phis that keep them, and the old 'a' of 'fib' live next to the new one
+        for (String name : new String[]{"swap", "pick", "fib"}) {
+            var ssa = SsaForm.build(CpUtils.getMethod(result, name));
+            CpUtils.assertTrue("Expected copies to propagate in '" + name + "'", propagateCopies(ssa) > 0, result);
+            ssa.destroy();
+        }
+
+        CpUtils.runJasmin(TestUtils.backend(result), "21\n12\n12\n21\n55");
+    }
+
+    // Replaces the reads of each copy between versions by its source, in instructions and phis, and
+    // removes the copies that SSA form allows to go: those that are not jumped to and carry no phis
+    private static int propagateCopies(SsaForm ssa) {
+        var method = ssa.getMethod();
+        int propagated = 0;
+
+        for (var inst : new ArrayList<>(method.getInstructions())) {
+            if (!(inst instanceof AssignInstruction assign) || !(assign.getRhs() instanceof SingleOpInstruction single)
+                    || !(single.getSingleOperand() instanceof Operand source) || source.isLiteral()) continue;
+            String dest = ((Operand) assign.getDest()).getName();
+            if (!dest.contains("#")) continue;
+
+            for (var other : method.getInstructions()) {
+                InstUtils.replaceUses(other, operand -> operand.getName().equals(dest) ? source : null);
+            }
+            for (var phi : ssa.getAllPhis()) {
+                phi.getArguments().replaceAll((pred, value) -> InstUtils.isVariable(value, dest) ? source : value);
+            }
+            propagated++;
+
+            boolean pinned = method.getLabels().containsValue(inst) || !ssa.getPhis(inst).isEmpty()
+                    || ssa.getAllPhis().stream().anyMatch(phi -> phi.getArguments().containsKey(inst));
+            if (!pinned) method.getInstructions().remove(inst);
+        }
+        return propagated;
+    }
+
+    @Test
+    public void branchLayout() throws IOException {
+
+        String filename = "layout/Guards.jmm";
+
+        // The "then" arm falls through, and the early return moves after the loop that follows it
+        OllirResult optimized = getOllirResultOpt(filename);
+        CpUtils.assertEquals("Expected the 'then' arm right after the test", "x", armAfterTest(optimized), optimized);
+        var digits = CpUtils.getMethod(optimized, "digits");
+        var instructions = digits.getInstructions();
+        CpUtils.assertTrue("Expected the early return at the end of the method",
+                instructions.getLast() instanceof ReturnInstruction ret && ret.getOperand().orElseThrow() instanceof LiteralElement
+                        && instructions.indexOf(digits.getLabels().get("endwhile0")) < instructions.size() - 1,
+                optimized);
+
+        // A profile where the "else" arm runs more often puts it first, and the "then" arm after the end
+        Path profile = Files.createTempFile("branches", ".prof");
+        Files.writeString(profile, "# line then else\n7 1 100\n");
+        OllirResult profiled = getOllirResultOpt(filename, Map.of(ConfigOptions.getBranchProfile(), profile.toString()));
+
+        // Without -o, which the command line passes as 'optimize=false', the profile is ignored and
+        // no arm moves after the end of the method
+        OllirResult unoptimized = CpUtils.getOllirResult(SpecsIo.getResource(BASE_PATH + filename),
+                Map.of(ConfigOptions.getOptimize(), "false", ConfigOptions.getBranchProfile(), profile.toString()), true);
+        Files.delete(profile);
+        for (String method : new String[]{"clamp", "digits"}) {
+            CpUtils.assertTrue("Expected '" + method + "' to end with its return without -o",
+                    CpUtils.getMethod(unoptimized, method).getInstructions().getLast() instanceof ReturnInstruction ret
+                            && ret.getOperand().orElseThrow() instanceof Operand, unoptimized);
+        }
+        CpUtils.runJasmin(TestUtils.backend(unoptimized), layoutOutput("Guards"));
+        CpUtils.assertEquals("Expected the 'else' arm right after the test", "limit", armAfterTest(profiled), profiled);
+        CpUtils.assertTrue("Expected the 'then' arm to jump back from the end of the method",
+                CpUtils.getMethod(profiled, "clamp").getInstructions().getLast() instanceof GotoInstruction, profiled);
+        CpUtils.runJasmin(TestUtils.backend(profiled), layoutOutput("Guards"));
+
+        // Every layout computes the same as the code without -o, including early returns nested in moved arms
+        for (String name : new String[]{"Guards", "NestedExits"}) {
+            CpUtils.runJasmin(TestUtils.backend(getOllirResult("layout/" + name + ".jmm")), layoutOutput(name));
+            CpUtils.runJasmin(TestUtils.backend(getOllirResultOpt("layout/" + name + ".jmm")), layoutOutput(name));
+        }
+    }
+
+    private static String layoutOutput(String name) {
+        return SpecsStrings.normalizeFileContents(SpecsIo.getResource(BASE_PATH + "layout/" + name + ".txt"), true);
+    }
+
+    // The variable copied to 'r' by the instruction that follows the test in 'clamp'
+    private static String armAfterTest(OllirResult result) {
+        var instructions = CpUtils.getMethod(result, "clamp").getInstructions();
+        for (int i = 0; i < instructions.size() - 1; i++) {
+            if (instructions.get(i) instanceof CondBranchInstruction
+                    && instructions.get(i + 1) instanceof AssignInstruction assign
+                    && assign.getRhs() instanceof SingleOpInstruction copy
+                    && copy.getSingleOperand() instanceof Operand operand) {
+                return operand.getName();
+            }
+        }
+        return null;
+    }
+
     @Test
     public void constFoldSimple() {
 
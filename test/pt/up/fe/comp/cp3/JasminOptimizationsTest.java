@@ -19,6 +19,7 @@ import pt.up.fe.comp.TestUtils;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsStrings;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -121,5 +122,122 @@ public class JasminOptimizationsTest {
 
     }
 
+    /**
+     * Programs exercising the AST simplifier must print the same output with and without -o.
+     */
+    @Test
+    public void simplifyCorpus() {
+        for (String name : new String[]{"SimplifyArithmetic", "SimplifyLogic"}) {
+            String expected = SpecsIo.getResource("pt/up/fe/comp/cp3/optimizations/simplify/" + name + ".txt");
+            expected = SpecsStrings.normalizeFileContents(expected, true);
+
+            CpUtils.runJasmin(getJasminResult("simplify/" + name + ".jmm"), expected);
+            CpUtils.runJasmin(getJasminResultOpt("simplify/" + name + ".jmm"), expected);
+        }
+    }
+
+    /**
+     * Tail-recursive methods run as loops with -o, so deep recursion no longer overflows the stack.
+     */
+    @Test
+    public void tailCallsDeepRecursion() {
+        String expected = SpecsIo.getResource("pt/up/fe/comp/cp3/optimizations/tail_calls/TailCalls.txt");
+        expected = SpecsStrings.normalizeFileContents(expected, true);
+
+        CpUtils.runJasmin(getJasminResultOpt("tail_calls/TailCalls.jmm"), expected);
+    }
+
+    /**
+     * Memoization leaves the tail-recursive methods as loops, so they still run at depth 100000.
+     */
+    @Test
+    public void tailCallsWithMemoization() {
+        Map<String, String> config = new HashMap<>();
+        config.put("optimize", "true");
+        config.put("memoize", "true");
+        JasminResult jasminResult = TestUtils.backend(
+                SpecsIo.getResource("pt/up/fe/comp/cp3/optimizations/tail_calls/TailCalls.jmm"), config);
+
+        String expected = SpecsIo.getResource("pt/up/fe/comp/cp3/optimizations/tail_calls/TailCalls.txt");
+        expected = SpecsStrings.normalizeFileContents(expected, true);
+
+        CpUtils.runJasmin(jasminResult, expected);
+    }
+
+    /**
+     * With memoization on, naive exponential recursions (fib(40), binomial(30, 15)) finish quickly.
+     */
+    @Test
+    public void memoizedRecursion() {
+        Map<String, String> config = new HashMap<>();
+        config.put("optimize", "true");
+        config.put("memoize", "true");
+        JasminResult jasminResult = TestUtils.backend(
+                SpecsIo.getResource("pt/up/fe/comp/cp3/optimizations/memoization/Memoized.jmm"), config);
+
+        String expected = SpecsIo.getResource("pt/up/fe/comp/cp3/optimizations/memoization/Memoized.txt");
+        expected = SpecsStrings.normalizeFileContents(expected, true);
+
+        CpUtils.matches(jasminResult, "fib_compute");
+        CpUtils.runJasmin(jasminResult, expected);
+    }
+
+    /**
+     * A large constant array literal is filled by loops over its runs, and still holds the right values.
+     */
+    @Test
+    public void compactConstantArrayInit() {
+        String expected = SpecsIo.getResource("pt/up/fe/comp/cp3/optimizations/array_init/LookupTable.txt");
+        expected = SpecsStrings.normalizeFileContents(expected, true);
+
+        JasminResult jasminResult = getJasminResult("array_init/LookupTable.jmm");
+        CpUtils.matches(jasminResult, "fill\\d+:");
+        CpUtils.runJasmin(jasminResult, expected);
+    }
+
+    /**
+     * Loops with known trip counts are unrolled: the short ones completely, the long one by the
+     * default factor, with the remaining iterations after it.
+     */
+    @Test
+    public void unrollCountedLoops() {
+        String expected = SpecsIo.getResource("pt/up/fe/comp/cp3/optimizations/loops/Unroll.txt");
+        expected = SpecsStrings.normalizeFileContents(expected, true);
+
+        Map<String, String> config = new HashMap<>();
+        config.put("optimize", "true");
+        config.put("unroll", "true");
+        JasminResult jasminResult = TestUtils.backend(
+                SpecsIo.getResource("pt/up/fe/comp/cp3/optimizations/loops/Unroll.jmm"), config);
+        int loops = CpUtils.countOccurrencesRegex(jasminResult, "\\bwhile\\d+:");
+        CpUtils.assertEquals("Expected only the long loop to remain", 1, loops, jasminResult);
+        CpUtils.runJasmin(jasminResult, expected);
+    }
+
+    /**
+     * With -o, while loops test their condition before the first iteration and then at the end of
+     * each one, without jumping back to a test at the top; the loop programs print the same.
+     */
+    @Test
+    public void rotatedLoops() {
+        Map<String, String> config = new HashMap<>();
+        config.put("optimize", "true");
+
+        for (String name : new String[]{"SimpleWhileStat", "IfWhileNested"}) {
+            String resource = SpecsIo.getResource("pt/up/fe/comp/cp3/jasmin/control_flow/" + name + ".jmm");
+            String expected = SpecsStrings.normalizeFileContents(TestUtils.backend(resource).run(), true);
+
+            JasminResult jasminResult = TestUtils.backend(resource, config);
+            int backJumps = CpUtils.countOccurrencesRegex(jasminResult, "goto\\s+while\\d+");
+            CpUtils.assertEquals("Expected no jump back to the top of the loop", 0, backJumps, jasminResult);
+            CpUtils.runJasmin(jasminResult, expected);
+
+            // Without -o, which the command line passes as 'optimize=false', the test stays at the top
+            JasminResult unrotated = TestUtils.backend(resource, Map.of("optimize", "false"));
+            CpUtils.assertTrue("Expected a jump back to the test at the top of the loop",
+                    CpUtils.countOccurrencesRegex(unrotated, "goto\\s+while\\d+") > 0, unrotated);
+            CpUtils.runJasmin(unrotated, expected);
+        }
+    }
 
 }